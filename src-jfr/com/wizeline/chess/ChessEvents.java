@@ -0,0 +1,113 @@
+package com.wizeline.chess;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.StackTrace;
+
+/*
+The JFR events of the Metrics timers, in the "Chess" category of a flight recording. An
+event is begun when its section starts and committed when it ends, on the thread that ran
+it, so its start time and duration are those of the section; stack traces are off, as
+these sections run thousands of times per second. The events are only created after
+Metrics.setEventsEnabled(true), and a recording keeps them when it enables them, for example
+    java -XX:StartFlightRecording:filename=chess.jfr,settings=profile ... --jfr
+(the events are enabled by default) or with Main --jfr=<file>, which starts its own
+recording.
+
+jdk.jfr is not in Java 8, the target of the game, so this class is kept out of src and
+compiled separately with Java 11 or later against the classes of src, into the same
+output directory; Metrics loads it by name when events are enabled.
+*/
+public final class ChessEvents implements Metrics.Events {
+    public ChessEvents() {
+    }
+
+    // Creates and begins an event of one of the Metrics.Events kinds.
+    public Object begin(int kind) {
+        Event event;
+        switch(kind) {
+            case MOVE_PARSE:
+                event = new MoveParse();
+                break;
+            case MOVE_LEGALITY:
+                event = new MoveLegality();
+                break;
+            case MOVE_APPLY:
+                event = new MoveApply();
+                break;
+            case MOVE_GENERATION:
+                event = new MoveGeneration();
+                break;
+            default:
+                event = new BoardPaint();
+                break;
+        }
+        event.begin();
+        return event;
+    }
+
+    // Ends and commits an event returned by begin, if a recording enables it.
+    public void commit(Object event) {
+        ((Event) event).commit();
+    }
+
+    public void startRecording(Path file) throws IOException {
+        record(file);
+    }
+
+    // Starts a recording of the chess events that is written to the file when the JVM exits.
+    public static Recording record(Path file) throws IOException {
+        Recording recording = new Recording();
+        recording.setName("Chess");
+        for(Class<?> type : new Class<?>[] {MoveParse.class, MoveLegality.class, MoveApply.class,
+                MoveGeneration.class, BoardPaint.class}) {
+            recording.enable(type.getAnnotation(Name.class).value()).withoutStackTrace();
+        }
+        recording.setDestination(file);
+        recording.setDumpOnExit(true);
+        recording.start();
+        return recording;
+    }
+
+    @Category("Chess")
+    @StackTrace(false)
+    public abstract static class TimedEvent extends Event {
+    }
+
+    @Name("com.wizeline.chess.MoveParse")
+    @Label("Move Parse")
+    @Description("Decoding a move in coordinate notation")
+    public static final class MoveParse extends TimedEvent {
+    }
+
+    @Name("com.wizeline.chess.MoveLegality")
+    @Label("Move Legality Check")
+    @Description("Looking a move up in the legal moves of the position")
+    public static final class MoveLegality extends TimedEvent {
+    }
+
+    @Name("com.wizeline.chess.MoveApply")
+    @Label("Move Apply")
+    @Description("Playing a legal move on the position of a game")
+    public static final class MoveApply extends TimedEvent {
+    }
+
+    @Name("com.wizeline.chess.MoveGeneration")
+    @Label("Move Generation")
+    @Description("Generating the legal moves and status of a new position")
+    public static final class MoveGeneration extends TimedEvent {
+    }
+
+    @Name("com.wizeline.chess.BoardPaint")
+    @Label("Board Paint")
+    @Description("Painting the board panel or a part of it")
+    public static final class BoardPaint extends TimedEvent {
+    }
+}
@@ -0,0 +1,280 @@
+package com.wizeline.chess;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/*
+Overhead of the Metrics probes:
+- "probe pair": a start/stop pair around a trivial statement against the statement alone,
+  with the metrics off and on.
+- "applyMove": random games replayed through GameEngine.applyMove(String), which runs the
+  parse, legality, apply and move generation probes and a counter on every move, with the
+  metrics off, on, and also committing JFR events into a recording. The mode "off" is
+  what every game pays for the instrumentation.
+- "board paint": Board.paintComponent over the whole panel, rendered into an image, off
+  and on.
+The modes are measured in alternating rounds and the fastest round of each is printed,
+with its overhead over "off".
+
+It also checks that the counters and histograms saw every move, that the recording holds
+one event per probe with the duration of its section, and that the percentiles of
+LatencyHistogram are within its 1/32 precision of the exact ones.
+
+Run it with:
+    java com.wizeline.chess.MetricsBenchmark [rounds]
+It exits with code 1 when a check fails.
+*/
+public final class MetricsBenchmark {
+    private static final int GAMES = 200;
+    private static final int MAX_GAME_PLIES = 200;
+    private static final long PROBE_ITERATIONS = 20000000L;
+    private static final int PAINT_FRAMES = 300;
+    private static final String[] MODES = {"off", "metrics", "metrics+jfr"};
+
+    private static long sink;
+    private static int failures;
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        checkHistogram();
+
+        List<List<String>> games = randomGames();
+        int moves = 0;
+        for(List<String> game : games) {
+            moves += game.size();
+        }
+        Path file = Files.createTempFile("metrics", ".jfr");
+        Recording recording = ChessEvents.record(file);
+
+        Map<String, Long> probe = new HashMap<String, Long>();
+        Map<String, Long> apply = new HashMap<String, Long>();
+        Map<String, Long> paint = new HashMap<String, Long>();
+        long bare = Long.MAX_VALUE;
+        Board board = new Board(Fen.parse(Fen.START_POSITION));
+        board.setSize(board.getPreferredSize());
+        for(int round = 0; round < rounds; round++) {
+            bare = Math.min(bare, bareLoop());
+            for(String mode : MODES) {
+                setMode(mode);
+                keepMin(apply, mode, replay(games));
+                if(!mode.equals("metrics+jfr")) {
+                    keepMin(probe, mode, probeLoop());
+                    keepMin(paint, mode, paint(board));
+                }
+            }
+        }
+        setMode("off");
+
+        System.out.println(String.format("%-24s %8.2f ns", "bare statement", (double) bare / PROBE_ITERATIONS));
+        for(String mode : new String[] {"off", "metrics"}) {
+            System.out.println(String.format("%-24s %8.2f ns, %+.2f ns per probe pair", "probe pair, " + mode,
+                (double) probe.get(mode) / PROBE_ITERATIONS, (double) (probe.get(mode) - bare) / PROBE_ITERATIONS));
+        }
+        for(String mode : MODES) {
+            System.out.println(String.format("%-24s %8.0f ns per move %10.0f moves/s %+6.1f%%", "applyMove, " + mode,
+                (double) apply.get(mode) / moves, moves * 1e9 / apply.get(mode), overhead(apply, mode)));
+        }
+        for(String mode : new String[] {"off", "metrics"}) {
+            System.out.println(String.format("%-24s %8.3f ms per frame %+6.1f%%", "board paint, " + mode,
+                paint.get(mode) / 1e6 / PAINT_FRAMES, overhead(paint, mode)));
+        }
+
+        checkCounts(games, moves, board);
+        recording.stop();
+        checkRecording(file);
+        recording.close();
+        Files.deleteIfExists(file);
+        System.out.println("(checksum " + sink + ")");
+        if(failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void setMode(String mode) {
+        Metrics.setEnabled(!mode.equals("off"));
+        Metrics.setEventsEnabled(mode.equals("metrics+jfr"));
+    }
+
+    private static void keepMin(Map<String, Long> times, String mode, long nanos) {
+        Long best = times.get(mode);
+        times.put(mode, best == null ? nanos : Math.min(best, nanos));
+    }
+
+    private static double overhead(Map<String, Long> times, String mode) {
+        return (times.get(mode) - times.get("off")) * 100.0 / times.get("off");
+    }
+
+    private static long bareLoop() {
+        long start = System.nanoTime();
+        long sum = 0;
+        for(long i = 0; i < PROBE_ITERATIONS; i++) {
+            sum += i ^ (sum >>> 3);
+        }
+        sink += sum;
+        return System.nanoTime() - start;
+    }
+
+    private static long probeLoop() {
+        long start = System.nanoTime();
+        long sum = 0;
+        Metrics.Timer timer = Metrics.MOVE_PARSE;
+        for(long i = 0; i < PROBE_ITERATIONS; i++) {
+            Metrics.Span span = timer.start();
+            sum += i ^ (sum >>> 3);
+            span.stop();
+        }
+        sink += sum;
+        return System.nanoTime() - start;
+    }
+
+    // Random games played to their end or MAX_GAME_PLIES, as coordinate notation.
+    private static List<List<String>> randomGames() {
+        Random random = new Random(1);
+        List<List<String>> games = new ArrayList<List<String>>();
+        for(int i = 0; i < GAMES; i++) {
+            GameEngine engine = new GameEngine();
+            List<String> game = new ArrayList<String>();
+            while(!engine.status().isOver() && game.size() < MAX_GAME_PLIES) {
+                List<String> legal = engine.legalMoves();
+                String move = legal.get(random.nextInt(legal.size()));
+                engine.applyMove(move);
+                game.add(move);
+            }
+            games.add(game);
+        }
+        return games;
+    }
+
+    private static long replay(List<List<String>> games) {
+        GameEngine engine = new GameEngine();
+        long start = System.nanoTime();
+        for(List<String> game : games) {
+            engine.reset(Fen.START_POSITION);
+            for(String move : game) {
+                if(engine.applyMove(move) != MoveResult.ACCEPTED) {
+                    throw new IllegalStateException("Move " + move + " rejected");
+                }
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        sink += engine.getHash();
+        return nanos;
+    }
+
+    private static long paint(Board board) {
+        BufferedImage frame = new BufferedImage(board.getWidth(), board.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = frame.createGraphics();
+        graphics.setClip(new Rectangle(board.getPreferredSize()));
+        long start = System.nanoTime();
+        for(int i = 0; i < PAINT_FRAMES; i++) {
+            board.paintComponent(graphics);
+        }
+        long nanos = System.nanoTime() - start;
+        graphics.dispose();
+        sink += frame.getRGB(100, 100);
+        return nanos;
+    }
+
+    // One more replay and paint with fresh metrics, every move and frame must be counted once.
+    private static void checkCounts(List<List<String>> games, int moves, Board board) {
+        Metrics.reset();
+        setMode("metrics");
+        replay(games);
+        paint(board);
+        setMode("off");
+        check("moves.accepted", Metrics.MOVES_ACCEPTED.get(), moves);
+        check("move.parse", Metrics.MOVE_PARSE.getHistogram().getCount(), moves);
+        check("move.legality", Metrics.MOVE_LEGALITY.getHistogram().getCount(), moves);
+        check("move.apply", Metrics.MOVE_APPLY.getHistogram().getCount(), moves);
+        // One generation per move, one per reset and one for the new engine.
+        check("move.generation", Metrics.MOVE_GENERATION.getHistogram().getCount(), moves + games.size() + 1);
+        check("board.paint", Metrics.BOARD_PAINT.getHistogram().getCount(), PAINT_FRAMES);
+        Metrics.dump(System.out);
+        System.out.println(Metrics.toJson());
+    }
+
+    // The recording must hold an event for every probe of the metrics+jfr rounds, the same number
+    // per move, and the events must last as long as their sections.
+    private static void checkRecording(Path file) throws IOException {
+        Map<String, Long> counts = new HashMap<String, Long>();
+        Map<String, Long> nanos = new HashMap<String, Long>();
+        for(RecordedEvent event : RecordingFile.readAllEvents(file)) {
+            String name = event.getEventType().getName();
+            if(name.startsWith("com.wizeline.chess.")) {
+                Long count = counts.get(name);
+                counts.put(name, count == null ? 1 : count + 1);
+                Long total = nanos.get(name);
+                nanos.put(name, (total == null ? 0 : total) + event.getDuration().toNanos());
+            }
+        }
+        System.out.println("recorded events: " + counts);
+        for(Map.Entry<String, Long> entry : counts.entrySet()) {
+            double mean = (double) nanos.get(entry.getKey()) / entry.getValue();
+            System.out.println(String.format("%-34s mean duration %.0f ns", entry.getKey(), mean));
+            if(mean <= 0) {
+                System.out.println("FAIL: " + entry.getKey() + " events have no duration");
+                failures++;
+            }
+        }
+        Long parse = counts.get("com.wizeline.chess.MoveParse");
+        if(parse == null || parse == 0) {
+            System.out.println("FAIL: no MoveParse events recorded");
+            failures++;
+            return;
+        }
+        for(String name : new String[] {"com.wizeline.chess.MoveLegality", "com.wizeline.chess.MoveApply"}) {
+            check(name + " events", counts.containsKey(name) ? counts.get(name) : 0, parse);
+        }
+    }
+
+    // Percentiles of 1..1,000,000 ns shuffled must be within the bucket precision of the exact values.
+    private static void checkHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        int n = 1000000;
+        Random random = new Random(1);
+        int[] values = new int[n];
+        for(int i = 0; i < n; i++) {
+            values[i] = i + 1;
+        }
+        for(int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+        for(int value : values) {
+            histogram.record(value);
+        }
+        for(double fraction : new double[] {0.5, 0.9, 0.99, 0.999, 1.0}) {
+            long exact = (long) Math.ceil(fraction * n);
+            long reported = histogram.getPercentile(fraction);
+            if(Math.abs(reported - exact) > exact / 32.0 + 1) {
+                System.out.println("FAIL: percentile " + fraction + " is " + reported + " instead of " + exact);
+                failures++;
+            }
+        }
+        check("histogram count", histogram.getCount(), n);
+        check("histogram max", histogram.getMax(), n);
+    }
+
+    private static void check(String name, long actual, long expected) {
+        if(actual != expected) {
+            System.out.println("FAIL: " + name + " is " + actual + " instead of " + expected);
+            failures++;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.wizeline.chess;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/*
+Validates the games of PGN files on all cores. Games do not depend on each other, so a
+file is cut into chunks of about the same size at game boundaries (a tag section after an
+empty line) and the chunks are replayed in parallel on a fork/join pool. Every chunk is
+read by its own PgnReader, so each worker thread replays games on a position nobody else
+touches, and the statistics of the chunks are added up per file.
+
+The listener, if any, is called from several threads at once and must be thread-safe.
+
+PgnReader rejects bad games one by one. A file that cannot be opened or read, or a chunk
+whose reader fails, does not stop the others: its statistics count what was read and
+carry the failure (see PgnStatistics.getFailure).
+*/
+public final class BatchValidator {
+    public static final long MIN_CHUNK_BYTES = 1L << 20;
+    // Chunks per thread, so threads that finish early can take work from slower ones.
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int SCAN_BUFFER_SIZE = 1 << 14;
+
+    private final ForkJoinPool pool;
+
+    public BatchValidator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public BatchValidator(int threads) {
+        if(threads < 1) {
+            throw new IllegalArgumentException("At least one validation thread is needed: " + threads);
+        }
+        pool = new ForkJoinPool(threads);
+    }
+
+    // Statistics per file, in the order given; a file that cannot be read gets a failed entry.
+    public Map<Path, PgnStatistics> validate(List<Path> files, PgnListener listener) {
+        Map<Path, PgnStatistics> statistics = new LinkedHashMap<Path, PgnStatistics>();
+        for(Path file : files) {
+            try {
+                statistics.put(file, validate(file, listener));
+            } catch(IOException e) {
+                PgnStatistics failed = new PgnStatistics();
+                failed.failed(e.toString());
+                statistics.put(file, failed);
+            }
+        }
+        return statistics;
+    }
+
+    public PgnStatistics validate(Path file, PgnListener listener) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long chunkBytes = Math.max(MIN_CHUNK_BYTES, size / (pool.getParallelism() * CHUNKS_PER_THREAD));
+            long[] bounds = split(channel, size, chunkBytes);
+            try {
+                return pool.invoke(new ValidateTask(channel, bounds, 0, bounds.length - 1,
+                    listener != null ? listener : new PgnListener() {
+                    }));
+            } catch(UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    public int getThreads() {
+        return pool.getParallelism();
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    // Chunk boundaries: 0, the game starts found after every multiple of chunkBytes, and size.
+    static long[] split(FileChannel channel, long size, long chunkBytes) throws IOException {
+        List<Long> bounds = new ArrayList<Long>();
+        bounds.add(0L);
+        long last = 0;
+        while(last + chunkBytes < size) {
+            long next = nextGameStart(channel, last + chunkBytes, size);
+            if(next >= size) {
+                break;
+            }
+            bounds.add(next);
+            last = next;
+        }
+        bounds.add(size);
+        long[] result = new long[bounds.size()];
+        for(int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    // Offset of the first '[' at or after from that starts a line following an empty line, or end.
+    static long nextGameStart(FileChannel channel, long from, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        int newlines = 0;
+        long position = from;
+        while(position < end) {
+            buffer.clear();
+            int count = channel.read(buffer, position);
+            if(count < 0) {
+                break;
+            }
+            for(int i = 0; i < count; i++) {
+                byte c = buffer.get(i);
+                if(c == '\n') {
+                    newlines++;
+                } else if(c == '[' && newlines >= 2) {
+                    return position + i;
+                } else if(c != '\r' && c != ' ' && c != '\t') {
+                    newlines = 0;
+                }
+            }
+            position += count;
+        }
+        return end;
+    }
+
+    // Validates the chunks first..last-1, splitting the range in halves until one chunk is left.
+    private static final class ValidateTask extends RecursiveTask<PgnStatistics> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long[] bounds;
+        private final int first;
+        private final int last;
+        private final PgnListener listener;
+
+        ValidateTask(FileChannel channel, long[] bounds, int first, int last, PgnListener listener) {
+            this.channel = channel;
+            this.bounds = bounds;
+            this.first = first;
+            this.last = last;
+            this.listener = listener;
+        }
+
+        @Override
+        protected PgnStatistics compute() {
+            if(last - first == 1) {
+                try {
+                    return new PgnReader(listener).read(channel, bounds[first], bounds[last]);
+                } catch(IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch(RuntimeException e) {
+                    PgnStatistics failed = new PgnStatistics();
+                    failed.failed("bytes " + bounds[first] + " to " + bounds[last] + ": " + e);
+                    return failed;
+                }
+            }
+            int middle = (first + last) >>> 1;
+            ValidateTask right = new ValidateTask(channel, bounds, middle, last, listener);
+            right.fork();
+            PgnStatistics statistics = new ValidateTask(channel, bounds, first, middle, listener).compute();
+            statistics.add(right.join());
+            return statistics;
+        }
+    }
+}
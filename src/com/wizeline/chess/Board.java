@@ -3,14 +3,23 @@ package com.wizeline.chess;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Map;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 
+/*
+Draws the board and the pieces of its Position.
+
+The tiles and coordinates never change, so they are rendered once into a background image
+and copied from it. The piece images come from the SpriteAtlas of the tile size, shared by
+all boards and loaded when a piece is first drawn. The board remembers the piece it last
+drew on every square: draw() compares them with the position and repaints only the tiles
+that changed, and paintComponent only draws the pieces of the tiles inside the area being
+repainted. A move therefore repaints two to four tiles instead of the whole panel.
+*/
 @SuppressWarnings("serial")
 
 public class Board extends JPanel {
@@ -18,9 +27,9 @@ public class Board extends JPanel {
     public static final int COLS = 8;
     public static final String WHITE_PIECE = "w";
     public static final String BLACK_PIECE = "b";
-    public static final String[] COLUMN_NAMES = 
+    public static final String[] COLUMN_NAMES =
         new String[] {"a", "b", "c", "d", "e", "f", "g", "h"};
-	
+
     // Constants for graphics. These variables represent units measured in pixels
     private final int tileWidth = 60;
     private final int tileHeight = 60;
@@ -28,44 +37,30 @@ public class Board extends JPanel {
     private final int yOffset = 25;
     private final int panelWidth = 525;
     private final int panelHeight = 540;
-    
-    private HashMap<String, BufferedImage> piecesImages;
-    
-    public HashMap<String, String> pieces;
-    
+
+    private final SpriteAtlas sprites = SpriteAtlas.forTileSize(tileWidth, tileHeight);
+    private BufferedImage background;
+    // Piece drawn on every square by the last draw(), indexed by square.
+    private final int[] drawnPieces = new int[Square.COUNT];
+
+    private final Position position;
+
+    // View over the position: reads and writes go straight to its bitboards.
+    public Map<String, String> pieces;
+
     public Board() {
-        loadImages();
-        // Creating the map that will hold the pieces.
-        pieces = new HashMap<String, String>();
-    }
-    
-    private void loadImages() {
-        piecesImages = new HashMap<String, BufferedImage>();
-        piecesImages.put("wP", loadImage("white_pawn"));
-        piecesImages.put("wR", loadImage("white_rook"));
-        piecesImages.put("wB", loadImage("white_bishop"));
-        piecesImages.put("wN", loadImage("white_knight"));
-        piecesImages.put("wQ", loadImage("white_queen"));
-        piecesImages.put("wK", loadImage("white_king"));
-        piecesImages.put("bP", loadImage("black_pawn"));
-        piecesImages.put("bR", loadImage("black_rook"));
-        piecesImages.put("bB", loadImage("black_bishop"));
-        piecesImages.put("bN", loadImage("black_knight"));
-        piecesImages.put("bQ", loadImage("black_queen"));
-        piecesImages.put("bK", loadImage("black_king"));
-    }
-
-    private BufferedImage loadImage(String imageName) {
-        try {
-            java.net.URL url = getClass().getResource("/images/" + imageName + ".png");
-            if(url == null) {
-                url = getClass().getResource("/" + imageName + ".png");
-            }
-            return ImageIO.read(url);
-        } catch(IOException e) {
-            System.out.println("Error loading image");
-            return null;
-        }
+        this(new Position());
+    }
+
+    public Board(Position position) {
+        this.position = position;
+        pieces = new PositionMap(position);
+        Arrays.fill(drawnPieces, Piece.NONE);
+        changedSquares();
+    }
+
+    public Position getPosition() {
+        return position;
     }
 
     public Dimension getPreferredSize() {
@@ -78,24 +73,24 @@ public class Board extends JPanel {
         }
         return Color.WHITE;
     }
-    
+
     private void drawTileBorder(Graphics graphics, int x, int y) {
         graphics.setColor(Color.BLACK);
         graphics.drawRect(x, y, tileWidth, tileHeight);
-    }   
+    }
 
     private void fillTile(Graphics graphics, Color color, int x, int y) {
         graphics.setColor(color);
         graphics.fillRect(x, y, tileWidth, tileHeight);
-    }   
+    }
 
     private int calculateCoordinate(int offset, int tileMeasurement, int rowOrCol) {
         return calculateCoordinate(offset, tileMeasurement, rowOrCol, false);
-    }   
+    }
 
     private int calculateCoordinate(int offset, int tileMeasurement, int rowOrCol, boolean addHalfMeasurement) {
         return offset + (tileMeasurement * rowOrCol) + (addHalfMeasurement ? tileMeasurement/2 : 0);
-    }   
+    }
 
     private void drawNumbers(Graphics graphics) {
         graphics.setColor(Color.BLACK);
@@ -105,7 +100,7 @@ public class Board extends JPanel {
     	    graphics.drawString(numberStr, 10, calculateCoordinate(yOffset, tileHeight, row, true));
     	    number--;
         }
-    }   
+    }
 
     private void drawLetters(Graphics graphics) {
         char letter = 'A';
@@ -129,51 +124,85 @@ public class Board extends JPanel {
             }
         }
     }
-    
-    private void drawPieces(Graphics graphics) {
-    	for (int row = 0; row < ROWS; row++) {
-            for (int col = 0; col < COLS; col++) {
-            	if(pieces != null) {
-	                String piece = pieces.get(getChessNotation(row, col));
-	                if(piece != null) {
-	                	graphics.drawImage(getImage(piece), calculateCoordinate(xOffset, tileWidth, col), 
-							calculateCoordinate(yOffset, tileHeight, row), tileWidth, tileHeight, null);
-	                }
-            	}
+
+    // Renders the tiles and coordinates, the part of the board that never changes.
+    private BufferedImage renderBackground() {
+        BufferedImage image = new BufferedImage(panelWidth, panelHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics graphics = image.createGraphics();
+        graphics.setColor(getBackground());
+        graphics.fillRect(0, 0, panelWidth, panelHeight);
+        graphics.setFont(getFont());
+        drawTiles(graphics);
+        drawNumbers(graphics);
+        drawLetters(graphics);
+        graphics.dispose();
+        return image;
+    }
+
+    // Draws the pieces of the tiles that intersect the area.
+    private void drawPieces(Graphics graphics, Rectangle area) {
+        int firstCol = Math.max(0, (area.x - xOffset) / tileWidth);
+        int lastCol = Math.min(COLS - 1, (area.x + area.width - 1 - xOffset) / tileWidth);
+        int firstRow = Math.max(0, (area.y - yOffset) / tileHeight);
+        int lastRow = Math.min(ROWS - 1, (area.y + area.height - 1 - yOffset) / tileHeight);
+        for(int row = firstRow; row <= lastRow; row++) {
+            for(int col = firstCol; col <= lastCol; col++) {
+                int piece = position.pieceAt(Square.index(col, ROWS - 1 - row));
+                BufferedImage sprite = piece == Piece.NONE ? null : sprites.get(piece);
+                if(sprite != null) {
+                    graphics.drawImage(sprite, calculateCoordinate(xOffset, tileWidth, col),
+                        calculateCoordinate(yOffset, tileHeight, row), null);
+                }
             }
         }
     }
-    
-    private void clearPanel(Graphics graphics) {
-        graphics.clearRect(0, 0, panelWidth, panelHeight);
-    }
-    
-    private String getColumnChessNotation(int col) {
-        return COLUMN_NAMES[col];
+
+    // Squares whose piece differs from the one drawn last, as a bitboard, and remembers the new ones.
+    long changedSquares() {
+        long changed = 0;
+        for(int square = 0; square < Square.COUNT; square++) {
+            int piece = position.pieceAt(square);
+            if(piece != drawnPieces[square]) {
+                drawnPieces[square] = piece;
+                changed |= 1L << square;
+            }
+        }
+        return changed;
     }
 
-    private String getChessNotation(int row, int col) {
-        return getColumnChessNotation(col) + Integer.toString(ROWS - row);
+    // Bounds of the tile of a square in the panel.
+    Rectangle tileBounds(int square) {
+        int col = Square.file(square);
+        int row = ROWS - 1 - Square.rank(square);
+        return new Rectangle(calculateCoordinate(xOffset, tileWidth, col), calculateCoordinate(yOffset, tileHeight, row),
+            tileWidth, tileHeight);
     }
-    
+
+    // Repaints the tiles whose piece changed since the last call.
     public void draw() {
         if(pieces != null) {
-            repaint();
+            long changed = changedSquares();
+            while(changed != 0) {
+                int square = Long.numberOfTrailingZeros(changed);
+                changed &= changed - 1;
+                Rectangle tile = tileBounds(square);
+                repaint(tile.x, tile.y, tile.width, tile.height);
+            }
         }
     }
-    
-    public void paint(Graphics graphics) {
-        clearPanel(graphics);
-        drawTiles(graphics);
-        drawNumbers(graphics);
-        drawLetters(graphics);
-        drawPieces(graphics);
-    }
-    
-    private BufferedImage getImage(String piece) {
-        if(piecesImages.containsKey(piece)) {
-            return piecesImages.get(piece);
+
+    @Override
+    protected void paintComponent(Graphics graphics) {
+        Metrics.Span span = Metrics.BOARD_PAINT.start();
+        if(background == null) {
+            background = renderBackground();
+        }
+        Rectangle area = graphics.getClipBounds();
+        if(area == null) {
+            area = new Rectangle(0, 0, panelWidth, panelHeight);
         }
-        return null;
+        graphics.drawImage(background, 0, 0, null);
+        drawPieces(graphics, area);
+        span.stop();
     }
 }
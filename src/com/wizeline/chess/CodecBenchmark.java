@@ -0,0 +1,128 @@
+package com.wizeline.chess;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+Round-trip check and throughput of the two position formats, FEN (Fen) and the binary
+PositionCodec. It collects every position up to three plies deep from the perft reference
+positions, checks that formatting and parsing each one in both formats gives back the same
+position (same FEN record, hash and evaluation), then measures the time per position to
+write and read each format on a sample of them and prints the average size of both.
+
+Run it with:
+    java com.wizeline.chess.CodecBenchmark [seconds per measurement]
+It exits with code 1 when a position does not survive the round trip.
+*/
+public final class CodecBenchmark {
+    private static final long WARMUP_NANOS = 500000000L;
+    private static final int DEPTH = 3;
+    private static final int MEASURED_POSITIONS = 10000;
+
+    private static long sink;
+
+    private interface Operation {
+        void run(int index);
+    }
+
+    public static void main(String[] args) {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 1.0;
+        long measureNanos = (long) (seconds * 1000000000L);
+
+        List<Position> collected = new ArrayList<Position>();
+        long checked = 0;
+        for(Object[] reference : Perft.REFERENCE_POSITIONS) {
+            checked += check(Fen.parse((String) reference[0]), DEPTH, collected);
+        }
+        final Position[] positions = collected.toArray(new Position[collected.size()]);
+        final String[] fens = new String[positions.length];
+        final byte[] encoded = new byte[positions.length * PositionCodec.ENCODED_SIZE];
+        long fenBytes = 0;
+        for(int i = 0; i < positions.length; i++) {
+            fens[i] = Fen.format(positions[i]);
+            fenBytes += fens[i].length();
+            PositionCodec.encode(positions[i], encoded, i * PositionCodec.ENCODED_SIZE);
+        }
+        System.out.println(String.format("Round trip OK for %d positions, FEN %.1f bytes, binary %d bytes per position",
+            checked, (double) fenBytes / positions.length, PositionCodec.ENCODED_SIZE));
+
+        final Position target = new Position();
+        measure("FEN format", positions.length, measureNanos, new Operation() {
+            public void run(int index) {
+                sink += Fen.format(positions[index]).length();
+            }
+        });
+        measure("FEN parse", positions.length, measureNanos, new Operation() {
+            public void run(int index) {
+                Fen.load(target, fens[index]);
+                sink += target.getHash();
+            }
+        });
+        final byte[] buffer = new byte[PositionCodec.ENCODED_SIZE];
+        measure("binary encode", positions.length, measureNanos, new Operation() {
+            public void run(int index) {
+                PositionCodec.encode(positions[index], buffer, 0);
+                sink += buffer[24];
+            }
+        });
+        measure("binary decode", positions.length, measureNanos, new Operation() {
+            public void run(int index) {
+                PositionCodec.decode(encoded, index * PositionCodec.ENCODED_SIZE, target);
+                sink += target.getHash();
+            }
+        });
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    // Checks the round trip of every position up to depth plies deep and keeps the first
+    // MEASURED_POSITIONS of them for the measurements. Returns the number checked.
+    private static long check(Position position, int depth, List<Position> measured) {
+        String fen = Fen.format(position);
+        Position parsed = Fen.parse(fen);
+        Position decoded = PositionCodec.decode(PositionCodec.encode(position));
+        if(!Fen.format(parsed).equals(fen) || parsed.getHash() != position.getHash()
+                || !Fen.format(decoded).equals(fen) || decoded.getHash() != position.getHash()
+                || Evaluation.evaluate(decoded) != Evaluation.evaluate(position)) {
+            System.out.println("Round trip failed for " + fen);
+            System.exit(1);
+        }
+        if(measured.size() < MEASURED_POSITIONS) {
+            measured.add(decoded);
+        }
+        if(depth == 0) {
+            return 1;
+        }
+        long count = 1;
+        MoveList moves = new MoveList();
+        MoveGenerator.generateLegal(position, moves);
+        for(int i = 0; i < moves.size(); i++) {
+            position.makeMove(moves.get(i));
+            count += check(position, depth - 1, measured);
+            position.unmakeMove(moves.get(i));
+        }
+        return count;
+    }
+
+    private static void measure(String name, int positions, long measureNanos, Operation operation) {
+        run(positions, WARMUP_NANOS, operation);
+        long start = System.nanoTime();
+        long operations = run(positions, measureNanos, operation);
+        long nanos = System.nanoTime() - start;
+        System.out.println(String.format("%-14s %10.1f ns/op %14d ops/s",
+            name, (double) nanos / operations, operations * 1000000000L / nanos));
+    }
+
+    private static long run(int positions, long nanos, Operation operation) {
+        long operations = 0;
+        long deadline = System.nanoTime() + nanos;
+        int index = 0;
+        do {
+            for(int i = 0; i < 1000; i++) {
+                operation.run(index);
+                index = index + 1 == positions ? 0 : index + 1;
+            }
+            operations += 1000;
+        } while(System.nanoTime() < deadline);
+        return operations;
+    }
+}
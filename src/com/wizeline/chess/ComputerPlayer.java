@@ -0,0 +1,170 @@
+package com.wizeline.chess;
+
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/*
+A computer opponent: a ParallelSearch over a number of threads with its own transposition
+table and a budget per move. It can play either color in the Window or be driven through
+GameEngine.playComputerMove.
+
+With an opening book set, positions found in the book are answered with one of its moves
+(chosen at random by weight, so games vary) without searching. With tablebases set,
+positions they cover are played perfectly from them, also without searching.
+
+thinkInBackground runs the same on a thread of the player, for clients such as the Window
+whose own thread must not wait for the move.
+*/
+public final class ComputerPlayer {
+    public static final int DEFAULT_HASH_MEGABYTES = 16;
+    public static final long DEFAULT_MOVE_TIME_MILLIS = 1000;
+
+    private final TranspositionTable table;
+    private final ParallelSearch search;
+    private volatile SearchLimits limits;
+    private volatile OpeningBook book;
+    private volatile Tablebase tablebase;
+    private final Random random = new Random();
+    private ExecutorService background;
+
+    public ComputerPlayer() {
+        this(DEFAULT_HASH_MEGABYTES, SearchLimits.time(DEFAULT_MOVE_TIME_MILLIS));
+    }
+
+    public ComputerPlayer(int hashMegabytes, SearchLimits limits) {
+        this(hashMegabytes, 1, limits);
+    }
+
+    public ComputerPlayer(int hashMegabytes, int threads, SearchLimits limits) {
+        this.table = new TranspositionTable(hashMegabytes);
+        this.search = new ParallelSearch(table, threads);
+        this.limits = limits;
+    }
+
+    // Searches the position within the limits and returns the move to play, the position is not modified.
+    public SearchResult think(Position position, SearchListener listener) {
+        search.clearStop();
+        return decide(position, listener);
+    }
+
+    // Thinks about a copy of the position on the thread of the player and returns at once. The
+    // listener is told about every iteration and the result through callbacks, for example
+    // SwingUtilities::invokeLater; the result's best move is Move.NONE if the search failed.
+    // The stop of the previous think is cleared here, so stop can be called as soon as this
+    // returns, even before the search has started.
+    public void thinkInBackground(Position position, final SearchListener listener, final Executor callbacks) {
+        final Position copy = new Position();
+        copy.copyFrom(position);
+        final SearchListener forward = new SearchListener() {
+            public void iterationCompleted(final SearchResult result) {
+                callbacks.execute(new Runnable() {
+                    public void run() {
+                        listener.iterationCompleted(result);
+                    }
+                });
+            }
+        };
+        search.clearStop();
+        background().execute(new Runnable() {
+            public void run() {
+                SearchResult result;
+                try {
+                    result = decide(copy, forward);
+                } catch(RuntimeException e) {
+                    e.printStackTrace();
+                    result = new SearchResult(Move.NONE, 0, 0, 0, 0, new int[0]);
+                }
+                final SearchResult finished = result;
+                callbacks.execute(new Runnable() {
+                    public void run() {
+                        listener.searchFinished(finished);
+                    }
+                });
+            }
+        });
+    }
+
+    // The move from the book, the tablebases or a search that keeps a stop already asked for.
+    private SearchResult decide(Position position, SearchListener listener) {
+        OpeningBook book = this.book;
+        if(book != null) {
+            int move = book.pickMove(position, random);
+            if(move != Move.NONE) {
+                return SearchResult.fromBook(move);
+            }
+        }
+        Tablebase tablebase = this.tablebase;
+        if(tablebase != null) {
+            int move = tablebase.bestMove(position);
+            if(move != Move.NONE) {
+                return SearchResult.fromTablebase(move, Tablebase.score(tablebase.probeWdl(position), tablebase.probeDtm(position)));
+            }
+        }
+        return search.searchUnlessStopped(position, limits, listener);
+    }
+
+    // Makes a running think return early with the best move found so far.
+    public void stop() {
+        search.stop();
+    }
+
+    public int getThreads() {
+        return search.getThreads();
+    }
+
+    // Ends the search threads; the player must not be used afterwards.
+    public void shutdown() {
+        search.shutdown();
+        synchronized(this) {
+            if(background != null) {
+                background.shutdownNow();
+            }
+        }
+    }
+
+    private synchronized ExecutorService background() {
+        if(background == null) {
+            background = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "computer-player");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return background;
+    }
+
+    public SearchLimits getLimits() {
+        return limits;
+    }
+
+    public void setLimits(SearchLimits limits) {
+        this.limits = limits;
+    }
+
+    public OpeningBook getOpeningBook() {
+        return book;
+    }
+
+    // Sets the book consulted before searching, null to always search.
+    public void setOpeningBook(OpeningBook book) {
+        this.book = book;
+    }
+
+    public Tablebase getTablebase() {
+        return tablebase;
+    }
+
+    // Sets the tablebases consulted before searching, null to always search.
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    public TranspositionTable getTranspositionTable() {
+        return table;
+    }
+}
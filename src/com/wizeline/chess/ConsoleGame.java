@@ -0,0 +1,121 @@
+package com.wizeline.chess;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+
+/*
+Text client of GameEngine used by the headless mode of Main. It reads one command per
+line and never touches AWT or Swing:
+    e2e4     play a move (coordinate notation, see GameEngine)
+    go       let the computer play the side to move
+    moves    list the legal moves
+    undo     take back the last move
+    redo     play the last move taken back again
+    board    print the board
+    fen      print the position as a FEN record, or "fen <record>" to start from one
+    quit     leave
+*/
+public final class ConsoleGame {
+    private final GameEngine engine;
+    private final ComputerPlayer computer;
+    private final BufferedReader input;
+    private final PrintStream output;
+
+    public ConsoleGame(GameEngine engine, ComputerPlayer computer, InputStream input, PrintStream output) {
+        this.engine = engine;
+        this.computer = computer;
+        this.input = new BufferedReader(new InputStreamReader(input));
+        this.output = output;
+    }
+
+    public void run() throws IOException {
+        printBoard();
+        printStatus();
+        String line;
+        while((line = input.readLine()) != null) {
+            String command = line.trim();
+            if(command.isEmpty()) {
+                continue;
+            }
+            if(command.equals("quit")) {
+                return;
+            } else if(command.equals("moves")) {
+                output.println(String.join(" ", engine.legalMoves()));
+            } else if(command.equals("go")) {
+                SearchResult result = engine.playComputerMove(computer);
+                output.println("Computer plays " + Move.name(result.getBestMove()) + " (" + result + ")");
+                printStatus();
+            } else if(command.equals("fen")) {
+                output.println(engine.getFen());
+            } else if(command.startsWith("fen ")) {
+                try {
+                    engine.reset(command.substring(4));
+                    printBoard();
+                    printStatus();
+                } catch(IllegalArgumentException e) {
+                    output.println("Rejected: " + e.getMessage());
+                }
+            } else if(command.equals("board")) {
+                printBoard();
+            } else if(command.equals("undo")) {
+                output.println(engine.undo() ? "Move taken back" : "Nothing to undo");
+                printStatus();
+            } else if(command.equals("redo")) {
+                output.println(engine.redo() ? "Move played again" : "Nothing to redo");
+                printStatus();
+            } else {
+                MoveResult result = engine.applyMove(command);
+                if(result.isAccepted()) {
+                    printStatus();
+                } else {
+                    output.println("Rejected: " + result);
+                }
+            }
+        }
+    }
+
+    private void printStatus() {
+        String player = engine.getSideToMove() == Piece.WHITE ? "White" : "Black";
+        String winner = engine.getSideToMove() == Piece.WHITE ? "Black" : "White";
+        switch(engine.status()) {
+            case CHECKMATE:
+                output.println("Checkmate! " + winner + " wins");
+                break;
+            case STALEMATE:
+                output.println("Stalemate! The game ends as a draw");
+                break;
+            case THREEFOLD_REPETITION:
+                output.println("Threefold repetition! The game ends as a draw");
+                break;
+            case CHECK:
+                output.println("Check! " + player + " to move");
+                break;
+            default:
+                output.println(player + " to move");
+                break;
+        }
+    }
+
+    private void printBoard() {
+        Position position = engine.getPosition();
+        for(int rank = 7; rank >= 0; rank--) {
+            StringBuilder line = new StringBuilder().append(rank + 1).append(' ');
+            for(int file = 0; file < 8; file++) {
+                int piece = position.pieceAt(Square.index(file, rank));
+                char letter = '.';
+                if(piece != Piece.NONE) {
+                    letter = Piece.typeLetter(Piece.typeOf(piece));
+                    if(Piece.colorOf(piece) == Piece.BLACK) {
+                        letter = Character.toLowerCase(letter);
+                    }
+                }
+                line.append(' ').append(letter);
+            }
+            output.println(line);
+        }
+        output.println("   a b c d e f g h");
+    }
+}
@@ -0,0 +1,133 @@
+package com.wizeline.chess;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+/*
+Latency of the Swing event dispatch thread while the computer thinks. A probe posts a task
+with SwingUtilities.invokeLater every PROBE_MILLIS and records how long it waited to run,
+which is how late a repaint or a click would be handled. It is measured twice over the
+same searches:
+- "search on EDT": the search runs in an invokeLater task, as Window did before, so every
+  event waits for the whole move.
+- "background": ComputerPlayer.thinkInBackground with the progress and the result passed
+  back through invokeLater, as Window does now.
+The median, 99th percentile and worst latency are printed for both. Nothing is shown on
+screen, so it runs without a display.
+
+Run it with:
+    java com.wizeline.chess.EdtLatencyBenchmark [move time in ms] [moves]
+It exits with code 1 when the worst latency with the background search is above
+MAX_BACKGROUND_LATENCY_MILLIS.
+*/
+public final class EdtLatencyBenchmark {
+    private static final int PROBE_MILLIS = 2;
+    private static final long MAX_BACKGROUND_LATENCY_MILLIS = 50;
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        long moveTime = args.length > 0 ? Long.parseLong(args[0]) : 500;
+        int moves = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+        final ComputerPlayer player = new ComputerPlayer(ComputerPlayer.DEFAULT_HASH_MEGABYTES, SearchLimits.time(moveTime));
+
+        final Position[] positions = new Position[moves];
+        for(int i = 0; i < moves; i++) {
+            positions[i] = Fen.parse((String) Perft.REFERENCE_POSITIONS[i % Perft.REFERENCE_POSITIONS.length][0]);
+        }
+
+        long[] inline = measure(new Scenario() {
+            public void think(final Position position, final CountDownLatch done) {
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        player.think(position, null);
+                        done.countDown();
+                    }
+                });
+            }
+        }, positions);
+        long[] background = measure(new Scenario() {
+            public void think(Position position, final CountDownLatch done) {
+                player.thinkInBackground(position, new SearchListener() {
+                    public void iterationCompleted(SearchResult result) {
+                    }
+
+                    public void searchFinished(SearchResult result) {
+                        done.countDown();
+                    }
+                }, new Executor() {
+                    public void execute(Runnable runnable) {
+                        SwingUtilities.invokeLater(runnable);
+                    }
+                });
+            }
+        }, positions);
+        player.shutdown();
+
+        print("search on EDT", inline);
+        print("background", background);
+        if(background[background.length - 1] > MAX_BACKGROUND_LATENCY_MILLIS * 1000000L) {
+            System.out.println("FAIL: the event dispatch thread was blocked for more than " + MAX_BACKGROUND_LATENCY_MILLIS + " ms");
+            System.exit(1);
+        }
+    }
+
+    private interface Scenario {
+        void think(Position position, CountDownLatch done);
+    }
+
+    // Runs one search per position while probing the event dispatch thread, returns the sorted latencies.
+    private static long[] measure(Scenario scenario, Position[] positions) throws InterruptedException {
+        final long[][] latencies = {new long[1024]};
+        final int[] count = new int[1];
+        ScheduledExecutorService probe = Executors.newSingleThreadScheduledExecutor();
+        probe.scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                final long posted = System.nanoTime();
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        if(count[0] == latencies[0].length) {
+                            latencies[0] = Arrays.copyOf(latencies[0], count[0] * 2);
+                        }
+                        latencies[0][count[0]++] = System.nanoTime() - posted;
+                    }
+                });
+            }
+        }, 0, PROBE_MILLIS, TimeUnit.MILLISECONDS);
+        for(Position position : positions) {
+            CountDownLatch done = new CountDownLatch(1);
+            scenario.think(position, done);
+            done.await();
+        }
+        probe.shutdown();
+        probe.awaitTermination(1, TimeUnit.SECONDS);
+        final long[][] result = new long[1][];
+        try {
+            // Read on the event dispatch thread, which wrote them.
+            SwingUtilities.invokeAndWait(new Runnable() {
+                public void run() {
+                    result[0] = Arrays.copyOf(latencies[0], count[0]);
+                }
+            });
+        } catch(InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        Arrays.sort(result[0]);
+        return result[0];
+    }
+
+    private static void print(String name, long[] latencies) {
+        System.out.println(String.format("%-14s %6d probes: p50 %8.2f ms, p99 %8.2f ms, max %8.2f ms", name, latencies.length,
+            percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6, latencies[latencies.length - 1] / 1e6));
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) (fraction * sorted.length))];
+    }
+}
@@ -0,0 +1,113 @@
+package com.wizeline.chess;
+
+/*
+Micro-benchmark for Evaluation. It first walks every legal line a few plies deep from the
+perft reference positions and checks that the incrementally kept evaluation equals the one
+computed from scratch after every makeMove and unmakeMove, then measures:
+- "incremental": Evaluation.evaluate, which reads the sums kept by Position.
+- "from scratch": Evaluation.compute, which visits every piece on the board.
+- "make+unmake": makeMove and unmakeMove of every legal move, the cost that keeping the
+  sums adds to (together with the hash and the bitboards).
+
+Run it with:
+    java com.wizeline.chess.EvalBenchmark [seconds per measurement]
+*/
+public final class EvalBenchmark {
+    private static final long WARMUP_NANOS = 500000000L;
+    private static final int CHECK_DEPTH = 3;
+
+    private static long sink;
+
+    private interface Operation {
+        int run(Position position);
+    }
+
+    public static void main(String[] args) {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 1.0;
+        long measureNanos = (long) (seconds * 1000000000L);
+
+        final Position[] positions = new Position[Perft.REFERENCE_POSITIONS.length];
+        long checked = 0;
+        for(int i = 0; i < positions.length; i++) {
+            positions[i] = Fen.parse((String) Perft.REFERENCE_POSITIONS[i][0]);
+            long count = check(positions[i], CHECK_DEPTH);
+            if(count < 0) {
+                System.out.println("Incremental evaluation differs from computed in " + Perft.REFERENCE_POSITIONS[i][0]);
+                System.exit(1);
+            }
+            checked += count;
+        }
+        System.out.println("Incremental evaluation matches in " + checked + " positions");
+
+        measure("incremental", positions, measureNanos, new Operation() {
+            public int run(Position position) {
+                return Evaluation.evaluate(position);
+            }
+        });
+        measure("from scratch", positions, measureNanos, new Operation() {
+            public int run(Position position) {
+                return Evaluation.compute(position);
+            }
+        });
+        final MoveList list = new MoveList();
+        measure("make+unmake", positions, measureNanos, new Operation() {
+            public int run(Position position) {
+                MoveGenerator.generateLegal(position, list);
+                int sum = 0;
+                for(int i = 0; i < list.size(); i++) {
+                    position.makeMove(list.get(i));
+                    sum += position.getPhase();
+                    position.unmakeMove(list.get(i));
+                }
+                return sum;
+            }
+        });
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    // Number of positions checked, or -1 as soon as the two evaluations disagree.
+    private static long check(Position position, int depth) {
+        if(Evaluation.evaluate(position) != Evaluation.compute(position)) {
+            return -1;
+        }
+        if(depth == 0) {
+            return 1;
+        }
+        MoveList list = new MoveList();
+        MoveGenerator.generateLegal(position, list);
+        long count = 1;
+        for(int i = 0; i < list.size(); i++) {
+            position.makeMove(list.get(i));
+            long below = check(position, depth - 1);
+            position.unmakeMove(list.get(i));
+            if(below < 0 || Evaluation.evaluate(position) != Evaluation.compute(position)) {
+                return -1;
+            }
+            count += below;
+        }
+        return count;
+    }
+
+    private static void measure(String name, Position[] positions, long measureNanos, Operation operation) {
+        run(positions, WARMUP_NANOS, operation);
+
+        long start = System.nanoTime();
+        long operations = run(positions, measureNanos, operation);
+        long nanos = System.nanoTime() - start;
+
+        System.out.println(String.format("%-14s %10.1f ns/op %14d ops/s",
+            name, (double) nanos / operations, operations * 1000000000L / nanos));
+    }
+
+    private static long run(Position[] positions, long nanos, Operation operation) {
+        long operations = 0;
+        long deadline = System.nanoTime() + nanos;
+        do {
+            for(int i = 0; i < 1000; i++) {
+                sink += operation.run(positions[i % positions.length]);
+            }
+            operations += 1000;
+        } while(System.nanoTime() < deadline);
+        return operations;
+    }
+}
@@ -0,0 +1,183 @@
+package com.wizeline.chess;
+
+/*
+Static evaluation of a position in centipawns from the point of view of the side to
+move: positive scores are good for the player who moves next.
+
+Every piece is worth its material value plus a piece-square bonus that depends on where
+it stands, with separate middlegame and endgame values (for example the king hides in
+the middlegame and walks to the center in the endgame). The game phase goes from 24 with
+all minor and major pieces on the board down to 0 without them, and the final score
+blends both values by phase ("tapered" evaluation).
+
+Position keeps the white-minus-black middlegame and endgame sums and the phase up to date
+whenever a piece is placed, removed or moved, so evaluate is a handful of arithmetic
+operations. compute rebuilds the same numbers from the bitboards to verify them.
+*/
+public final class Evaluation {
+    public static final int PAWN_VALUE = 100;
+    public static final int KNIGHT_VALUE = 320;
+    public static final int BISHOP_VALUE = 330;
+    public static final int ROOK_VALUE = 500;
+    public static final int QUEEN_VALUE = 900;
+
+    // Indexed by piece type, the king is never traded so it is worth nothing here.
+    static final int[] PIECE_VALUES = {PAWN_VALUE, KNIGHT_VALUE, BISHOP_VALUE, ROOK_VALUE, QUEEN_VALUE, 0};
+
+    public static final int MAX_PHASE = 24;
+    private static final int[] PHASE_WEIGHTS = {0, 1, 1, 2, 4, 0};
+
+    private static final int[] MIDDLEGAME_VALUES = {82, 337, 365, 477, 1025, 0};
+    private static final int[] ENDGAME_VALUES = {94, 281, 297, 512, 936, 0};
+
+    // Piece-square tables from white's point of view, rank 8 first as seen on a diagram.
+    private static final int[][] MIDDLEGAME_TABLES = {
+        { // Pawn
+              0,   0,   0,   0,   0,   0,   0,   0,
+             50,  50,  50,  50,  50,  50,  50,  50,
+             10,  10,  20,  30,  30,  20,  10,  10,
+              5,   5,  10,  25,  25,  10,   5,   5,
+              0,   0,   0,  20,  20,   0,   0,   0,
+              5,  -5, -10,   0,   0, -10,  -5,   5,
+              5,  10,  10, -20, -20,  10,  10,   5,
+              0,   0,   0,   0,   0,   0,   0,   0},
+        { // Knight
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            -40, -20,   0,   0,   0,   0, -20, -40,
+            -30,   0,  10,  15,  15,  10,   0, -30,
+            -30,   5,  15,  20,  20,  15,   5, -30,
+            -30,   0,  15,  20,  20,  15,   0, -30,
+            -30,   5,  10,  15,  15,  10,   5, -30,
+            -40, -20,   0,   5,   5,   0, -20, -40,
+            -50, -40, -30, -30, -30, -30, -40, -50},
+        { // Bishop
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10,   0,   0,   0,   0,   0,   0, -10,
+            -10,   0,   5,  10,  10,   5,   0, -10,
+            -10,   5,   5,  10,  10,   5,   5, -10,
+            -10,   0,  10,  10,  10,  10,   0, -10,
+            -10,  10,  10,  10,  10,  10,  10, -10,
+            -10,   5,   0,   0,   0,   0,   5, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20},
+        { // Rook
+              0,   0,   0,   0,   0,   0,   0,   0,
+              5,  10,  10,  10,  10,  10,  10,   5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+              0,   0,   0,   5,   5,   0,   0,   0},
+        { // Queen
+            -20, -10, -10,  -5,  -5, -10, -10, -20,
+            -10,   0,   0,   0,   0,   0,   0, -10,
+            -10,   0,   5,   5,   5,   5,   0, -10,
+             -5,   0,   5,   5,   5,   5,   0,  -5,
+              0,   0,   5,   5,   5,   5,   0,  -5,
+            -10,   5,   5,   5,   5,   5,   0, -10,
+            -10,   0,   5,   0,   0,   0,   0, -10,
+            -20, -10, -10,  -5,  -5, -10, -10, -20},
+        { // King
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -20, -30, -30, -40, -40, -30, -30, -20,
+            -10, -20, -20, -20, -20, -20, -20, -10,
+             20,  20,   0,   0,   0,   0,  20,  20,
+             20,  30,  10,   0,   0,  10,  30,  20},
+    };
+
+    private static final int[][] ENDGAME_TABLES = {
+        { // Pawn: passed pawns get more valuable as they advance
+              0,   0,   0,   0,   0,   0,   0,   0,
+             90,  90,  90,  90,  90,  90,  90,  90,
+             50,  50,  50,  50,  50,  50,  50,  50,
+             30,  30,  30,  30,  30,  30,  30,  30,
+             15,  15,  15,  15,  15,  15,  15,  15,
+              5,   5,   5,   5,   5,   5,   5,   5,
+              0,   0,   0,   0,   0,   0,   0,   0,
+              0,   0,   0,   0,   0,   0,   0,   0},
+        MIDDLEGAME_TABLES[Piece.KNIGHT],
+        MIDDLEGAME_TABLES[Piece.BISHOP],
+        { // Rook
+              0,   0,   0,   0,   0,   0,   0,   0,
+              0,   0,   0,   0,   0,   0,   0,   0,
+              0,   0,   0,   0,   0,   0,   0,   0,
+              0,   0,   0,   0,   0,   0,   0,   0,
+              0,   0,   0,   0,   0,   0,   0,   0,
+              0,   0,   0,   0,   0,   0,   0,   0,
+              0,   0,   0,   0,   0,   0,   0,   0,
+              0,   0,   0,   0,   0,   0,   0,   0},
+        MIDDLEGAME_TABLES[Piece.QUEEN],
+        { // King: centralize
+            -50, -40, -30, -20, -20, -30, -40, -50,
+            -30, -20, -10,   0,   0, -10, -20, -30,
+            -30, -10,  20,  30,  30,  20, -10, -30,
+            -30, -10,  30,  40,  40,  30, -10, -30,
+            -30, -10,  30,  40,  40,  30, -10, -30,
+            -30, -10,  20,  30,  30,  20, -10, -30,
+            -30, -30,   0,   0,   0,   0, -30, -30,
+            -50, -30, -30, -30, -30, -30, -30, -50},
+    };
+
+    // Material plus square bonus indexed by piece * 64 + square, negative for black pieces.
+    private static final int[] MIDDLEGAME = new int[Piece.COUNT * Square.COUNT];
+    private static final int[] ENDGAME = new int[Piece.COUNT * Square.COUNT];
+
+    static {
+        for(int piece = 0; piece < Piece.COUNT; piece++) {
+            int type = Piece.typeOf(piece);
+            boolean white = Piece.colorOf(piece) == Piece.WHITE;
+            for(int square = 0; square < Square.COUNT; square++) {
+                // The tables list rank 8 first, so white squares are flipped vertically; black reads them as is.
+                int index = white ? square ^ 56 : square;
+                int middlegame = MIDDLEGAME_VALUES[type] + MIDDLEGAME_TABLES[type][index];
+                int endgame = ENDGAME_VALUES[type] + ENDGAME_TABLES[type][index];
+                MIDDLEGAME[piece << 6 | square] = white ? middlegame : -middlegame;
+                ENDGAME[piece << 6 | square] = white ? endgame : -endgame;
+            }
+        }
+    }
+
+    private Evaluation() {
+    }
+
+    public static int evaluate(Position position) {
+        int phase = Math.min(position.getPhase(), MAX_PHASE);
+        int score = (position.getMiddlegameScore() * phase
+            + position.getEndgameScore() * (MAX_PHASE - phase)) / MAX_PHASE;
+        return position.getSideToMove() == Piece.WHITE ? score : -score;
+    }
+
+    // Same result as evaluate, but rebuilt from the bitboards instead of the incremental sums.
+    public static int compute(Position position) {
+        int middlegame = 0;
+        int endgame = 0;
+        int phase = 0;
+        long occupied = position.occupied();
+        while(occupied != 0) {
+            int square = Long.numberOfTrailingZeros(occupied);
+            occupied &= occupied - 1;
+            int piece = position.pieceAt(square);
+            middlegame += MIDDLEGAME[piece << 6 | square];
+            endgame += ENDGAME[piece << 6 | square];
+            phase += PHASE_WEIGHTS[Piece.typeOf(piece)];
+        }
+        phase = Math.min(phase, MAX_PHASE);
+        int score = (middlegame * phase + endgame * (MAX_PHASE - phase)) / MAX_PHASE;
+        return position.getSideToMove() == Piece.WHITE ? score : -score;
+    }
+
+    static int middlegame(int piece, int square) {
+        return MIDDLEGAME[piece << 6 | square];
+    }
+
+    static int endgame(int piece, int square) {
+        return ENDGAME[piece << 6 | square];
+    }
+
+    static int phaseWeight(int piece) {
+        return PHASE_WEIGHTS[Piece.typeOf(piece)];
+    }
+}
@@ -0,0 +1,210 @@
+package com.wizeline.chess;
+
+/*
+Forsyth-Edwards Notation (FEN) support. A FEN record describes a whole position in one
+line, for example the initial position:
+    rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1
+The fields are the pieces from rank 8 to rank 1, side to move, castling rights, en
+passant target square, halfmove clock and fullmove number. The last two fields are
+optional when parsing and must fit in 16 bits, the fullmove number starting at 1.
+
+Records are also checked for positions that cannot arise in a game and that the move
+generator does not expect: each side has one king, no pawn stands on the first or last
+rank, the side that just moved is not in check, castling rights have their king and rook
+on the initial squares and an en passant square lies behind a pawn that just moved two
+squares. Such records are rejected with IllegalArgumentException like malformed ones.
+
+After a double pawn push the en passant square is only written when a pawn can capture
+there, because makeMove only sets it in that case. For the same reason a record that gives
+one no pawn can capture on loads without it, so its hash is that of the played position.
+*/
+public final class Fen {
+    public static final String START_POSITION = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private static final String PIECE_LETTERS = "PNBRQKpnbrqk";
+    // Initial squares of the rooks of the castling rights K, Q, k and q.
+    private static final int[] CASTLING_ROOKS = {Square.H1, Square.A1, Square.H8, Square.A8};
+
+    private Fen() {
+    }
+
+    public static Position parse(String fen) {
+        Position position = new Position();
+        load(position, fen);
+        return position;
+    }
+
+    // Replaces the contents of the position with the one described by the FEN record.
+    public static void load(Position position, String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        if(fields.length < 4) {
+            throw new IllegalArgumentException("Invalid FEN, expected at least 4 fields: " + fen);
+        }
+        position.clear();
+        loadPieces(position, fields[0], fen);
+
+        if(fields[1].equals("w")) {
+            position.setSideToMove(Piece.WHITE);
+        } else if(fields[1].equals("b")) {
+            position.setSideToMove(Piece.BLACK);
+        } else {
+            throw new IllegalArgumentException("Invalid side to move in FEN: " + fen);
+        }
+
+        int rights = 0;
+        if(!fields[2].equals("-")) {
+            for(int i = 0; i < fields[2].length(); i++) {
+                int right = "KQkq".indexOf(fields[2].charAt(i));
+                if(right < 0) {
+                    throw new IllegalArgumentException("Invalid castling rights in FEN: " + fen);
+                }
+                rights |= 1 << right;
+            }
+        }
+        position.setCastlingRights(rights);
+
+        if(fields[3].equals("-")) {
+            position.setEnPassantSquare(Square.NONE);
+        } else {
+            int square = Square.parse(fields[3]);
+            if(square == Square.NONE) {
+                throw new IllegalArgumentException("Invalid en passant square in FEN: " + fen);
+            }
+            position.setEnPassantSquare(square);
+        }
+
+        int halfmoveClock;
+        int fullmoveNumber;
+        try {
+            halfmoveClock = fields.length > 4 ? Integer.parseInt(fields[4]) : 0;
+            fullmoveNumber = fields.length > 5 ? Integer.parseInt(fields[5]) : 1;
+        } catch(NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid move counters in FEN: " + fen, e);
+        }
+        // The range PositionCodec can store.
+        if(halfmoveClock < 0 || halfmoveClock > 0xFFFF || fullmoveNumber < 1 || fullmoveNumber > 0xFFFF) {
+            throw new IllegalArgumentException("Invalid move counters in FEN: " + fen);
+        }
+        position.setHalfmoveClock(halfmoveClock);
+        position.setFullmoveNumber(fullmoveNumber);
+        validate(position, fen);
+
+        // Kept only when a pawn can capture there, like makeMove, so the hash matches the played position.
+        int square = position.getEnPassantSquare();
+        int us = position.getSideToMove();
+        if(square != Square.NONE && (Attacks.pawn(us ^ 1, square) & position.bitboard(us, Piece.PAWN)) == 0) {
+            position.setEnPassantSquare(Square.NONE);
+        }
+    }
+
+    // The FEN record of the position.
+    public static String format(Position position) {
+        StringBuilder fen = new StringBuilder(90);
+        for(int rank = 7; rank >= 0; rank--) {
+            int empty = 0;
+            for(int file = 0; file < 8; file++) {
+                int piece = position.pieceAt(Square.index(file, rank));
+                if(piece == Piece.NONE) {
+                    empty++;
+                    continue;
+                }
+                if(empty > 0) {
+                    fen.append(empty);
+                    empty = 0;
+                }
+                fen.append(PIECE_LETTERS.charAt(piece));
+            }
+            if(empty > 0) {
+                fen.append(empty);
+            }
+            if(rank > 0) {
+                fen.append('/');
+            }
+        }
+
+        fen.append(position.getSideToMove() == Piece.WHITE ? " w " : " b ");
+        int rights = position.getCastlingRights();
+        if(rights == 0) {
+            fen.append('-');
+        }
+        for(int right = 0; right < 4; right++) {
+            if((rights & (1 << right)) != 0) {
+                fen.append("KQkq".charAt(right));
+            }
+        }
+        fen.append(' ');
+        int square = position.getEnPassantSquare();
+        fen.append(square == Square.NONE ? "-" : Square.name(square));
+        fen.append(' ').append(position.getHalfmoveClock());
+        fen.append(' ').append(position.getFullmoveNumber());
+        return fen.toString();
+    }
+
+    // Rejects the positions described in the class comment.
+    private static void validate(Position position, String fen) {
+        for(int color = Piece.WHITE; color <= Piece.BLACK; color++) {
+            if(Long.bitCount(position.bitboard(color, Piece.KING)) != 1) {
+                throw new IllegalArgumentException("Invalid FEN, each side needs exactly one king: " + fen);
+            }
+        }
+        long backRanks = 0xFF000000000000FFL;
+        if(((position.bitboard(Piece.WHITE, Piece.PAWN) | position.bitboard(Piece.BLACK, Piece.PAWN)) & backRanks) != 0) {
+            throw new IllegalArgumentException("Invalid FEN, pawn on the first or last rank: " + fen);
+        }
+        int us = position.getSideToMove();
+        if(position.isAttacked(position.kingSquare(us ^ 1), us)) {
+            throw new IllegalArgumentException("Invalid FEN, the side not to move is in check: " + fen);
+        }
+
+        int rights = position.getCastlingRights();
+        for(int right = 0; right < 4; right++) {
+            int color = right < 2 ? Piece.WHITE : Piece.BLACK;
+            if((rights & (1 << right)) != 0
+                    && (position.pieceAt(right < 2 ? Square.E1 : Square.E8) != Piece.make(color, Piece.KING)
+                    || position.pieceAt(CASTLING_ROOKS[right]) != Piece.make(color, Piece.ROOK))) {
+                throw new IllegalArgumentException("Invalid castling rights in FEN, king or rook moved: " + fen);
+            }
+        }
+
+        int square = position.getEnPassantSquare();
+        if(square != Square.NONE) {
+            // The pawn of the other side moved from behind the square to in front of it.
+            int forward = us == Piece.WHITE ? 8 : -8;
+            int rank = us == Piece.WHITE ? 5 : 2;
+            if(Square.rank(square) != rank || !position.isEmpty(square) || !position.isEmpty(square + forward)
+                    || position.pieceAt(square - forward) != Piece.make(us ^ 1, Piece.PAWN)) {
+                throw new IllegalArgumentException("Invalid en passant square in FEN: " + fen);
+            }
+        }
+    }
+
+    private static void loadPieces(Position position, String placement, String fen) {
+        int rank = 7;
+        int file = 0;
+        for(int i = 0; i < placement.length(); i++) {
+            char c = placement.charAt(i);
+            if(c == '/') {
+                if(file != 8 || rank == 0) {
+                    throw new IllegalArgumentException("Invalid piece placement in FEN: " + fen);
+                }
+                rank--;
+                file = 0;
+            } else if(c >= '1' && c <= '8') {
+                file += c - '0';
+            } else {
+                int piece = PIECE_LETTERS.indexOf(c);
+                if(piece < 0 || file > 7) {
+                    throw new IllegalArgumentException("Invalid piece placement in FEN: " + fen);
+                }
+                position.putPiece(piece, Square.index(file, rank));
+                file++;
+            }
+            if(file > 8) {
+                throw new IllegalArgumentException("Invalid piece placement in FEN: " + fen);
+            }
+        }
+        if(rank != 0 || file != 8) {
+            throw new IllegalArgumentException("Invalid piece placement in FEN: " + fen);
+        }
+    }
+}
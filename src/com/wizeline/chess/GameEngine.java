@@ -0,0 +1,307 @@
+package com.wizeline.chess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+The GameEngine class holds one game and enforces the rules of chess on it. It does not
+depend on AWT or Swing, so it can be used from servers, batch jobs and benchmarks as well
+as from the Window class.
+
+Moves are given in coordinate notation: the origin square followed by the target square,
+for example "e2e4". A promotion may add the piece letter ("e7e8n"); without it the pawn
+becomes a queen. Any other move with a piece letter is illegal. Castling is written as the
+king move ("e1g1").
+
+The legal moves of the current position are generated once after every change and kept,
+so validating a move is a lookup in that list.
+
+Every move played is kept in a history of packed moves. undo takes the last one back with
+Position.unmakeMove, which restores the captured piece, castling rights, en passant square,
+halfmove clock and hash from its own stack, so neither undo nor redo copies the position.
+Taken back moves stay in the history after the current one until a different move is
+played, and redo plays them again.
+
+A game attached to a GameJournal appends every change to it (see GameJournal.attach).
+
+Parsing, the legality check, applying a move and generating the moves of the new position
+are timed by Metrics when it is enabled.
+*/
+public final class GameEngine {
+    private final Position position = new Position();
+    private final MoveList legalMoves = new MoveList();
+    private GameStatus status;
+
+    private int[] history = new int[256];
+    private int historySize;
+    // Moves history[historySize..historyEnd) were taken back and can be redone.
+    private int historyEnd;
+    private GameJournal journal;
+    private long journalId;
+
+    public GameEngine() {
+        this(Fen.START_POSITION);
+    }
+
+    public GameEngine(String fen) {
+        reset(fen);
+    }
+
+    // Starts a new game from the position described by the FEN record.
+    // An invalid record throws IllegalArgumentException and leaves the game as it was.
+    public void reset(String fen) {
+        Position start = Fen.parse(fen);
+        byte[] record = journal == null ? null : journal.encodeStart(journalId, start);
+        position.copyFrom(start);
+        historySize = 0;
+        historyEnd = 0;
+        refresh();
+        if(record != null) {
+            journal.write(journalId, record);
+        }
+    }
+
+    public MoveResult applyMove(String input) {
+        MoveResult result = validateAndPlay(input);
+        (result.isAccepted() ? Metrics.MOVES_ACCEPTED : Metrics.MOVES_REJECTED).increment();
+        return result;
+    }
+
+    private MoveResult validateAndPlay(String input) {
+        Metrics.Span span = Metrics.MOVE_PARSE.start();
+        int decoded = decode(input);
+        span.stop();
+        if(decoded < 0) {
+            return MoveResult.INVALID_INPUT;
+        }
+        int from = Move.from(decoded);
+        int to = Move.to(decoded);
+        if(status.isOver()) {
+            return MoveResult.GAME_OVER;
+        }
+        int piece = position.pieceAt(from);
+        if(piece == Piece.NONE) {
+            return MoveResult.EMPTY_SQUARE;
+        }
+        if(Piece.colorOf(piece) != position.getSideToMove()) {
+            return MoveResult.WRONG_TURN;
+        }
+        span = Metrics.MOVE_LEGALITY.start();
+        int move = findMove(decoded);
+        span.stop();
+        if(move == Move.NONE) {
+            return MoveResult.ILLEGAL_MOVE;
+        }
+        play(move);
+        return MoveResult.ACCEPTED;
+    }
+
+    // Applies a packed move, returns false when the game is over or it is not legal in the current position.
+    public boolean applyMove(int move) {
+        if(status.isOver()) {
+            Metrics.MOVES_REJECTED.increment();
+            return false;
+        }
+        Metrics.Span span = Metrics.MOVE_LEGALITY.start();
+        boolean legal = move != Move.NONE && legalMoves.contains(move);
+        span.stop();
+        (legal ? Metrics.MOVES_ACCEPTED : Metrics.MOVES_REJECTED).increment();
+        if(!legal) {
+            return false;
+        }
+        play(move);
+        return true;
+    }
+
+    // Returns the legal packed move written in coordinate notation, or Move.NONE.
+    public int parseMove(String input) {
+        int decoded = decode(input);
+        return decoded < 0 ? Move.NONE : findMove(decoded);
+    }
+
+    // Lets the computer player choose a move for the side to move and plays it.
+    // Returns the search result, whose best move is Move.NONE when the game is over.
+    public SearchResult playComputerMove(ComputerPlayer player) {
+        return playComputerMove(player, null);
+    }
+
+    public SearchResult playComputerMove(ComputerPlayer player, SearchListener listener) {
+        if(status.isOver()) {
+            return new SearchResult(Move.NONE, 0, 0, 0, 0, new int[0]);
+        }
+        SearchResult result = player.think(position, listener);
+        applyMove(result.getBestMove());
+        return result;
+    }
+
+    // Takes back the last move, returns false when there is none.
+    public boolean undo() {
+        if(historySize == 0) {
+            return false;
+        }
+        position.unmakeMove(history[--historySize]);
+        refresh();
+        if(journal != null) {
+            journal.undo(journalId);
+        }
+        return true;
+    }
+
+    // Plays the last move taken back again, returns false when there is none.
+    public boolean redo() {
+        if(historySize == historyEnd) {
+            return false;
+        }
+        position.makeMove(history[historySize++]);
+        refresh();
+        if(journal != null) {
+            journal.move(journalId, history[historySize - 1]);
+        }
+        return true;
+    }
+
+    public boolean canUndo() {
+        return historySize > 0;
+    }
+
+    public boolean canRedo() {
+        return historySize < historyEnd;
+    }
+
+    // Legal moves of the side to move in coordinate notation.
+    public List<String> legalMoves() {
+        List<String> moves = new ArrayList<String>(legalMoves.size());
+        for(int i = 0; i < legalMoves.size(); i++) {
+            moves.add(Move.name(legalMoves.get(i)));
+        }
+        return moves;
+    }
+
+    public boolean isLegal(int move) {
+        return legalMoves.contains(move);
+    }
+
+    public GameStatus status() {
+        return status;
+    }
+
+    // The current position as a FEN record.
+    public String getFen() {
+        return Fen.format(position);
+    }
+
+    // Zobrist key of the current position.
+    public long getHash() {
+        return position.getHash();
+    }
+
+    public boolean isThreefoldRepetition() {
+        return position.isThreefoldRepetition();
+    }
+
+    public int getSideToMove() {
+        return position.getSideToMove();
+    }
+
+    public int getLastMove() {
+        return historySize == 0 ? Move.NONE : history[historySize - 1];
+    }
+
+    // Moves played since the game started, oldest first.
+    public int[] getMoveHistory() {
+        return Arrays.copyOf(history, historySize);
+    }
+
+    // The position of the game. It must only be read, changes go through applyMove, undo and redo.
+    public Position getPosition() {
+        return position;
+    }
+
+    // Splits coordinate notation into origin, target and promotion type packed like a move, -1 if malformed.
+    // Bit 15 is set when the promotion letter was written.
+    private static int decode(String input) {
+        if(input == null) {
+            return -1;
+        }
+        String text = input.trim().toLowerCase();
+        if(text.length() != 4 && text.length() != 5) {
+            return -1;
+        }
+        int from = Square.parse(text, 0);
+        int to = Square.parse(text, 2);
+        int promotion = text.length() == 5 ? "pnbrqk".indexOf(text.charAt(4)) : Piece.QUEEN;
+        if(from == Square.NONE || to == Square.NONE || promotion < Piece.KNIGHT || promotion > Piece.QUEEN) {
+            return -1;
+        }
+        return from | (to << 6) | (promotion << 12) | (text.length() == 5 ? 1 << 15 : 0);
+    }
+
+    // The legal move matching a decoded input, Move.NONE when there is none or the input has a
+    // promotion letter and the move is no promotion.
+    private int findMove(int decoded) {
+        int from = Move.from(decoded);
+        int to = Move.to(decoded);
+        int promotion = (decoded >>> 12) & 7;
+        boolean promotionGiven = (decoded & (1 << 15)) != 0;
+        for(int i = 0; i < legalMoves.size(); i++) {
+            int move = legalMoves.get(i);
+            if(Move.from(move) == from && Move.to(move) == to) {
+                if(!Move.isPromotion(move)) {
+                    return promotionGiven ? Move.NONE : move;
+                }
+                if(Move.promotionType(move) == promotion) {
+                    return move;
+                }
+            }
+        }
+        return Move.NONE;
+    }
+
+    // Plays a legal move; the moves that could be redone are dropped unless it is the next of them.
+    private void play(int move) {
+        Metrics.Span span = Metrics.MOVE_APPLY.start();
+        if(historySize == history.length) {
+            history = Arrays.copyOf(history, historySize * 2);
+        }
+        if(historySize == historyEnd || history[historySize] != move) {
+            historyEnd = historySize + 1;
+        }
+        history[historySize++] = move;
+        position.makeMove(move);
+        span.stop();
+        if(Move.isCapture(move)) {
+            Metrics.CAPTURES.increment();
+        }
+        refresh();
+        if(journal != null) {
+            journal.move(journalId, move);
+        }
+    }
+
+    // Called by GameJournal; null stops journaling.
+    void setJournal(GameJournal journal, long journalId) {
+        this.journal = journal;
+        this.journalId = journalId;
+    }
+
+    // Plays moves read back by GameJournal, which were legal when they were journaled, without
+    // checking them one by one. They are not journaled again.
+    void restore(int[] moves, int count) {
+        for(int i = 0; i < count; i++) {
+            if(historySize == history.length) {
+                history = Arrays.copyOf(history, historySize * 2);
+            }
+            history[historySize++] = moves[i];
+            position.makeMove(moves[i]);
+        }
+        historyEnd = historySize;
+        refresh();
+    }
+
+    private void refresh() {
+        Metrics.Span span = Metrics.MOVE_GENERATION.start();
+        status = MoveGenerator.status(position, legalMoves);
+        span.stop();
+    }
+}
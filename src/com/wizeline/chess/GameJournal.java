@@ -0,0 +1,462 @@
+package com.wizeline.chess;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/*
+Append-only journal of games, so the games in progress survive the end of the process.
+A GameEngine attached to the journal appends a record for every change of its game: the
+start position, every move played (also by redo), every move taken back and the end of
+the game. Records are RECORD_SIZE (16) bytes, big-endian:
+    bytes 0-3    CRC32 of bytes 4-15 and of the extension records that follow
+    bytes 4-11   game id
+    byte 12      type: START, START_POSITION, MOVE, UNDO or END
+    byte 13      number of extension records that follow
+    bytes 14-15  packed move (see Move), MOVE only
+START is a game from the initial position. START_POSITION is followed by two extension
+records holding the position in the 30 bytes of PositionCodec.
+
+The journal is a directory of segment files of the same size, journal-<index>.log, each
+created at its full size and memory-mapped, so appending a record is a copy into memory
+under a short lock. When a segment is full the journal continues in a new one; segments
+older than the start of every live game are deleted then. Once written to the mapping a
+record survives the process being killed. To also survive a crash of the operating system
+a committer thread forces the mapped pages to disk: it forces whatever was appended since
+its last force in one call, so writers waiting in sync() share one disk flush (group
+commit) instead of paying one each.
+
+Opening a journal recovers the games that were not ended: every segment is read in order
+up to the first record whose checksum does not match (a record torn by a crash, or the
+zeros after the last one). The moves of each live game are collected first and played
+without validation at the end, as they were legal when they were journaled; the history
+of a recovered game ends at its current move, moves taken back cannot be redone. The
+recovered games are attached to the journal again and handed out by takeRecoveredGame.
+New records always go to a new segment, and the segments of ended games are deleted.
+
+Games can be appended to from several threads at once.
+*/
+public final class GameJournal implements Closeable {
+    public static final int RECORD_SIZE = 16;
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    static final int START = 1;
+    static final int START_POSITION = 2;
+    static final int MOVE = 3;
+    static final int UNDO = 4;
+    static final int END = 5;
+    private static final int POSITION_RECORDS = (PositionCodec.ENCODED_SIZE + RECORD_SIZE - 1) / RECORD_SIZE;
+
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Thread committer;
+    private final Map<Long, GameEngine> recovered = new ConcurrentHashMap<Long, GameEngine>();
+    private final AtomicLong nextGameId = new AtomicLong(1);
+    private final long recoveredRecords;
+    private final long recoveryNanos;
+
+    // Guarded by this.
+    private MappedByteBuffer segment;
+    private int segmentIndex;
+    private int oldestSegment;
+    // Full segments whose last records were not forced yet.
+    private final List<MappedByteBuffer> retired = new ArrayList<MappedByteBuffer>();
+    // Segment of the last start of every live game.
+    private final Map<Long, Integer> startSegments = new HashMap<Long, Integer>();
+    private long appended;
+    private long durable;
+    private long commits;
+    private boolean committerWaiting;
+    private boolean closed;
+
+    public GameJournal(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public GameJournal(Path directory, int segmentSize) throws IOException {
+        if(segmentSize < RECORD_SIZE * (1 + POSITION_RECORDS)) {
+            throw new IllegalArgumentException("Journal segments are too small: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize - segmentSize % RECORD_SIZE;
+        Files.createDirectories(directory);
+
+        long start = System.nanoTime();
+        List<Integer> indexes = segmentIndexes();
+        Map<Long, GameReplay> games = new HashMap<Long, GameReplay>();
+        long records = 0;
+        for(int index : indexes) {
+            records += replay(index, games);
+        }
+        for(Map.Entry<Long, GameReplay> entry : games.entrySet()) {
+            GameEngine engine = entry.getValue().restore();
+            engine.setJournal(this, entry.getKey());
+            recovered.put(entry.getKey(), engine);
+            startSegments.put(entry.getKey(), entry.getValue().startSegment);
+        }
+        recoveredRecords = records;
+        recoveryNanos = System.nanoTime() - start;
+
+        oldestSegment = indexes.isEmpty() ? 0 : indexes.get(0);
+        segmentIndex = indexes.isEmpty() ? 0 : indexes.get(indexes.size() - 1) + 1;
+        segment = createSegment(segmentIndex);
+        deleteUnusedSegments();
+        committer = new Thread(new Runnable() {
+            public void run() {
+                commit();
+            }
+        }, "game-journal-committer");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    // A game id not used by any game of the journal yet.
+    public long newGameId() {
+        return nextGameId.getAndIncrement();
+    }
+
+    // Ids of the recovered games not taken yet.
+    public Set<Long> getRecoveredGameIds() {
+        return Collections.unmodifiableSet(recovered.keySet());
+    }
+
+    // Removes a recovered game from the journal's list and returns it, still attached to the
+    // journal under its id, or null when there is no such game.
+    public GameEngine takeRecoveredGame(long gameId) {
+        return recovered.remove(gameId);
+    }
+
+    // Records the current position of the game as the start of a game with the id, and every
+    // change of the game from now on. Moves played before are not journaled.
+    public void attach(GameEngine engine, long gameId) {
+        engine.setJournal(this, gameId);
+        start(gameId, engine.getPosition());
+    }
+
+    // Records the end of the game attached under the id and stops journaling it.
+    public void detach(GameEngine engine, long gameId) {
+        engine.setJournal(null, 0);
+        end(gameId);
+    }
+
+    void start(long gameId, Position position) {
+        write(gameId, encodeStart(gameId, position));
+    }
+
+    // The record starting the game with the id from the position, to be appended with write.
+    // Throws IllegalArgumentException when the position cannot be encoded, before any change.
+    byte[] encodeStart(long gameId, Position position) {
+        if(Fen.format(position).equals(Fen.START_POSITION)) {
+            return encode(gameId, START, Move.NONE, null);
+        }
+        byte[] extension = new byte[POSITION_RECORDS * RECORD_SIZE];
+        PositionCodec.encode(position, extension, 0);
+        return encode(gameId, START_POSITION, Move.NONE, extension);
+    }
+
+    void move(long gameId, int move) {
+        append(gameId, MOVE, move, null);
+    }
+
+    void undo(long gameId) {
+        append(gameId, UNDO, Move.NONE, null);
+    }
+
+    void end(long gameId) {
+        append(gameId, END, Move.NONE, null);
+    }
+
+    private void append(long gameId, int type, int move, byte[] extension) {
+        write(gameId, encode(gameId, type, move, extension));
+    }
+
+    private static byte[] encode(long gameId, int type, int move, byte[] extension) {
+        int extensionRecords = extension == null ? 0 : extension.length / RECORD_SIZE;
+        byte[] data = new byte[(1 + extensionRecords) * RECORD_SIZE];
+        ByteBuffer record = ByteBuffer.wrap(data).order(ByteOrder.BIG_ENDIAN);
+        record.putLong(4, gameId);
+        data[12] = (byte) type;
+        data[13] = (byte) extensionRecords;
+        record.putShort(14, (short) move);
+        if(extension != null) {
+            System.arraycopy(extension, 0, data, RECORD_SIZE, extension.length);
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(data, 4, data.length - 4);
+        record.putInt(0, (int) checksum.getValue());
+        return data;
+    }
+
+    // Appends a record made by encode or encodeStart.
+    void write(long gameId, byte[] data) {
+        int type = data[12];
+        synchronized(this) {
+            if(closed) {
+                throw new IllegalStateException("The game journal is closed");
+            }
+            if(segment.remaining() < data.length) {
+                rotate();
+            }
+            segment.put(data);
+            appended++;
+            if(type == START || type == START_POSITION) {
+                startSegments.put(gameId, segmentIndex);
+            } else if(type == END) {
+                startSegments.remove(gameId);
+            }
+            if(committerWaiting) {
+                notifyAll();
+            }
+        }
+    }
+
+    // Waits until every record appended so far is on disk.
+    public void sync() throws InterruptedException {
+        synchronized(this) {
+            long target = appended;
+            while(durable < target && !closed) {
+                if(committerWaiting) {
+                    notifyAll();
+                }
+                wait();
+            }
+        }
+    }
+
+    // Records appended since the journal was opened.
+    public synchronized long getAppendedRecords() {
+        return appended;
+    }
+
+    // Times the committer forced the journal to disk.
+    public synchronized long getCommits() {
+        return commits;
+    }
+
+    // Records read when the journal was opened, and how long reading and replaying them took.
+    public long getRecoveredRecords() {
+        return recoveredRecords;
+    }
+
+    public long getRecoveryNanos() {
+        return recoveryNanos;
+    }
+
+    // Forces the remaining records to disk and stops the committer. The games attached must
+    // not be changed afterwards.
+    public void close() throws IOException {
+        synchronized(this) {
+            if(closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            committer.join();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized(this) {
+            for(MappedByteBuffer buffer : retired) {
+                buffer.force();
+            }
+            retired.clear();
+            segment.force();
+            durable = appended;
+            notifyAll();
+        }
+    }
+
+    // The committer thread: forces everything appended while the previous force ran.
+    private void commit() {
+        List<MappedByteBuffer> toForce = new ArrayList<MappedByteBuffer>();
+        while(true) {
+            long target;
+            synchronized(this) {
+                while(durable == appended && !closed) {
+                    committerWaiting = true;
+                    try {
+                        wait();
+                    } catch(InterruptedException e) {
+                        return;
+                    } finally {
+                        committerWaiting = false;
+                    }
+                }
+                if(closed) {
+                    return;
+                }
+                target = appended;
+                toForce.addAll(retired);
+                retired.clear();
+                toForce.add(segment);
+            }
+            for(MappedByteBuffer buffer : toForce) {
+                buffer.force();
+            }
+            toForce.clear();
+            synchronized(this) {
+                durable = target;
+                commits++;
+                notifyAll();
+            }
+        }
+    }
+
+    // Continues in a new segment and deletes the segments no live game needs any more.
+    private void rotate() {
+        retired.add(segment);
+        segmentIndex++;
+        try {
+            segment = createSegment(segmentIndex);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        deleteUnusedSegments();
+    }
+
+    private void deleteUnusedSegments() {
+        int needed = segmentIndex;
+        for(int index : startSegments.values()) {
+            needed = Math.min(needed, index);
+        }
+        for(; oldestSegment < needed; oldestSegment++) {
+            try {
+                Files.deleteIfExists(segmentPath(oldestSegment));
+            } catch(IOException e) {
+                // Kept: replaying it again is harmless, its games ended later.
+            }
+        }
+    }
+
+    private MappedByteBuffer createSegment(int index) throws IOException {
+        try(FileChannel channel = FileChannel.open(segmentPath(index), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            return buffer;
+        }
+    }
+
+    private Path segmentPath(int index) {
+        return directory.resolve(String.format("%s%08d%s", PREFIX, index, SUFFIX));
+    }
+
+    private List<Integer> segmentIndexes() throws IOException {
+        List<Integer> indexes = new ArrayList<Integer>();
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for(Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    indexes.add(Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+                } catch(NumberFormatException e) {
+                    // Not a segment.
+                }
+            }
+        }
+        Collections.sort(indexes);
+        return indexes;
+    }
+
+    // Reads the valid records of a segment into the games, returns how many there were.
+    private long replay(int index, Map<Long, GameReplay> games) throws IOException {
+        MappedByteBuffer buffer;
+        try(FileChannel channel = FileChannel.open(segmentPath(index), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        byte[] data = new byte[(1 + POSITION_RECORDS) * RECORD_SIZE];
+        CRC32 checksum = new CRC32();
+        long records = 0;
+        while(buffer.remaining() >= RECORD_SIZE) {
+            int offset = buffer.position();
+            int extensionRecords = buffer.get(offset + 13) & 0xFF;
+            int length = (1 + extensionRecords) * RECORD_SIZE;
+            if(extensionRecords > POSITION_RECORDS || buffer.remaining() < length) {
+                break;
+            }
+            buffer.get(data, 0, length);
+            checksum.reset();
+            checksum.update(data, 4, length - 4);
+            if((int) checksum.getValue() != buffer.getInt(offset)) {
+                break;
+            }
+            records++;
+            long gameId = buffer.getLong(offset + 4);
+            nextGameId.set(Math.max(nextGameId.get(), gameId + 1));
+            int type = data[12];
+            GameReplay game = games.get(gameId);
+            if(type == START || type == START_POSITION) {
+                Position position = null;
+                if(type == START_POSITION) {
+                    position = PositionCodec.decode(Arrays.copyOfRange(data, RECORD_SIZE, RECORD_SIZE + PositionCodec.ENCODED_SIZE));
+                }
+                games.put(gameId, new GameReplay(position, index));
+            } else if(game == null) {
+                // The start of the game was in a segment deleted after the game ended.
+                continue;
+            } else if(type == MOVE) {
+                game.add(buffer.getShort(offset + 14) & 0xFFFF);
+            } else if(type == UNDO) {
+                game.undo();
+            } else if(type == END) {
+                games.remove(gameId);
+            }
+        }
+        return records;
+    }
+
+    // A live game read from the journal: its start position and the moves played since.
+    private static final class GameReplay {
+        private final Position start;
+        private final int startSegment;
+        private int[] moves = new int[64];
+        private int size;
+
+        GameReplay(Position start, int startSegment) {
+            this.start = start;
+            this.startSegment = startSegment;
+        }
+
+        void add(int move) {
+            if(size == moves.length) {
+                moves = Arrays.copyOf(moves, size * 2);
+            }
+            moves[size++] = move;
+        }
+
+        void undo() {
+            if(size > 0) {
+                size--;
+            }
+        }
+
+        GameEngine restore() {
+            GameEngine engine = new GameEngine(start == null ? Fen.START_POSITION : Fen.format(start));
+            engine.restore(moves, size);
+            return engine;
+        }
+    }
+}
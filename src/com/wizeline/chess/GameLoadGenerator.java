@@ -0,0 +1,241 @@
+package com.wizeline.chess;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/*
+Load generator for the GameServer. It opens a number of sessions, keeps all of them open
+at the same time and lets every session play random games: it sends "move", waits for the
+reply, thinks for a while and sends the next one. The first moves are spread over the
+think time so the sessions do not all move at once. With a think time of 0 every session
+always has a move in flight, which measures the throughput of the server instead (the
+latency is then mostly the time a move waits behind those of the other sessions). Each
+client keeps its own Position to choose legal moves and, at the end, compares it with the
+FEN record of the server, so the replies are checked as well as timed.
+
+The latency of a move is the time from sending the command until the reply was read,
+which includes the validation by the server's GameEngine, the loopback network and the
+waiting in the event loops of both sides. Its median, 99th percentile and maximum are
+printed with the moves per second.
+
+Without an address the server is started in a child JVM (started with the classpath of
+this one), as a process only has enough file descriptors for one side of 10,000
+connections.
+
+Run it with:
+    java com.wizeline.chess.GameLoadGenerator [sessions] [moves per session] [think ms] [host:port]
+It exits with code 1 when a move was rejected or a position differs from the server's.
+*/
+public final class GameLoadGenerator {
+    // Games are restarted after this many plies so sessions do not play endless shuffles.
+    private static final int MAX_GAME_PLIES = 200;
+
+    private final long thinkNanos;
+    private final PriorityQueue<Client> thinking = new PriorityQueue<Client>(11, new Comparator<Client>() {
+        public int compare(Client a, Client b) {
+            return Long.compare(a.dueNanos, b.dueNanos);
+        }
+    });
+    private final long[] latencies;
+    private int latencyCount;
+    private int finishedSessions;
+    private int errors;
+
+    private GameLoadGenerator(int sessions, int movesPerSession, long thinkMillis) {
+        thinkNanos = thinkMillis * 1000000L;
+        latencies = new long[sessions * movesPerSession];
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int movesPerSession = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        long thinkMillis = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+        Process server = null;
+        InetSocketAddress address;
+        if(args.length > 3) {
+            int colon = args[3].lastIndexOf(':');
+            address = new InetSocketAddress(args[3].substring(0, colon), Integer.parseInt(args[3].substring(colon + 1)));
+        } else {
+            String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+            server = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), GameServer.class.getName(), "0")
+                .redirectErrorStream(true).start();
+            String line = new BufferedReader(new InputStreamReader(server.getInputStream(), StandardCharsets.US_ASCII)).readLine();
+            if(line == null || !line.startsWith("Listening on port ")) {
+                throw new IllegalStateException("Server did not start: " + line);
+            }
+            address = new InetSocketAddress("127.0.0.1", Integer.parseInt(line.split(" ")[3]));
+        }
+
+        try {
+            GameLoadGenerator generator = new GameLoadGenerator(sessions, movesPerSession, thinkMillis);
+            generator.run(address, sessions, movesPerSession);
+            if(generator.errors > 0) {
+                System.out.println("FAIL: " + generator.errors + " sessions disagreed with the server");
+                System.exit(1);
+            }
+        } finally {
+            if(server != null) {
+                server.destroy();
+            }
+        }
+    }
+
+    private void run(InetSocketAddress address, int sessions, int movesPerSession) throws IOException {
+        Selector selector = Selector.open();
+        long start = System.nanoTime();
+        Client[] clients = new Client[sessions];
+        for(int i = 0; i < sessions; i++) {
+            SocketChannel channel = SocketChannel.open(address);
+            channel.socket().setTcpNoDelay(true);
+            channel.configureBlocking(false);
+            clients[i] = new Client(channel, new Random(i), movesPerSession);
+            channel.register(selector, SelectionKey.OP_READ, clients[i]);
+        }
+        System.out.println(String.format("%d sessions connected in %.0f ms", sessions, (System.nanoTime() - start) / 1e6));
+
+        start = System.nanoTime();
+        Random random = new Random();
+        for(Client client : clients) {
+            client.dueNanos = start + (thinkNanos == 0 ? 0 : (long) (random.nextDouble() * thinkNanos));
+            thinking.add(client);
+        }
+        while(finishedSessions < sessions) {
+            long now = System.nanoTime();
+            while(!thinking.isEmpty() && thinking.peek().dueNanos <= now) {
+                thinking.poll().sendMove();
+            }
+            if(thinking.isEmpty()) {
+                selector.select();
+            } else {
+                selector.select(Math.max(1, (thinking.peek().dueNanos - now) / 1000000L));
+            }
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while(keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                ((Client) key.attachment()).read();
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        for(Client client : clients) {
+            client.channel.close();
+        }
+        selector.close();
+
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        System.out.println(String.format("%d moves in %.1f s: %.0f moves/s, latency p50 %.3f ms, p99 %.3f ms, max %.3f ms",
+            sorted.length, nanos / 1e9, sorted.length * 1e9 / nanos, percentile(sorted, 0.50) / 1e6,
+            percentile(sorted, 0.99) / 1e6, sorted[sorted.length - 1] / 1e6));
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) (fraction * sorted.length))];
+    }
+
+    // One session: its channel, the position it expects the server to have and the command in flight.
+    private final class Client {
+        private final SocketChannel channel;
+        private final Random random;
+        private final Position position = Fen.parse(Fen.START_POSITION);
+        private final MoveList moves = new MoveList();
+        private final ByteBuffer input = ByteBuffer.allocate(GameServer.MAX_LINE_LENGTH);
+        private final StringBuilder line = new StringBuilder();
+        private int movesLeft;
+        private int pendingMove = Move.NONE;
+        private boolean restarting;
+        private boolean checking;
+        private long sentNanos;
+        private long dueNanos;
+
+        Client(SocketChannel channel, Random random, int moves) {
+            this.channel = channel;
+            this.random = random;
+            this.movesLeft = moves;
+        }
+
+        void sendMove() throws IOException {
+            MoveGenerator.generateLegal(position, moves);
+            if(moves.isEmpty() || position.getHalfmoveClock() >= 100 || position.isThreefoldRepetition()
+                    || position.getFullmoveNumber() * 2 > MAX_GAME_PLIES) {
+                restarting = true;
+                Fen.load(position, Fen.START_POSITION);
+                send("new");
+                return;
+            }
+            pendingMove = moves.get(random.nextInt(moves.size()));
+            sentNanos = System.nanoTime();
+            send("move " + Move.name(pendingMove));
+        }
+
+        void read() throws IOException {
+            if(channel.read(input) < 0) {
+                throw new IOException("Server closed the connection");
+            }
+            input.flip();
+            while(input.hasRemaining()) {
+                char c = (char) (input.get() & 0xff);
+                if(c == '\n') {
+                    handle(line.toString());
+                    line.setLength(0);
+                } else {
+                    line.append(c);
+                }
+            }
+            input.clear();
+        }
+
+        private void handle(String reply) throws IOException {
+            if(checking) {
+                if(!reply.equals("ok " + Fen.format(position))) {
+                    System.out.println("Position differs: " + reply + " instead of " + Fen.format(position));
+                    errors++;
+                }
+                finishedSessions++;
+                return;
+            }
+            boolean restarted = restarting;
+            if(restarted) {
+                restarting = false;
+            } else {
+                latencies[latencyCount++] = System.nanoTime() - sentNanos;
+                if(!reply.startsWith("ok")) {
+                    System.out.println("Move " + Move.name(pendingMove) + " rejected: " + reply);
+                    errors++;
+                }
+                position.makeMove(pendingMove);
+                movesLeft--;
+            }
+            if(movesLeft == 0) {
+                checking = true;
+                send("fen");
+            } else if(thinkNanos == 0 || restarted) {
+                sendMove();
+            } else {
+                dueNanos = System.nanoTime() + thinkNanos;
+                thinking.add(this);
+            }
+        }
+
+        private void send(String command) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap((command + "\n").getBytes(StandardCharsets.US_ASCII));
+            // A command is a few bytes and only one is in flight, so it always fits the socket buffer.
+            while(buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
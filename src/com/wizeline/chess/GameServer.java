@@ -0,0 +1,285 @@
+package com.wizeline.chess;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Hosts many games over TCP at once, one GameSession per connection, speaking the line
+protocol of GameSession. It does not depend on AWT or Swing.
+
+A thread per connection does not scale to thousands of games, so the connections are
+spread over a few event loops, each a thread with a Selector over non-blocking channels.
+Every session belongs to one loop for its whole life, so its GameEngine is only touched by
+that thread and needs no locks, and its commands are executed in order. A loop reads what
+a client sent, executes every complete line and writes the replies; a reply that does not
+fit into the socket buffer is written when the channel becomes writable again. An acceptor
+thread hands new connections to the loops in turn. The loops keep the JVM running until
+the server is closed.
+
+With a GameJournal every game is journaled under its session id, and the games of
+sessions still open when the server stops or dies can be resumed after a restart.
+
+Run it with:
+    java com.wizeline.chess.GameServer [port] [loops] [journal directory]
+A port of 0 picks a free one; the port is printed once the server listens.
+*/
+public final class GameServer implements Closeable {
+    // Longest command accepted; a longer line closes the connection.
+    public static final int MAX_LINE_LENGTH = 256;
+    private static final int BACKLOG = 4096;
+
+    private final ServerSocketChannel server;
+    private final EventLoop[] loops;
+    private final Thread acceptor;
+    private final AtomicLong nextSessionId = new AtomicLong();
+    private final AtomicInteger sessions = new AtomicInteger();
+    private final GameJournal journal;
+    private volatile boolean closed;
+
+    public GameServer(int port, int loopCount) throws IOException {
+        this(port, loopCount, null);
+    }
+
+    // Journals the games when journal is not null.
+    public GameServer(int port, int loopCount, GameJournal journal) throws IOException {
+        this.journal = journal;
+        if(loopCount < 1) {
+            throw new IllegalArgumentException("At least one event loop is needed: " + loopCount);
+        }
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port), BACKLOG);
+        loops = new EventLoop[loopCount];
+        for(int i = 0; i < loopCount; i++) {
+            loops[i] = new EventLoop(i);
+            loops[i].thread.start();
+        }
+        acceptor = new Thread(new Runnable() {
+            public void run() {
+                accept();
+            }
+        }, "game-server-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        int loops = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        GameJournal journal = args.length > 2 ? new GameJournal(Paths.get(args[2])) : null;
+        GameServer server = new GameServer(port, loops, journal);
+        System.out.println("Listening on port " + server.getPort() + " with " + loops + " event loops");
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    // Connections currently open.
+    public int getSessionCount() {
+        return sessions.get();
+    }
+
+    // Stops accepting connections and closes the open ones, whose games stay live in the journal.
+    public void close() throws IOException {
+        closed = true;
+        server.close();
+        for(EventLoop loop : loops) {
+            loop.selector.wakeup();
+        }
+    }
+
+    private void accept() {
+        int next = 0;
+        while(!closed) {
+            try {
+                SocketChannel channel = server.accept();
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                loops[next].add(channel);
+                next = (next + 1) % loops.length;
+            } catch(ClosedChannelException e) {
+                return;
+            } catch(IOException e) {
+                if(!closed) {
+                    System.out.println("Error accepting a connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private final class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Thread thread;
+        private final Queue<SocketChannel> added = new ConcurrentLinkedQueue<SocketChannel>();
+
+        EventLoop(int index) throws IOException {
+            selector = Selector.open();
+            thread = new Thread(this, "game-server-" + index);
+        }
+
+        // Called by the acceptor; the channel is registered by the loop itself.
+        void add(SocketChannel channel) {
+            added.add(channel);
+            selector.wakeup();
+        }
+
+        public void run() {
+            while(!closed) {
+                try {
+                    selector.select();
+                } catch(IOException e) {
+                    System.out.println("Error in event loop: " + e.getMessage());
+                    break;
+                }
+                SocketChannel channel;
+                while((channel = added.poll()) != null) {
+                    try {
+                        channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+                        sessions.incrementAndGet();
+                    } catch(ClosedChannelException e) {
+                        // The client left before it was registered.
+                    }
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while(keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if(key.isReadable()) {
+                            connection.read(key);
+                        }
+                        if(key.isValid() && key.isWritable()) {
+                            connection.write(key);
+                        }
+                    } catch(IOException e) {
+                        connection.close(key, true);
+                    } catch(RuntimeException e) {
+                        // A failing session must not take the loop and its other sessions with it.
+                        connection.fail(key, e);
+                    }
+                }
+            }
+            for(SelectionKey key : selector.keys()) {
+                ((Connection) key.attachment()).close(key, false);
+            }
+            try {
+                selector.close();
+            } catch(IOException e) {
+                // Nothing left to release.
+            }
+        }
+    }
+
+    // A client connection with its session and buffers, only used by the thread of its loop.
+    private final class Connection {
+        private final SocketChannel channel;
+        private final GameSession session = new GameSession(journal == null ? nextSessionId.incrementAndGet() : journal.newGameId(),
+            journal);
+        private final ByteBuffer input = ByteBuffer.allocate(MAX_LINE_LENGTH);
+        // Kept in read mode: the replies not written yet are between position and limit.
+        private ByteBuffer output = ByteBuffer.allocate(128);
+        private final StringBuilder line = new StringBuilder(MAX_LINE_LENGTH);
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+            output.flip();
+        }
+
+        // Executes the complete lines received and sends the replies.
+        void read(SelectionKey key) throws IOException {
+            if(channel.read(input) < 0) {
+                close(key, true);
+                return;
+            }
+            input.flip();
+            while(input.hasRemaining() && !session.isClosed()) {
+                char c = (char) (input.get() & 0xff);
+                if(c == '\n') {
+                    reply(session.handle(line.toString()));
+                    line.setLength(0);
+                } else if(c != '\r') {
+                    if(line.length() == MAX_LINE_LENGTH) {
+                        close(key, true);
+                        return;
+                    }
+                    line.append(c);
+                }
+            }
+            input.clear();
+            write(key);
+        }
+
+        void write(SelectionKey key) throws IOException {
+            channel.write(output);
+            if(output.hasRemaining()) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            } else if(session.isClosed()) {
+                close(key, true);
+            } else {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        private void reply(String text) {
+            byte[] bytes = (text + "\n").getBytes(StandardCharsets.US_ASCII);
+            if(output.capacity() - output.remaining() < bytes.length) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(output.capacity() * 2, output.remaining() + bytes.length));
+                larger.put(output);
+                output = larger;
+            } else {
+                output.compact();
+            }
+            output.put(bytes);
+            output.flip();
+        }
+
+        // Tells the client about an unexpected error in its session, as far as the socket takes it
+        // without waiting, and closes the connection.
+        void fail(SelectionKey key, RuntimeException e) {
+            System.out.println("Error in session " + session.getId() + ": " + e);
+            reply("error INTERNAL_ERROR " + e.getClass().getSimpleName());
+            try {
+                channel.write(output);
+            } catch(IOException ignored) {
+                // The connection is closed anyway.
+            }
+            try {
+                close(key, true);
+            } catch(RuntimeException closing) {
+                close(key, false);
+            }
+        }
+
+        // Closes the connection, and ends its game unless the server is stopping.
+        void close(SelectionKey key, boolean endGame) {
+            if(!channel.isOpen()) {
+                return;
+            }
+            if(endGame) {
+                session.close();
+            }
+            key.cancel();
+            try {
+                channel.close();
+            } catch(IOException e) {
+                // Already closed by the client.
+            }
+            sessions.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.wizeline.chess;
+
+/*
+The game of one client of the GameServer and the commands it accepts, one per line:
+    move e2e4     play a move (coordinate notation, see GameEngine)
+    moves         list the legal moves
+    status        state of the game
+    fen           the position as a FEN record
+    new [fen]     start a new game, from the initial position or a FEN record
+    undo, redo    take back or play again the last move
+    id            the id of the game
+    resume <id>   continue a game recovered from the journal after a restart of the server
+    quit          end the session
+Every command is answered with one line, "ok" followed by the result or "error" followed
+by the reason, for example "ok CHECK" or "error ILLEGAL_MOVE". The moves are validated
+by a GameEngine of the session.
+
+With a GameJournal the game is journaled under the id of the session. It is recorded as
+ended when the session ends (quit or disconnect), not when the server stops, so after a
+crash or restart a client can resume it with the id.
+
+A session is confined to one thread of the server, so it holds its state without locks.
+*/
+public final class GameSession {
+    private final GameJournal journal;
+    private long id;
+    private GameEngine engine = new GameEngine();
+    private boolean closed;
+
+    public GameSession(long id) {
+        this(id, null);
+    }
+
+    public GameSession(long id, GameJournal journal) {
+        this.id = id;
+        this.journal = journal;
+        if(journal != null) {
+            journal.attach(engine, id);
+        }
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    // Executes a command and returns the reply, without line separator.
+    public String handle(String line) {
+        String command = line.trim();
+        int space = command.indexOf(' ');
+        String name = space < 0 ? command : command.substring(0, space);
+        String argument = space < 0 ? "" : command.substring(space + 1).trim();
+        if(name.equals("move")) {
+            MoveResult result = engine.applyMove(argument);
+            return result.isAccepted() ? status() : "error " + result;
+        } else if(name.equals("moves")) {
+            return "ok " + String.join(" ", engine.legalMoves());
+        } else if(name.equals("status")) {
+            return status();
+        } else if(name.equals("fen")) {
+            return "ok " + engine.getFen();
+        } else if(name.equals("new")) {
+            String fen = argument.isEmpty() ? Fen.START_POSITION : argument;
+            // Fen rejects malformed records and positions the move generator cannot play from.
+            try {
+                Fen.parse(fen);
+            } catch(IllegalArgumentException e) {
+                return "error INVALID_FEN " + e.getMessage();
+            }
+            engine.reset(fen);
+            return status();
+        } else if(name.equals("undo")) {
+            return engine.undo() ? status() : "error NOTHING_TO_UNDO";
+        } else if(name.equals("redo")) {
+            return engine.redo() ? status() : "error NOTHING_TO_REDO";
+        } else if(name.equals("id")) {
+            return "ok " + id;
+        } else if(name.equals("resume")) {
+            return resume(argument);
+        } else if(name.equals("quit")) {
+            close();
+            return "ok bye";
+        }
+        return "error UNKNOWN_COMMAND " + name;
+    }
+
+    // True once the session ended.
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // Ends the session and records the end of its game in the journal.
+    public void close() {
+        if(!closed) {
+            closed = true;
+            if(journal != null) {
+                journal.detach(engine, id);
+            }
+        }
+    }
+
+    private String resume(String argument) {
+        if(journal == null) {
+            return "error NO_JOURNAL";
+        }
+        long gameId;
+        try {
+            gameId = Long.parseLong(argument);
+        } catch(NumberFormatException e) {
+            return "error UNKNOWN_GAME " + argument;
+        }
+        GameEngine recovered = journal.takeRecoveredGame(gameId);
+        if(recovered == null) {
+            return "error UNKNOWN_GAME " + argument;
+        }
+        journal.detach(engine, id);
+        engine = recovered;
+        id = gameId;
+        return status();
+    }
+
+    private String status() {
+        return "ok " + engine.status();
+    }
+}
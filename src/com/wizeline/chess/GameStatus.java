@@ -0,0 +1,16 @@
+package com.wizeline.chess;
+
+/*
+State of a game from the point of view of the side to move.
+*/
+public enum GameStatus {
+    ONGOING,
+    CHECK,
+    CHECKMATE,
+    STALEMATE,
+    THREEFOLD_REPETITION;
+
+    public boolean isOver() {
+        return this == CHECKMATE || this == STALEMATE || this == THREEFOLD_REPETITION;
+    }
+}
@@ -0,0 +1,171 @@
+package com.wizeline.chess;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/*
+Throughput and recovery of the GameJournal, in a scratch directory that is deleted
+afterwards:
+- "append": one thread journals the moves of many random games without waiting for them
+  to reach the disk, as GameEngine does.
+- "sync, n threads": every thread waits in sync() after each move, as a server that only
+  acknowledges durable moves would. The committer forces the moves of all waiting threads
+  at once, so the moves per force grow with the threads.
+- "recovery": opening the journal again after the append run, replaying all its records,
+  checked against the positions the games ended in.
+The games are played on Positions beforehand, so only the journal is measured.
+
+Run it with:
+    java com.wizeline.chess.JournalBenchmark [moves] [directory]
+It exits with code 1 when a recovered game differs from the one journaled.
+*/
+public final class JournalBenchmark {
+    private static final int GAMES = 10000;
+    private static final int MAX_GAME_PLIES = 200;
+    private static final int SYNC_MOVES = 20000;
+    private static final int[] SYNC_THREADS = {1, 4, 16};
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int moves = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        Path directory = args.length > 1 ? Paths.get(args[1]) : Files.createTempDirectory("journal");
+
+        // Random games, a game is restarted when it ends or grows too long.
+        Random random = new Random(1);
+        Position[] positions = new Position[GAMES];
+        int[] gameOf = new int[moves];
+        int[] moveOf = new int[moves];
+        boolean[] restart = new boolean[moves];
+        MoveList legal = new MoveList();
+        for(int game = 0; game < GAMES; game++) {
+            positions[game] = Fen.parse(Fen.START_POSITION);
+        }
+        for(int i = 0; i < moves; i++) {
+            int game = random.nextInt(GAMES);
+            Position position = positions[game];
+            MoveGenerator.generateLegal(position, legal);
+            if(legal.isEmpty() || position.getHalfmoveClock() >= 100 || position.getFullmoveNumber() * 2 > MAX_GAME_PLIES) {
+                Fen.load(position, Fen.START_POSITION);
+                MoveGenerator.generateLegal(position, legal);
+                restart[i] = true;
+            }
+            gameOf[i] = game;
+            moveOf[i] = legal.get(random.nextInt(legal.size()));
+            position.makeMove(moveOf[i]);
+        }
+
+        try {
+            GameJournal journal = new GameJournal(directory);
+            long start = System.nanoTime();
+            for(int game = 0; game < GAMES; game++) {
+                journal.start(game, Fen.parse(Fen.START_POSITION));
+            }
+            for(int i = 0; i < moves; i++) {
+                if(restart[i]) {
+                    journal.end(gameOf[i]);
+                    journal.start(gameOf[i], Fen.parse(Fen.START_POSITION));
+                }
+                journal.move(gameOf[i], moveOf[i]);
+            }
+            long appendNanos = System.nanoTime() - start;
+            journal.sync();
+            long syncedNanos = System.nanoTime() - start;
+            long commits = journal.getCommits();
+            journal.close();
+            System.out.println(String.format("%-16s %10.0f moves/s, %.0f ms until on disk, %d forces",
+                "append", moves * 1e9 / appendNanos, syncedNanos / 1e6, commits));
+
+            start = System.nanoTime();
+            journal = new GameJournal(directory);
+            long openNanos = System.nanoTime() - start;
+            int mismatches = 0;
+            for(int game = 0; game < GAMES; game++) {
+                GameEngine engine = journal.takeRecoveredGame(game);
+                if(engine == null || !engine.getFen().equals(Fen.format(positions[game]))) {
+                    mismatches++;
+                }
+            }
+            System.out.println(String.format("%-16s %10.0f ms per million moves (%d records, %d games in %.0f ms)",
+                "recovery", journal.getRecoveryNanos() / 1e6 * 1000000 / moves, journal.getRecoveredRecords(),
+                GAMES, openNanos / 1e6));
+            journal.close();
+            deleteSegments(directory);
+
+            for(int threads : SYNC_THREADS) {
+                syncRun(directory, threads);
+                deleteSegments(directory);
+            }
+            if(mismatches > 0) {
+                System.out.println("FAIL: " + mismatches + " recovered games differ");
+                System.exit(1);
+            }
+        } finally {
+            deleteSegments(directory);
+            if(args.length < 2) {
+                Files.deleteIfExists(directory);
+            }
+        }
+    }
+
+    // Every thread plays moves of its own game and waits until each is on disk.
+    private static void syncRun(Path directory, int threads) throws IOException, InterruptedException {
+        final GameJournal journal = new GameJournal(directory);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final int movesPerThread = SYNC_MOVES / threads;
+        List<Thread> writers = new ArrayList<Thread>();
+        for(int t = 0; t < threads; t++) {
+            final long game = t;
+            writers.add(new Thread(new Runnable() {
+                public void run() {
+                    Position position = Fen.parse(Fen.START_POSITION);
+                    MoveList legal = new MoveList();
+                    Random random = new Random(game);
+                    journal.start(game, position);
+                    try {
+                        for(int i = 0; i < movesPerThread; i++) {
+                            MoveGenerator.generateLegal(position, legal);
+                            if(legal.isEmpty() || position.getFullmoveNumber() * 2 > MAX_GAME_PLIES) {
+                                Fen.load(position, Fen.START_POSITION);
+                                journal.start(game, position);
+                                MoveGenerator.generateLegal(position, legal);
+                            }
+                            int move = legal.get(random.nextInt(legal.size()));
+                            position.makeMove(move);
+                            journal.move(game, move);
+                            journal.sync();
+                        }
+                    } catch(InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    done.countDown();
+                }
+            }));
+        }
+        long start = System.nanoTime();
+        for(Thread writer : writers) {
+            writer.start();
+        }
+        done.await();
+        long nanos = System.nanoTime() - start;
+        long commits = journal.getCommits();
+        journal.close();
+        int moves = movesPerThread * threads;
+        System.out.println(String.format("%-16s %10.0f moves/s, %.1f moves per force, %.3f ms per move",
+            "sync, " + threads + (threads == 1 ? " thread" : " threads"), moves * 1e9 / nanos, (double) moves / commits,
+            nanos / 1e6 / movesPerThread));
+    }
+
+    private static void deleteSegments(Path directory) throws IOException {
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, "journal-*.log")) {
+            for(Path file : files) {
+                Files.delete(file);
+            }
+        }
+    }
+}
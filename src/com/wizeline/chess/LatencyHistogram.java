@@ -0,0 +1,96 @@
+package com.wizeline.chess;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+Distribution of durations in nanoseconds, in the manner of an HdrHistogram: values below
+SUB_BUCKETS are counted exactly, larger ones in buckets whose width is 1/SUB_BUCKETS of
+their magnitude, so every percentile is within about 3% of the true value whatever the
+range, in a fixed array of BUCKETS counts. Recording is lock-free and allocation-free, so
+it can be done from any number of threads on a hot path.
+
+Counts are read without stopping writers, so a snapshot taken while values are recorded
+may be off by those values.
+*/
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(index(value));
+        count.incrementAndGet();
+        total.addAndGet(value);
+        long current = max.get();
+        while(value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) total.get() / n;
+    }
+
+    // Value below which the fraction (0 to 1) of the recorded values are, the middle of its bucket.
+    public long getPercentile(double fraction) {
+        long n = count.get();
+        if(n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * n));
+        long seen = 0;
+        for(int index = 0; index < BUCKETS; index++) {
+            seen += counts.get(index);
+            if(seen >= rank) {
+                return Math.min(max.get(), lowerBound(index) + (width(index) - 1) / 2);
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for(int index = 0; index < BUCKETS; index++) {
+            counts.set(index, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    private static int index(long value) {
+        if(value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    private static long lowerBound(int index) {
+        if(index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    }
+
+    private static long width(int index) {
+        return index < SUB_BUCKETS ? 1 : 1L << (index / SUB_BUCKETS - 1);
+    }
+}
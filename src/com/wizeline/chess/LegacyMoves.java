@@ -0,0 +1,388 @@
+package com.wizeline.chess;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+/*
+The original move rules of the game, moved out of Window.InputActionListener when the
+game logic was replaced by GameEngine. They work on the Map<String, String> board
+representation and return a new list of square names per call.
+
+They are no longer used by the game and are kept unchanged as the "before" baseline
+for MoveGenBenchmark.
+*/
+final class LegacyMoves
+{
+    private final Map<String, String> pieces;
+
+    LegacyMoves( Map<String, String> pieces )
+    {
+        this.pieces = pieces;
+    }
+
+    public ArrayList<String> getRookMove( String from ,String to)
+    {
+        int begin = from.charAt( 0 );
+        int end = from.charAt( 1 )-48;
+
+        ArrayList<String> result = new ArrayList<>();
+        boolean isSet = false;
+        for ( int i = begin; i >= 97; i-- )
+        {
+            StringBuilder sb = new StringBuilder();
+            sb.append( ( char ) i );
+            sb.append( end );
+            boolean isPresent = pieces.containsKey( sb.toString() ) & !sb.toString().equals( from ) &!sb.toString().equals( to );
+
+            if ( !isPresent && !isSet )
+                result.add( sb.toString() );
+            else if ( isPresent )
+                isSet = true;
+
+            if ( sb.toString().equals( to ) )
+                isSet = true;
+        }
+
+        isSet = false;
+        for ( int i=begin;i<=104;i++ )
+        {
+            StringBuilder sb = new StringBuilder();
+            sb.append( ( char ) i );
+            sb.append( end );
+            boolean isPresent = pieces.containsKey( sb.toString() ) & !sb.toString().equals( from ) &!sb.toString().equals( to );
+
+            if ( !isPresent && !isSet )
+                result.add( sb.toString() );
+            else if ( isPresent )
+                isSet = true;
+
+            if ( sb.toString().equals( to ) )
+                isSet = true;
+        }
+        isSet = false;
+
+        for ( int i = end; i <= 8; i++ )
+        {
+            StringBuilder sb = new StringBuilder();
+            sb.append( (char) begin );
+            sb.append( i );
+            boolean isPresent = pieces.containsKey( sb.toString() ) & !sb.toString().equals( from ) &!sb.toString().equals( to );
+
+            if ( !isPresent && !isSet )
+                result.add( sb.toString() );
+            else if ( isPresent )
+                isSet = true;
+            if ( sb.toString().equals( to ) )
+                isSet = true;
+        }
+
+        isSet = false;
+        for ( int i=end;i>=1;i-- )
+        {
+            StringBuilder sb = new StringBuilder();
+            sb.append( (char) begin );
+            sb.append( i );
+            boolean isPresent = pieces.containsKey( sb.toString() ) & !sb.toString().equals( from ) &!sb.toString().equals( to );
+
+            if ( !isPresent && !isSet )
+                result.add( sb.toString() );
+            else if ( isPresent )
+                isSet = true;
+            if ( sb.toString().equals( to ) )
+                isSet = true;
+        }
+        return result;
+    }
+
+    public ArrayList<String> getBishopMove( String from ,String to)
+    {
+        int begin = from.charAt( 0 );
+        int end = from.charAt( 1 )-48;
+
+        boolean isSetUp = false, isSetDown = false;
+
+        int up=end,down = end;
+        ArrayList<String> result = new ArrayList<>(  );
+        for ( int i=begin+1;i<=104;i++ )
+        {
+            up++;down--;
+            StringBuilder upw = new StringBuilder(  );
+            StringBuilder dwn = new StringBuilder(  );
+
+            if ( up >=1 && up<=8 )
+            {
+                upw.append( (char) i);
+                upw.append( up );
+                boolean isPresentUp = pieces.containsKey( upw.toString() ) & !upw.toString().equals( from ) &!upw.toString().equals( to );
+                if ( !isPresentUp && !isSetUp  )
+                {
+                    result.add( upw.toString() );
+                    if ( upw.toString().equals( to ) )
+                        isSetUp = true;
+                }
+
+                else if ( isPresentUp )
+                    isSetUp = true;
+            }
+            if ( down >=1 && down<=8 )
+            {
+                dwn.append( (char)i );
+                dwn.append( down );
+
+                boolean isPresentDown = pieces.containsKey( dwn.toString() ) & !dwn.toString().equals( from ) &!dwn.toString().equals( to );
+                if ( !isPresentDown && !isSetDown)
+                {
+                    result.add( dwn.toString() );
+                    if ( dwn.toString().equals( to ) )
+                        isSetDown = true;
+                }
+
+                else if ( isPresentDown )
+                    isSetDown = true;
+            }
+        }
+
+        up = end; down = end;
+        isSetUp = false;
+        isSetDown = false;
+        for ( int i=begin-1;i>=97;i-- )
+        {
+            up++;down--;
+            StringBuilder upw = new StringBuilder(  );
+            StringBuilder dwn = new StringBuilder(  );
+
+            if ( up >=1 && up<=8 )
+            {
+                upw.append( (char) i);
+                upw.append( up );
+                boolean isPresentUp = pieces.containsKey( upw.toString() ) & !upw.toString().equals( from ) &!upw.toString().equals( to );
+                if ( !isPresentUp && !isSetUp )
+                {
+                    result.add( upw.toString() );
+                    if ( upw.toString().equals( to ) )
+                        isSetUp = true;
+                }
+
+                else if ( isPresentUp )
+                    isSetUp = true;
+            }
+            if ( down >=1 && down<=8 )
+            {
+                dwn.append( (char)i );
+                dwn.append( down );
+
+                boolean isPresentDown = pieces.containsKey( dwn.toString() ) & !dwn.toString().equals( from ) &!dwn.toString().equals( to );
+                if ( !isPresentDown && !isSetDown)
+                {
+                    result.add( dwn.toString() );
+                    if ( dwn.toString().equals( to ) )
+                        isSetDown = true;
+                }
+
+                else if ( isPresentDown )
+                    isSetDown = true;
+            }
+        }
+        return result;
+    }
+
+    public ArrayList<String> getQueenMove(String from, String to)
+    {
+        ArrayList<String> result= getRookMove( from ,to);
+        result.addAll( getBishopMove( from ,to ) );
+        return result;
+    }
+
+    public ArrayList<String> getKnightMove(String from)
+    {
+        int begin = from.charAt( 0 );
+        int end = from.charAt( 1 )-48;
+
+        ArrayList<String> result = new ArrayList<>(  );
+
+        StringBuilder sb = new StringBuilder(  );
+
+        if ( begin+2<=107 )
+        {
+            sb.append( (char) (begin+2));
+            if ( end-1>=1 && end-1 <=8 )
+            {
+                sb.append( end-1 );
+                result.add( sb.toString() );
+            }
+            if ( end+1 >=1 && end+1<=8 )
+            {
+                if ( sb.length()>1 )
+                    sb.deleteCharAt( sb.length()-1 );
+                sb.append( end+1 );
+                result.add( sb.toString() );
+            }
+        }
+
+        sb= new StringBuilder(  );
+        if ( begin-2<=107  && begin-2 >=97)
+        {
+            sb.append( (char) (begin-2));
+            if ( end-1>=1 && end-1 <=8 )
+            {
+                sb.append( end-1 );
+                result.add( sb.toString() );
+            }
+            if ( end+1 >=1 && end+1<=8 )
+            {
+                if ( sb.length()>1 )
+                    sb.deleteCharAt( sb.length()-1 );
+                sb.append( end+1 );
+                result.add( sb.toString() );
+            }
+        }
+        sb = new StringBuilder(  );
+        if ( begin+1<=107 )
+        {
+            sb.append( (char) (begin+1));
+            if ( end-2>=1 && end-2 <=8 )
+            {
+                sb.append( end-2 );
+                result.add( sb.toString() );
+            }
+            if ( end+2 >=1 && end+2<=8 )
+            {
+                if ( sb.length()>1 )
+                    sb.deleteCharAt( sb.length()-1 );
+                sb.append( end+2 );
+                result.add( sb.toString() );
+            }
+        }
+
+        sb = new StringBuilder(  );
+        if ( begin-1<=107 && begin-1>=97 )
+        {
+            sb.append( (char) (begin-1));
+            if ( end-2>=1 && end-2 <=8 )
+            {
+                sb.append( end-2 );
+                result.add( sb.toString() );
+            }
+            if ( end+2 >=1 && end+2<=8 )
+            {
+                if ( sb.length()>1 )
+                    sb.deleteCharAt( sb.length()-1 );
+                sb.append( end+2 );
+                result.add( sb.toString() );
+            }
+        }
+
+        return result;
+    }
+
+    public ArrayList<String> getPawnMove(String from,String turn)
+    {
+        int begin = from.charAt( 0 );
+        int to = from.charAt( 1 )-48;
+
+        ArrayList<String> result = new ArrayList<>(  );
+        if ( to ==2 || to ==7 )
+        {
+            StringBuilder sb= new StringBuilder(  );
+            sb.append( (char)begin );
+                if(to==7)
+                    sb.append( to-2 );
+                else
+                    sb.append( to+2 );
+            result.add( sb.toString() );
+        }
+        int left = begin-1;
+        int right = begin+1;
+
+        int end = to;
+        if ( turn.equals( "w" ) )
+            end+=1;
+        else
+            end-=1;
+
+        StringBuilder sb = new StringBuilder(  );
+        if ( left>=97 )
+        {
+            sb.append( (char)left );
+            sb.append( end );
+            result.add( sb.toString() );
+        }
+        sb = new StringBuilder(  );
+        if ( right<=107 )
+        {
+            sb.append( (char)right );
+            sb.append( end );
+            result.add( sb.toString() );
+        }
+
+        sb= new StringBuilder(  );
+
+        sb.append( (char)begin );
+        sb.append( end );
+        result.add( sb.toString() );
+        return result;
+    }
+
+    public ArrayList<String> getKingMove(String from)
+    {
+        ArrayList<String> result = new ArrayList<>();
+
+        int begin = from.charAt( 0 );
+        int end = from.charAt( 1 ) - 48;
+
+        StringBuilder sb = new StringBuilder();
+        if ( begin - 1 >= 97 )
+        {
+            sb.append( ( char ) ( begin - 1 ) );
+            sb.append( end );
+            result.add( sb.toString() );
+            sb.deleteCharAt( sb.length() - 1 );
+
+            if ( end - 1 >= 1 )
+            {
+                sb.append( end - 1 );
+                result.add( sb.toString() );
+                sb = new StringBuilder();
+
+                sb.append( ( char ) begin );
+                sb.append( end - 1 );
+                result.add( sb.toString() );
+
+                sb.deleteCharAt( sb.length() - 1 );
+            }
+
+            if ( end + 1 <= 8 )
+            {
+                sb.append( end + 1 );
+                result.add( sb.toString() );
+                sb = new StringBuilder();
+
+                sb.append( ( char ) ( begin - 1 ) );
+                sb.append( end + 1 );
+                result.add( sb.toString() );
+            }
+        }
+        sb= new StringBuilder(  );
+        if ( begin + 1 <= 104 )
+        {
+            sb.append( ( char ) ( begin + 1 ) );
+            sb.append( end );
+            result.add( sb.toString() );
+            sb.deleteCharAt( sb.length() - 1 );
+
+            if ( end - 1 >= 1 )
+            {
+                sb.append( end - 1 );
+                result.add( sb.toString() );
+                sb.deleteCharAt( sb.length() - 1 );
+            }
+
+            if ( end + 1 <= 8 )
+            {
+                sb.append( end + 1 );
+                result.add( sb.toString() );
+            }
+        }
+        return result;
+    }
+}
@@ -1,7 +1,180 @@
 package com.wizeline.chess;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/*
+Entry point. Without arguments the game opens in a Swing window for two human players.
+Options:
+    --headless          play from the console through GameEngine, no AWT class is loaded
+    --uci               speak the Universal Chess Interface on stdin/stdout, no AWT class is loaded
+    --serve=<port>      host games for TCP clients with GameServer (--threads=<n> event loops)
+    --journal=<dir>     journal the games to a GameJournal and resume the game left unfinished
+    --fen=<record>      start from the position of a FEN record instead of the initial one
+    --white=computer    let the computer play white (same for --black)
+    --movetime=<ms>     thinking time of the computer per move
+    --hash=<MB>         transposition table size of the computer
+    --threads=<n>       search threads of the computer
+    --book=<file>       opening book the computer plays from before searching
+    --tablebases=<dir>  endgame tablebases the computer plays from before searching
+    --validate <files>  replay the games of PGN files on all cores and print their statistics
+    --metrics=<s>       print the Metrics counters and latencies to stderr every s seconds
+                        (--metrics-format=json for one JSON object per line)
+    --jfr[=<file>]      commit the Metrics timers as JFR events, recorded to the file if given
+                        (Java 11 or later, with the classes compiled from src-jfr)
+*/
 public class Main {
-    public static void main(String[] args) {
-        new Window();
+    public static void main(String[] args) throws IOException {
+        long moveTime = Long.parseLong(option(args, "--movetime", Long.toString(ComputerPlayer.DEFAULT_MOVE_TIME_MILLIS)));
+        int hash = Integer.parseInt(option(args, "--hash", Integer.toString(ComputerPlayer.DEFAULT_HASH_MEGABYTES)));
+        int threads = Integer.parseInt(option(args, "--threads", "1"));
+        String fen = option(args, "--fen", Fen.START_POSITION);
+        String bookFile = option(args, "--book", null);
+        OpeningBook book = bookFile == null ? null : new OpeningBook(Paths.get(bookFile));
+        String tablebaseDirectory = option(args, "--tablebases", null);
+        Tablebase tablebase = tablebaseDirectory == null ? null : new Tablebase(Paths.get(tablebaseDirectory));
+        String journalDirectory = option(args, "--journal", null);
+        GameJournal journal = journalDirectory == null ? null : new GameJournal(Paths.get(journalDirectory));
+        String metricsPeriod = option(args, "--metrics", null);
+        if(metricsPeriod != null) {
+            Metrics.startReporter(System.err, (long) (Double.parseDouble(metricsPeriod) * 1000),
+                option(args, "--metrics-format", "text").equals("json"));
+        }
+        String recordingFile = option(args, "--jfr", null);
+        if(recordingFile != null) {
+            Metrics.startRecording(Paths.get(recordingFile));
+        }
+        if(recordingFile != null || flag(args, "--jfr")) {
+            Metrics.setEventsEnabled(true);
+        }
+
+        if(flag(args, "--validate")) {
+            validate(args, Integer.parseInt(option(args, "--threads", Integer.toString(Runtime.getRuntime().availableProcessors()))));
+            return;
+        }
+        String port = option(args, "--serve", null);
+        if(port != null) {
+            int loops = Integer.parseInt(option(args, "--threads", Integer.toString(Runtime.getRuntime().availableProcessors())));
+            GameServer server = new GameServer(Integer.parseInt(port), loops, journal);
+            System.out.println("Listening on port " + server.getPort() + " with " + loops + " event loops");
+            if(journal != null) {
+                System.out.println(journal.getRecoveredGameIds().size() + " games recovered from the journal");
+            }
+            return;
+        }
+        if(flag(args, "--uci")) {
+            UciProtocol protocol = new UciProtocol(hash, threads, System.in, System.out);
+            protocol.setOpeningBook(book);
+            protocol.setTablebase(tablebase);
+            protocol.run();
+            return;
+        }
+        if(flag(args, "--headless")) {
+            ComputerPlayer computer = new ComputerPlayer(hash, threads, SearchLimits.time(moveTime));
+            computer.setOpeningBook(book);
+            computer.setTablebase(tablebase);
+            new ConsoleGame(game(fen, journal), computer, System.in, System.out).run();
+            return;
+        }
+        Window window = new Window(game(fen, journal));
+        for(int color = Piece.WHITE; color <= Piece.BLACK; color++) {
+            if(option(args, color == Piece.WHITE ? "--white" : "--black", "human").equals("computer")) {
+                ComputerPlayer computer = new ComputerPlayer(hash, threads, SearchLimits.time(moveTime));
+                computer.setOpeningBook(book);
+                computer.setTablebase(tablebase);
+                window.setComputerPlayer(color, computer);
+            }
+        }
+    }
+
+    // A new game from the position, or with a journal the most recent unfinished game in it.
+    // The other games recovered from the journal are ended, a window plays one game at a time.
+    private static GameEngine game(String fen, GameJournal journal) {
+        if(journal == null) {
+            return new GameEngine(fen);
+        }
+        GameEngine resumed = null;
+        long resumedId = 0;
+        for(long id : new ArrayList<Long>(journal.getRecoveredGameIds())) {
+            GameEngine recovered = journal.takeRecoveredGame(id);
+            if(resumed == null || id > resumedId) {
+                if(resumed != null) {
+                    journal.detach(resumed, resumedId);
+                }
+                resumed = recovered;
+                resumedId = id;
+            } else {
+                journal.detach(recovered, id);
+            }
+        }
+        if(resumed != null && !resumed.status().isOver()) {
+            return resumed;
+        }
+        if(resumed != null) {
+            journal.detach(resumed, resumedId);
+        }
+        GameEngine engine = new GameEngine(fen);
+        journal.attach(engine, journal.newGameId());
+        return engine;
+    }
+
+    // Validates the files named in the arguments, printing the first rejected games and the totals.
+    private static void validate(String[] args, int threads) {
+        List<Path> files = new ArrayList<Path>();
+        for(String arg : args) {
+            if(!arg.startsWith("--")) {
+                files.add(Paths.get(arg));
+            }
+        }
+        final int reportedErrors = 20;
+        PgnListener errors = new PgnListener() {
+            private int count;
+
+            public synchronized void gameRejected(long offset, long errorOffset, String reason) {
+                if(count++ < reportedErrors) {
+                    System.out.println("Game at byte " + offset + " rejected at byte " + errorOffset + ": " + reason);
+                }
+            }
+        };
+        BatchValidator validator = new BatchValidator(threads);
+        long start = System.nanoTime();
+        Map<Path, PgnStatistics> statistics = validator.validate(files, errors);
+        long millis = Math.max(1, (System.nanoTime() - start) / 1000000L);
+        validator.shutdown();
+        PgnStatistics total = new PgnStatistics();
+        int failedFiles = 0;
+        for(Map.Entry<Path, PgnStatistics> entry : statistics.entrySet()) {
+            String failure = entry.getValue().getFailure();
+            System.out.println(entry.getKey() + ": " + entry.getValue() + (failure == null ? "" : ", not fully read: " + failure));
+            total.add(entry.getValue());
+            if(failure != null) {
+                failedFiles++;
+            }
+        }
+        System.out.println("Total: " + total + (failedFiles == 0 ? "" : ", " + failedFiles + " files not fully read") + " in "
+            + millis + " ms on " + threads + " threads, " + (total.getGames() + total.getRejectedGames()) * 1000 / millis + " games/s");
+    }
+
+    private static boolean flag(String[] args, String name) {
+        for(String arg : args) {
+            if(arg.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Value of an option written as name=value, or the default when it is not given.
+    private static String option(String[] args, String name, String defaultValue) {
+        for(String arg : args) {
+            if(arg.startsWith(name + "=")) {
+                return arg.substring(name.length() + 1);
+            }
+        }
+        return defaultValue;
     }
 }
@@ -0,0 +1,308 @@
+package com.wizeline.chess;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Counters and latency timers of the hot paths: parsing a move, checking that it is legal,
+applying it, generating the legal moves of the new position (GameEngine) and painting the
+board (Board). Everything is off by default. setEnabled turns on the counters and the
+LatencyHistogram of every timer, which dump and startReporter print as text or as one
+JSON object per line; setEventsEnabled makes every timed section also a JFR event (see
+ChessEvents), begun when the section starts and committed when it ends, so a flight
+recording shows it on the thread, at the time and for the duration it ran.
+
+The game targets Java 8, which has no jdk.jfr. ChessEvents therefore lives in the source
+directory src-jfr, compiled separately with Java 11 or later, and is only looked up by
+name when events are enabled; without it setEventsEnabled(true) throws
+IllegalStateException and everything else works as before.
+
+A timed section is written as
+    Metrics.Span span = Metrics.MOVE_PARSE.start();
+    ...
+    span.stop();
+When both are off, start only reads a volatile flag and returns the shared Span.NONE,
+whose stop does nothing, so the probes cost a few nanoseconds (MetricsBenchmark measures
+them). The search does not go through GameEngine, so its millions of moves per second are
+never probed.
+*/
+public final class Metrics {
+    private static final Map<String, Counter> counters = new LinkedHashMap<String, Counter>();
+    private static final Map<String, Timer> timers = new LinkedHashMap<String, Timer>();
+
+    private static volatile boolean enabled;
+    private static volatile boolean eventsEnabled;
+    // enabled || eventsEnabled, so a disabled probe reads one flag.
+    private static volatile boolean active;
+    // Loaded when events are first enabled.
+    private static volatile Events events;
+
+    public static final Timer MOVE_PARSE = timer("move.parse", Events.MOVE_PARSE);
+    public static final Timer MOVE_LEGALITY = timer("move.legality", Events.MOVE_LEGALITY);
+    public static final Timer MOVE_APPLY = timer("move.apply", Events.MOVE_APPLY);
+    public static final Timer MOVE_GENERATION = timer("move.generation", Events.MOVE_GENERATION);
+    public static final Timer BOARD_PAINT = timer("board.paint", Events.BOARD_PAINT);
+
+    public static final Counter MOVES_ACCEPTED = counter("moves.accepted");
+    public static final Counter MOVES_REJECTED = counter("moves.rejected");
+    public static final Counter CAPTURES = counter("captures");
+
+    private Metrics() {
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+        active = enabled || eventsEnabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    // Commits a JFR event for every timed section; a recording must enable them to keep them.
+    // Throws IllegalStateException when ChessEvents is not on the class path.
+    public static void setEventsEnabled(boolean eventsEnabled) {
+        if(eventsEnabled) {
+            events();
+        }
+        Metrics.eventsEnabled = eventsEnabled;
+        active = enabled || eventsEnabled;
+    }
+
+    // Starts a JFR recording of the events, written to the file when the JVM exits.
+    public static void startRecording(Path file) throws IOException {
+        events().startRecording(file);
+    }
+
+    public static boolean isEventsEnabled() {
+        return eventsEnabled;
+    }
+
+    private static synchronized Events events() {
+        if(events == null) {
+            try {
+                events = (Events) Class.forName("com.wizeline.chess.ChessEvents").getDeclaredConstructor().newInstance();
+            } catch(ReflectiveOperationException | LinkageError e) {
+                throw new IllegalStateException("JFR events need Java 11 or later and the classes compiled from src-jfr", e);
+            }
+        }
+        return events;
+    }
+
+    // The counter of that name, created on first use.
+    public static synchronized Counter counter(String name) {
+        Counter counter = counters.get(name);
+        if(counter == null) {
+            counter = new Counter(name);
+            counters.put(name, counter);
+        }
+        return counter;
+    }
+
+    // The timer of that name, created on first use; its sections commit events of the given Events kind.
+    static synchronized Timer timer(String name, int eventKind) {
+        Timer timer = timers.get(name);
+        if(timer == null) {
+            timer = new Timer(name, eventKind);
+            timers.put(name, timer);
+        }
+        return timer;
+    }
+
+    // Sets all counters and timers back to zero.
+    public static void reset() {
+        for(Counter counter : counters()) {
+            counter.adder.reset();
+        }
+        for(Timer timer : timers()) {
+            timer.histogram.reset();
+        }
+    }
+
+    // Prints the counters and timers, one per line, the times in microseconds.
+    public static void dump(PrintStream out) {
+        StringBuilder text = new StringBuilder();
+        text.append("metrics at ").append(new Date()).append('\n');
+        for(Counter counter : counters()) {
+            text.append(String.format("%-18s %d%n", counter.name, counter.get()));
+        }
+        for(Timer timer : timers()) {
+            LatencyHistogram histogram = timer.histogram;
+            text.append(String.format(Locale.ROOT, "%-18s count %d mean %.3f p50 %.3f p90 %.3f p99 %.3f p99.9 %.3f max %.3f us%n",
+                timer.name, histogram.getCount(), histogram.getMean() / 1e3, histogram.getPercentile(0.50) / 1e3,
+                histogram.getPercentile(0.90) / 1e3, histogram.getPercentile(0.99) / 1e3,
+                histogram.getPercentile(0.999) / 1e3, histogram.getMax() / 1e3));
+        }
+        out.print(text);
+        out.flush();
+    }
+
+    // The counters and timers as one JSON object, the times in nanoseconds.
+    public static String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"time\":").append(System.currentTimeMillis()).append(",\"counters\":{");
+        String separator = "";
+        for(Counter counter : counters()) {
+            json.append(separator).append('"').append(counter.name).append("\":").append(counter.get());
+            separator = ",";
+        }
+        json.append("},\"timers\":{");
+        separator = "";
+        for(Timer timer : timers()) {
+            LatencyHistogram histogram = timer.histogram;
+            json.append(separator).append('"').append(timer.name).append("\":{\"count\":").append(histogram.getCount())
+                .append(",\"mean_ns\":").append(Math.round(histogram.getMean()))
+                .append(",\"p50_ns\":").append(histogram.getPercentile(0.50))
+                .append(",\"p90_ns\":").append(histogram.getPercentile(0.90))
+                .append(",\"p99_ns\":").append(histogram.getPercentile(0.99))
+                .append(",\"p999_ns\":").append(histogram.getPercentile(0.999))
+                .append(",\"max_ns\":").append(histogram.getMax()).append('}');
+            separator = ",";
+        }
+        return json.append("}}").toString();
+    }
+
+    // Enables the metrics and prints them every period on a daemon thread until the returned
+    // executor is shut down. The values are totals since the start, not per period.
+    public static ScheduledExecutorService startReporter(final PrintStream out, long periodMillis, final boolean json) {
+        setEnabled(true);
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "Metrics reporter");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        reporter.scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                if(json) {
+                    out.println(toJson());
+                    out.flush();
+                } else {
+                    dump(out);
+                }
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        return reporter;
+    }
+
+    private static synchronized List<Counter> counters() {
+        return new ArrayList<Counter>(counters.values());
+    }
+
+    private static synchronized List<Timer> timers() {
+        return new ArrayList<Timer>(timers.values());
+    }
+
+    // A count of events, striped over threads so concurrent increments do not contend.
+    public static final class Counter {
+        private final String name;
+        private final LongAdder adder = new LongAdder();
+
+        private Counter(String name) {
+            this.name = name;
+        }
+
+        public void increment() {
+            if(enabled) {
+                adder.increment();
+            }
+        }
+
+        public long get() {
+            return adder.sum();
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    // Durations of a section of code, recorded into a histogram and/or committed as JFR events.
+    public static final class Timer {
+        private final String name;
+        private final int eventKind;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private Timer(String name, int eventKind) {
+            this.name = name;
+            this.eventKind = eventKind;
+        }
+
+        // Starts a section: its start time for the histogram and/or its begun JFR event.
+        public Span start() {
+            if(!active) {
+                return Span.NONE;
+            }
+            Object event = eventsEnabled ? events.begin(eventKind) : null;
+            return new Span(this, enabled ? System.nanoTime() : 0, event);
+        }
+
+        private void stop(long start, Object event) {
+            if(start != 0) {
+                histogram.record(System.nanoTime() - start);
+            }
+            if(event != null) {
+                events.commit(event);
+            }
+        }
+
+        public LatencyHistogram getHistogram() {
+            return histogram;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    // The JFR events of the timers, implemented by ChessEvents.
+    interface Events {
+        int MOVE_PARSE = 0;
+        int MOVE_LEGALITY = 1;
+        int MOVE_APPLY = 2;
+        int MOVE_GENERATION = 3;
+        int BOARD_PAINT = 4;
+
+        // Creates and begins an event of one of the kinds above.
+        Object begin(int kind);
+
+        // Ends and commits an event returned by begin, if a recording enables it.
+        void commit(Object event);
+
+        void startRecording(Path file) throws IOException;
+    }
+
+    // A section started by Timer.start, to be ended with stop.
+    public static final class Span {
+        static final Span NONE = new Span(null, 0, null);
+
+        private final Timer timer;
+        private final long start;
+        private final Object event;
+
+        private Span(Timer timer, long start, Object event) {
+            this.timer = timer;
+            this.start = start;
+            this.event = event;
+        }
+
+        public void stop() {
+            if(timer != null) {
+                timer.stop(start, event);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.wizeline.chess;
+
+/*
+Moves are packed into a single int so they can be stored in plain int arrays:
+    bits 0-5   origin square
+    bits 6-11  target square
+    bits 12-15 flags (see below)
+
+Flags follow the usual 4-bit layout: bit 2 marks captures and bit 3 promotions, with
+the promoted piece in the two low bits (knight, bishop, rook, queen). NONE (0) is not a
+valid move since its origin and target are the same square.
+*/
+public final class Move {
+    public static final int NONE = 0;
+
+    public static final int QUIET = 0;
+    public static final int DOUBLE_PAWN_PUSH = 1;
+    public static final int KING_CASTLE = 2;
+    public static final int QUEEN_CASTLE = 3;
+    public static final int CAPTURE = 4;
+    public static final int EN_PASSANT = 5;
+    public static final int PROMOTION = 8;
+    public static final int PROMOTION_CAPTURE = 12;
+
+    private Move() {
+    }
+
+    public static int make(int from, int to, int flags) {
+        return from | (to << 6) | (flags << 12);
+    }
+
+    public static int promotion(int from, int to, int type, boolean capture) {
+        return make(from, to, (capture ? PROMOTION_CAPTURE : PROMOTION) | (type - Piece.KNIGHT));
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    public static int flags(int move) {
+        return (move >>> 12) & 15;
+    }
+
+    public static boolean isCapture(int move) {
+        return (move & (CAPTURE << 12)) != 0;
+    }
+
+    public static boolean isPromotion(int move) {
+        return (move & (PROMOTION << 12)) != 0;
+    }
+
+    public static boolean isCastle(int move) {
+        int flags = flags(move);
+        return flags == KING_CASTLE || flags == QUEEN_CASTLE;
+    }
+
+    // Piece type the pawn becomes, only meaningful when isPromotion is true.
+    public static int promotionType(int move) {
+        return Piece.KNIGHT + (flags(move) & 3);
+    }
+
+    // Coordinate notation, for example "e2e4" or "e7e8q".
+    public static String name(int move) {
+        if(move == NONE) {
+            return "0000";
+        }
+        String text = Square.name(from(move)) + Square.name(to(move));
+        if(isPromotion(move)) {
+            text += Character.toLowerCase(Piece.typeLetter(promotionType(move)));
+        }
+        return text;
+    }
+}
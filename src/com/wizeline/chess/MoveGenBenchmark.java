@@ -0,0 +1,141 @@
+package com.wizeline.chess;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+/*
+Micro-benchmarks for move generation. For every perft reference position it measures
+the time and the heap allocated to produce the moves of all pieces of the side to move:
+- "bitboard legal": MoveGenerator.generateLegal into a reused MoveList.
+- "bitboard pseudo": MoveGenerator.generate into a reused MoveList.
+- "legacy baseline": the original get*Move methods of Window.InputActionListener (now in
+  LegacyMoves), which build an ArrayList of square names per piece. This is the "before"
+  number.
+It finishes with a perft run to report nodes per second.
+
+Run it with:
+    java com.wizeline.chess.MoveGenBenchmark [seconds per measurement]
+Allocation numbers come from the per-thread allocation counter of the JVM, so they are
+exact for the measuring thread.
+*/
+public final class MoveGenBenchmark {
+    private static final long WARMUP_NANOS = 500000000L;
+
+    private static long sink;
+
+    private interface Operation {
+        void run(int index);
+    }
+
+    public static void main(String[] args) {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 1.0;
+        long measureNanos = (long) (seconds * 1000000000L);
+
+        final Position[] positions = new Position[Perft.REFERENCE_POSITIONS.length];
+        for(int i = 0; i < positions.length; i++) {
+            positions[i] = Fen.parse((String) Perft.REFERENCE_POSITIONS[i][0]);
+        }
+        final MoveList list = new MoveList();
+
+        measure("bitboard legal", positions.length, measureNanos, new Operation() {
+            public void run(int index) {
+                MoveGenerator.generateLegal(positions[index], list);
+                sink += list.size();
+            }
+        });
+        measure("bitboard pseudo", positions.length, measureNanos, new Operation() {
+            public void run(int index) {
+                MoveGenerator.generate(positions[index], list);
+                sink += list.size();
+            }
+        });
+
+        final LegacyMoves[] legacy = new LegacyMoves[positions.length];
+        for(int i = 0; i < positions.length; i++) {
+            legacy[i] = new LegacyMoves(new PositionMap(positions[i]));
+        }
+        measure("legacy baseline", positions.length, measureNanos, new Operation() {
+            public void run(int index) {
+                sink += legacyMoves(legacy[index], positions[index]);
+            }
+        });
+
+        Position start = Fen.parse(Fen.START_POSITION);
+        int depth = 5;
+        long begin = System.nanoTime();
+        long nodes = new Perft(depth).count(start, depth);
+        long nanos = System.nanoTime() - begin;
+        System.out.println(String.format("perft(%d) start position: %d nodes, %d nodes/s",
+            depth, nodes, nodes * 1000000000L / nanos));
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    // Moves of every piece of the side to move using the original string based methods.
+    private static int legacyMoves(LegacyMoves legacy, Position position) {
+        int count = 0;
+        int us = position.getSideToMove();
+        String turn = us == Piece.WHITE ? "w" : "b";
+        long pieces = position.colorBitboard(us);
+        while(pieces != 0) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            String from = Square.name(square);
+            ArrayList<String> moves;
+            switch(Piece.typeOf(position.pieceAt(square))) {
+                case Piece.PAWN:
+                    moves = legacy.getPawnMove(from, turn);
+                    break;
+                case Piece.KNIGHT:
+                    moves = legacy.getKnightMove(from);
+                    break;
+                case Piece.BISHOP:
+                    moves = legacy.getBishopMove(from, from);
+                    break;
+                case Piece.ROOK:
+                    moves = legacy.getRookMove(from, from);
+                    break;
+                case Piece.QUEEN:
+                    moves = legacy.getQueenMove(from, from);
+                    break;
+                default:
+                    moves = legacy.getKingMove(from);
+                    break;
+            }
+            count += moves.size();
+        }
+        return count;
+    }
+
+    private static void measure(String name, int positions, long measureNanos, Operation operation) {
+        run(positions, WARMUP_NANOS, operation);
+
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long operations = run(positions, measureNanos, operation);
+        long nanos = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        System.out.println(String.format("%-16s %10.1f ns/op %12.1f B/op %12d ops",
+            name, (double) nanos / operations, (double) allocated / operations, operations));
+    }
+
+    private static long run(int positions, long nanos, Operation operation) {
+        long operations = 0;
+        long deadline = System.nanoTime() + nanos;
+        do {
+            for(int i = 0; i < 1000; i++) {
+                operation.run(i % positions);
+            }
+            operations += 1000;
+        } while(System.nanoTime() < deadline);
+        return operations;
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
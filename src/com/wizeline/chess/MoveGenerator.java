@@ -0,0 +1,263 @@
+package com.wizeline.chess;
+
+/*
+Move generation. Two flavours are available:
+- Pseudo-legal moves follow the movement rules of every piece but may leave the own
+  king in check.
+- Legal moves are generated directly. The pieces checking the king and the pieces
+  pinned against it are computed once per position; after that every move is filtered
+  with bitboard masks instead of being played and tested:
+    * in double check only the king moves,
+    * in single check the other pieces must capture the checker or block the check,
+    * a pinned piece stays on the line through its king and the pinner,
+    * the king never steps onto an attacked square (found with the king removed, so
+      it cannot hide behind itself from a slider),
+    * en passant, which removes two pieces from a rank, is verified by recomputing
+      the attacks on the king with the resulting occupancy.
+Castling is only generated when the king does not start, cross or land on an attacked
+square, in both flavours.
+
+Moves are appended as packed ints (see Move) to a caller-supplied MoveList. Attacks come
+from the precomputed tables in Attacks, so generating moves never allocates.
+*/
+public final class MoveGenerator {
+    private static final long RANK_1 = 0xFFL;
+    private static final long RANK_8 = 0xFFL << 56;
+    private static final long ALL_SQUARES = ~0L;
+
+    private MoveGenerator() {
+    }
+
+    // Clears the list and fills it with every pseudo-legal move of the side to move.
+    public static void generate(Position position, MoveList list) {
+        list.clear();
+        generate(position, list, false, true);
+    }
+
+    // Clears the list and fills it with pseudo-legal captures and promotions, as used by quiescence search.
+    public static void generateCaptures(Position position, MoveList list) {
+        list.clear();
+        generate(position, list, false, false);
+    }
+
+    // Clears the list and fills it with every legal move of the side to move.
+    public static void generateLegal(Position position, MoveList list) {
+        list.clear();
+        generate(position, list, true, true);
+    }
+
+    // Clears the list and fills it with legal captures and promotions.
+    public static void generateLegalCaptures(Position position, MoveList list) {
+        list.clear();
+        generate(position, list, true, false);
+    }
+
+    // Fills the list with the legal moves and reports whether the game goes on.
+    public static GameStatus status(Position position, MoveList list) {
+        generateLegal(position, list);
+        boolean check = position.isInCheck();
+        if(list.isEmpty()) {
+            return check ? GameStatus.CHECKMATE : GameStatus.STALEMATE;
+        }
+        if(position.isThreefoldRepetition()) {
+            return GameStatus.THREEFOLD_REPETITION;
+        }
+        return check ? GameStatus.CHECK : GameStatus.ONGOING;
+    }
+
+    // Pieces of the side to move that are pinned against their own king.
+    public static long pinned(Position position) {
+        int us = position.getSideToMove();
+        int king = position.kingSquare(us);
+        return king == Square.NONE ? 0L : pinned(position, us, king);
+    }
+
+    // Enemy pieces giving check to the side to move.
+    public static long checkers(Position position) {
+        int us = position.getSideToMove();
+        int king = position.kingSquare(us);
+        if(king == Square.NONE) {
+            return 0L;
+        }
+        return position.attackersTo(king, position.occupied()) & position.colorBitboard(us ^ 1);
+    }
+
+    private static long pinned(Position position, int us, int king) {
+        int them = us ^ 1;
+        long occupied = position.occupied();
+        long queens = position.bitboard(them, Piece.QUEEN);
+        long snipers = (Attacks.rook(king, 0L) & (position.bitboard(them, Piece.ROOK) | queens))
+            | (Attacks.bishop(king, 0L) & (position.bitboard(them, Piece.BISHOP) | queens));
+        long pinned = 0L;
+        while(snipers != 0) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+            long blockers = Attacks.between(king, sniper) & occupied;
+            if(blockers != 0 && (blockers & (blockers - 1)) == 0) {
+                pinned |= blockers & position.colorBitboard(us);
+            }
+        }
+        return pinned;
+    }
+
+    private static void generate(Position position, MoveList list, boolean legal, boolean quiets) {
+        int us = position.getSideToMove();
+        int them = us ^ 1;
+        long occupied = position.occupied();
+        long own = position.colorBitboard(us);
+        long enemies = position.colorBitboard(them);
+        long destinations = quiets ? ~own : enemies;
+        int king = position.kingSquare(us);
+
+        long pinned = 0L;
+        long checkMask = ALL_SQUARES;
+        if(legal && king != Square.NONE) {
+            long checkers = position.attackersTo(king, occupied) & enemies;
+            generateKingMoves(position, list, king, destinations, enemies, them);
+            if(checkers != 0) {
+                if((checkers & (checkers - 1)) != 0) {
+                    return;
+                }
+                int checker = Long.numberOfTrailingZeros(checkers);
+                checkMask = checkers | Attacks.between(king, checker);
+            }
+            pinned = pinned(position, us, king);
+        }
+
+        generatePawnMoves(position, list, us, king, enemies, quiets, legal, checkMask, pinned);
+        for(int type = Piece.KNIGHT; type <= Piece.QUEEN; type++) {
+            long pieces = position.bitboard(us, type);
+            while(pieces != 0) {
+                int from = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+                long targets = Attacks.of(type, from, occupied) & destinations & checkMask;
+                if((pinned & (1L << from)) != 0) {
+                    targets &= Attacks.line(king, from);
+                }
+                addMoves(list, from, targets, enemies);
+            }
+        }
+        if(!legal && king != Square.NONE) {
+            addMoves(list, king, Attacks.king(king) & destinations, enemies);
+        }
+        if(quiets && checkMask == ALL_SQUARES && king != Square.NONE) {
+            generateCastling(position, list, us);
+        }
+    }
+
+    private static void generateKingMoves(Position position, MoveList list, int king, long destinations,
+            long enemies, int them) {
+        long occupiedWithoutKing = position.occupied() ^ (1L << king);
+        long targets = Attacks.king(king) & destinations;
+        while(targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            if(!position.isAttacked(to, them, occupiedWithoutKing)) {
+                list.add(Move.make(king, to, (enemies & (1L << to)) != 0 ? Move.CAPTURE : Move.QUIET));
+            }
+        }
+    }
+
+    private static void addMoves(MoveList list, int from, long targets, long enemies) {
+        while(targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            list.add(Move.make(from, to, (enemies & (1L << to)) != 0 ? Move.CAPTURE : Move.QUIET));
+        }
+    }
+
+    private static void generatePawnMoves(Position position, MoveList list, int us, int king, long enemies,
+            boolean quiets, boolean legal, long checkMask, long pinned) {
+        long empty = ~position.occupied();
+        int forward = us == Piece.WHITE ? 8 : -8;
+        int startRank = us == Piece.WHITE ? 1 : 6;
+        long promotionRank = us == Piece.WHITE ? RANK_8 : RANK_1;
+        int enPassant = position.getEnPassantSquare();
+
+        long pawns = position.bitboard(us, Piece.PAWN);
+        while(pawns != 0) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+            long allowed = checkMask;
+            if((pinned & (1L << from)) != 0) {
+                allowed &= Attacks.line(king, from);
+            }
+
+            int to = from + forward;
+            if((empty & (1L << to)) != 0) {
+                if((promotionRank & (1L << to)) != 0) {
+                    if((allowed & (1L << to)) != 0) {
+                        addPromotions(list, from, to, false, quiets);
+                    }
+                } else if(quiets) {
+                    if((allowed & (1L << to)) != 0) {
+                        list.add(Move.make(from, to, Move.QUIET));
+                    }
+                    int twoSteps = to + forward;
+                    if(Square.rank(from) == startRank && (empty & (1L << twoSteps)) != 0
+                            && (allowed & (1L << twoSteps)) != 0) {
+                        list.add(Move.make(from, twoSteps, Move.DOUBLE_PAWN_PUSH));
+                    }
+                }
+            }
+
+            long captures = Attacks.pawn(us, from) & enemies & allowed;
+            while(captures != 0) {
+                int target = Long.numberOfTrailingZeros(captures);
+                captures &= captures - 1;
+                if((promotionRank & (1L << target)) != 0) {
+                    addPromotions(list, from, target, true, true);
+                } else {
+                    list.add(Move.make(from, target, Move.CAPTURE));
+                }
+            }
+            if(enPassant != Square.NONE && (Attacks.pawn(us, from) & (1L << enPassant)) != 0
+                    && (!legal || isLegalEnPassant(position, us, king, from, enPassant))) {
+                list.add(Move.make(from, enPassant, Move.EN_PASSANT));
+            }
+        }
+    }
+
+    // Both pawns leave their squares at once, so the check and pin masks are not enough here.
+    private static boolean isLegalEnPassant(Position position, int us, int king, int from, int to) {
+        if(king == Square.NONE) {
+            return true;
+        }
+        long captured = 1L << (to ^ 8);
+        long occupied = (position.occupied() ^ (1L << from) ^ captured) | (1L << to);
+        long attackers = position.attackersTo(king, occupied) & position.colorBitboard(us ^ 1) & ~captured;
+        return attackers == 0;
+    }
+
+    // Queen promotions are always added, under-promotions only when all promotions are wanted.
+    private static void addPromotions(MoveList list, int from, int to, boolean capture, boolean all) {
+        list.add(Move.promotion(from, to, Piece.QUEEN, capture));
+        if(all) {
+            list.add(Move.promotion(from, to, Piece.KNIGHT, capture));
+            list.add(Move.promotion(from, to, Piece.ROOK, capture));
+            list.add(Move.promotion(from, to, Piece.BISHOP, capture));
+        }
+    }
+
+    private static void generateCastling(Position position, MoveList list, int us) {
+        int rights = position.getCastlingRights();
+        int them = us ^ 1;
+        int king = us == Piece.WHITE ? Square.E1 : Square.E8;
+        int kingside = us == Piece.WHITE ? Position.WHITE_KINGSIDE : Position.BLACK_KINGSIDE;
+        int queenside = us == Piece.WHITE ? Position.WHITE_QUEENSIDE : Position.BLACK_QUEENSIDE;
+        if((rights & (kingside | queenside)) == 0 || position.isAttacked(king, them)) {
+            return;
+        }
+        int rook = Piece.make(us, Piece.ROOK);
+        if((rights & kingside) != 0 && position.pieceAt(king + 3) == rook
+                && position.isEmpty(king + 1) && position.isEmpty(king + 2)
+                && !position.isAttacked(king + 1, them) && !position.isAttacked(king + 2, them)) {
+            list.add(Move.make(king, king + 2, Move.KING_CASTLE));
+        }
+        if((rights & queenside) != 0 && position.pieceAt(king - 4) == rook
+                && position.isEmpty(king - 1) && position.isEmpty(king - 2) && position.isEmpty(king - 3)
+                && !position.isAttacked(king - 1, them) && !position.isAttacked(king - 2, them)) {
+            list.add(Move.make(king, king - 2, Move.QUEEN_CASTLE));
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.wizeline.chess;
+
+/*
+Outcome of GameEngine.applyMove. Only ACCEPTED changes the position.
+*/
+public enum MoveResult {
+    ACCEPTED,
+    INVALID_INPUT,
+    EMPTY_SQUARE,
+    WRONG_TURN,
+    ILLEGAL_MOVE,
+    GAME_OVER;
+
+    public boolean isAccepted() {
+        return this == ACCEPTED;
+    }
+}
@@ -0,0 +1,148 @@
+package com.wizeline.chess;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/*
+Opening book read from a file of RECORD_SIZE (16) byte records sorted by key (compared as
+an unsigned number) and move:
+    bytes 0-7    Zobrist key of the position (see Zobrist), big-endian
+    bytes 8-11   packed move played from it (see Move)
+    bytes 12-15  weight, higher for moves that were played more often and scored better
+OpeningBookBuilder writes such files from PGN games.
+
+The file is memory-mapped instead of read, so opening even a very large book takes no
+time and no heap; a lookup binary-searches the records of the position and only touches
+the few pages on the way. The moves found are checked against the legal moves, so a key
+collision or a book built with other keys cannot produce an illegal move.
+
+A book can be used from several threads at once.
+*/
+public final class OpeningBook implements Closeable {
+    public static final int RECORD_SIZE = 16;
+    public static final int MAX_MOVES = MoveList.CAPACITY;
+
+    // Mapped in parts because one mapping cannot be larger than 2 GB.
+    private static final int RECORDS_PER_SEGMENT = 1 << 26;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long records;
+
+    public OpeningBook(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        long size = channel.size();
+        if(size % RECORD_SIZE != 0) {
+            channel.close();
+            throw new IOException("Not an opening book, size is not a multiple of " + RECORD_SIZE + ": " + file);
+        }
+        records = size / RECORD_SIZE;
+        segments = new MappedByteBuffer[(int) ((records + RECORDS_PER_SEGMENT - 1) / RECORDS_PER_SEGMENT)];
+        for(int i = 0; i < segments.length; i++) {
+            long start = (long) i * RECORDS_PER_SEGMENT * RECORD_SIZE;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, (long) RECORDS_PER_SEGMENT * RECORD_SIZE));
+            segments[i].order(ByteOrder.BIG_ENDIAN);
+        }
+    }
+
+    public long size() {
+        return records;
+    }
+
+    // Copies the legal book moves of the position and their weights, returns how many there are.
+    public int moves(Position position, int[] moves, int[] weights) {
+        long key = position.getHash();
+        MoveList legalMoves = null;
+        int count = 0;
+        for(long record = firstRecord(key); record < records && key(record) == key && count < moves.length; record++) {
+            if(legalMoves == null) {
+                legalMoves = new MoveList();
+                MoveGenerator.generateLegal(position, legalMoves);
+            }
+            int move = move(record);
+            int weight = weight(record);
+            if(weight > 0 && legalMoves.contains(move)) {
+                moves[count] = move;
+                weights[count] = weight;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // The book move with the highest weight, or Move.NONE when the position is not in the book.
+    public int bestMove(Position position) {
+        int[] moves = new int[MAX_MOVES];
+        int[] weights = new int[MAX_MOVES];
+        int count = moves(position, moves, weights);
+        int best = Move.NONE;
+        int bestWeight = 0;
+        for(int i = 0; i < count; i++) {
+            if(weights[i] > bestWeight) {
+                best = moves[i];
+                bestWeight = weights[i];
+            }
+        }
+        return best;
+    }
+
+    // A book move chosen at random in proportion to the weights, or Move.NONE when there is none.
+    public int pickMove(Position position, Random random) {
+        int[] moves = new int[MAX_MOVES];
+        int[] weights = new int[MAX_MOVES];
+        int count = moves(position, moves, weights);
+        long total = 0;
+        for(int i = 0; i < count; i++) {
+            total += weights[i];
+        }
+        if(total == 0) {
+            return Move.NONE;
+        }
+        long pick = (long) (random.nextDouble() * total);
+        for(int i = 0; i < count; i++) {
+            pick -= weights[i];
+            if(pick < 0) {
+                return moves[i];
+            }
+        }
+        return moves[count - 1];
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Index of the first record whose key is not below the given one.
+    private long firstRecord(long key) {
+        long low = 0;
+        long high = records;
+        while(low < high) {
+            long middle = (low + high) >>> 1;
+            if(Long.compareUnsigned(key(middle), key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private long key(long record) {
+        return segments[(int) (record / RECORDS_PER_SEGMENT)].getLong((int) (record % RECORDS_PER_SEGMENT) * RECORD_SIZE);
+    }
+
+    private int move(long record) {
+        return segments[(int) (record / RECORDS_PER_SEGMENT)].getInt((int) (record % RECORDS_PER_SEGMENT) * RECORD_SIZE + 8);
+    }
+
+    private int weight(long record) {
+        return segments[(int) (record / RECORDS_PER_SEGMENT)].getInt((int) (record % RECORDS_PER_SEGMENT) * RECORD_SIZE + 12);
+    }
+}
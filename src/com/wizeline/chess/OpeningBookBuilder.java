@@ -0,0 +1,327 @@
+package com.wizeline.chess;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/*
+Builds an OpeningBook file from PGN games. Every move in the first plies of each game that
+replays completely adds to the weight of its (position key, move) pair: 2 when the side
+that played it won the game, 1 for a draw or an unknown result and nothing for a loss,
+after the result PgnReader reports for the game. Rejected games add nothing. Pairs whose
+total weight stays below the minimum are left out.
+
+The pairs are collected in arrays of a fixed size; when they fill up they are sorted and
+equal pairs merged, and if that does not free half of them they are written to a
+temporary run file. At the end all runs are merged into the book, so the memory used does
+not depend on the size of the corpus.
+
+Run it with:
+    java com.wizeline.chess.OpeningBookBuilder <book> <games.pgn>... [--plies=<n>] [--min-weight=<n>]
+*/
+public final class OpeningBookBuilder {
+    public static final int DEFAULT_PLIES = 20;
+    public static final int DEFAULT_MIN_WEIGHT = 2;
+    private static final int RUN_ENTRIES = 1 << 22;
+
+    private final int maxPlies;
+    private final long[] keys = new long[RUN_ENTRIES];
+    private final int[] moves = new int[RUN_ENTRIES];
+    private final int[] weights = new int[RUN_ENTRIES];
+    private int size;
+    private final List<Path> runs = new ArrayList<Path>();
+    private long games;
+
+    public OpeningBookBuilder(int maxPlies) {
+        this.maxPlies = maxPlies;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int plies = DEFAULT_PLIES;
+        int minWeight = DEFAULT_MIN_WEIGHT;
+        List<Path> files = new ArrayList<Path>();
+        for(String arg : args) {
+            if(arg.startsWith("--plies=")) {
+                plies = Integer.parseInt(arg.substring("--plies=".length()));
+            } else if(arg.startsWith("--min-weight=")) {
+                minWeight = Integer.parseInt(arg.substring("--min-weight=".length()));
+            } else {
+                files.add(Paths.get(arg));
+            }
+        }
+        if(files.size() < 2) {
+            System.out.println("Usage: java com.wizeline.chess.OpeningBookBuilder <book> <games.pgn>... [--plies=<n>] [--min-weight=<n>]");
+            System.exit(2);
+        }
+
+        long start = System.nanoTime();
+        OpeningBookBuilder builder = new OpeningBookBuilder(plies);
+        for(Path file : files.subList(1, files.size())) {
+            System.out.println(file + ": " + builder.add(file));
+        }
+        long records = builder.write(files.get(0), minWeight);
+        System.out.println(String.format("Wrote %d records (%d bytes) from %d games in %d ms",
+            records, records * OpeningBook.RECORD_SIZE, builder.games, (System.nanoTime() - start) / 1000000L));
+
+        start = System.nanoTime();
+        try(OpeningBook book = new OpeningBook(files.get(0))) {
+            long opened = System.nanoTime() - start;
+            Position position = Fen.parse(Fen.START_POSITION);
+            int[] bookMoves = new int[OpeningBook.MAX_MOVES];
+            int[] bookWeights = new int[OpeningBook.MAX_MOVES];
+            int count = book.moves(position, bookMoves, bookWeights);
+            StringBuilder text = new StringBuilder();
+            for(int i = 0; i < count; i++) {
+                text.append(' ').append(San.format(position, bookMoves[i])).append(" (").append(bookWeights[i]).append(')');
+            }
+            System.out.println(String.format("Opened in %.2f ms, initial position:%s", opened / 1e6, text));
+        }
+    }
+
+    // Adds the opening moves of the games of a PGN file.
+    public PgnStatistics add(Path file) throws IOException {
+        PgnReader reader = new PgnReader(new PgnListener() {
+            // The pairs of the game being read, added when it finishes.
+            private final long[] gameKeys = new long[maxPlies];
+            private final int[] gameMoves = new int[maxPlies];
+            private final int[] gameMovers = new int[maxPlies];
+            private int ply;
+
+            public void gameStarted(long offset) {
+                ply = 0;
+            }
+
+            public void move(Position position, int move) {
+                if(ply < maxPlies) {
+                    gameKeys[ply] = position.getHash();
+                    gameMoves[ply] = move;
+                    gameMovers[ply] = position.getSideToMove();
+                    ply++;
+                }
+            }
+
+            public void gameFinished(long offset, int plies, String gameResult) {
+                for(int i = 0; i < ply; i++) {
+                    String win = gameMovers[i] == Piece.WHITE ? PgnReader.RESULT_WHITE_WINS : PgnReader.RESULT_BLACK_WINS;
+                    String loss = gameMovers[i] == Piece.WHITE ? PgnReader.RESULT_BLACK_WINS : PgnReader.RESULT_WHITE_WINS;
+                    int weight = gameResult.equals(win) ? 2 : gameResult.equals(loss) ? 0 : 1;
+                    if(weight > 0) {
+                        add(gameKeys[i], gameMoves[i], weight);
+                    }
+                }
+                games++;
+            }
+
+            public void gameRejected(long offset, long errorOffset, String reason) {
+                ply = 0;
+            }
+        });
+        return reader.read(file);
+    }
+
+    // Writes the book with the pairs of at least the given weight and returns the number of records.
+    public long write(Path book, int minWeight) throws IOException {
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(book), 1 << 16))) {
+            if(runs.isEmpty()) {
+                sortAndMerge();
+                long records = 0;
+                for(int i = 0; i < size; i++) {
+                    if(weights[i] >= minWeight) {
+                        writeRecord(out, keys[i], moves[i], weights[i]);
+                        records++;
+                    }
+                }
+                size = 0;
+                return records;
+            }
+            writeRun();
+            return mergeRuns(out, minWeight);
+        } finally {
+            for(Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+            runs.clear();
+        }
+    }
+
+    private void add(long key, int move, int weight) {
+        if(size == RUN_ENTRIES) {
+            sortAndMerge();
+            if(size > RUN_ENTRIES / 2) {
+                try {
+                    writeRun();
+                } catch(IOException e) {
+                    throw new IllegalStateException("Cannot write opening book run", e);
+                }
+            }
+        }
+        keys[size] = key;
+        moves[size] = move;
+        weights[size] = weight;
+        size++;
+    }
+
+    private void writeRun() throws IOException {
+        sortAndMerge();
+        Path run = Files.createTempFile("book", ".run");
+        runs.add(run);
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+            for(int i = 0; i < size; i++) {
+                writeRecord(out, keys[i], moves[i], weights[i]);
+            }
+        }
+        size = 0;
+    }
+
+    private long mergeRuns(DataOutputStream out, int minWeight) throws IOException {
+        PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(runs.size(), new Comparator<RunReader>() {
+            public int compare(RunReader a, RunReader b) {
+                int byKey = Long.compareUnsigned(a.key, b.key);
+                return byKey != 0 ? byKey : Integer.compare(a.move, b.move);
+            }
+        });
+        List<RunReader> readers = new ArrayList<RunReader>();
+        try {
+            for(Path run : runs) {
+                RunReader reader = new RunReader(run);
+                readers.add(reader);
+                if(reader.next()) {
+                    queue.add(reader);
+                }
+            }
+            long records = 0;
+            while(!queue.isEmpty()) {
+                RunReader first = queue.poll();
+                long key = first.key;
+                int move = first.move;
+                long weight = first.weight;
+                if(first.next()) {
+                    queue.add(first);
+                }
+                while(!queue.isEmpty() && queue.peek().key == key && queue.peek().move == move) {
+                    RunReader same = queue.poll();
+                    weight += same.weight;
+                    if(same.next()) {
+                        queue.add(same);
+                    }
+                }
+                if(weight >= minWeight) {
+                    writeRecord(out, key, move, (int) Math.min(weight, Integer.MAX_VALUE));
+                    records++;
+                }
+            }
+            return records;
+        } finally {
+            for(RunReader reader : readers) {
+                reader.in.close();
+            }
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, long key, int move, int weight) throws IOException {
+        out.writeLong(key);
+        out.writeInt(move);
+        out.writeInt(weight);
+    }
+
+    // Sorts the collected pairs by key and move and adds up the weights of equal pairs.
+    private void sortAndMerge() {
+        sort(0, size);
+        int merged = 0;
+        for(int i = 0; i < size; i++) {
+            if(merged > 0 && keys[merged - 1] == keys[i] && moves[merged - 1] == moves[i]) {
+                weights[merged - 1] = (int) Math.min((long) weights[merged - 1] + weights[i], Integer.MAX_VALUE);
+            } else {
+                keys[merged] = keys[i];
+                moves[merged] = moves[i];
+                weights[merged] = weights[i];
+                merged++;
+            }
+        }
+        size = merged;
+    }
+
+    // Quicksort of [low, high) recursing into the smaller half, insertion sort for short ranges.
+    private void sort(int low, int high) {
+        while(high - low > 16) {
+            int middle = (low + high) >>> 1;
+            long pivotKey = keys[middle];
+            int pivotMove = moves[middle];
+            int i = low;
+            int j = high - 1;
+            while(i <= j) {
+                while(compare(i, pivotKey, pivotMove) < 0) {
+                    i++;
+                }
+                while(compare(j, pivotKey, pivotMove) > 0) {
+                    j--;
+                }
+                if(i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if(j - low < high - i) {
+                sort(low, j + 1);
+                low = i;
+            } else {
+                sort(i, high);
+                high = j + 1;
+            }
+        }
+        for(int i = low + 1; i < high; i++) {
+            for(int j = i; j > low && compare(j - 1, keys[j], moves[j]) > 0; j--) {
+                swap(j - 1, j);
+            }
+        }
+    }
+
+    private int compare(int index, long key, int move) {
+        int byKey = Long.compareUnsigned(keys[index], key);
+        return byKey != 0 ? byKey : Integer.compare(moves[index], move);
+    }
+
+    private void swap(int a, int b) {
+        long key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+        int move = moves[a];
+        moves[a] = moves[b];
+        moves[b] = move;
+        int weight = weights[a];
+        weights[a] = weights[b];
+        weights[b] = weight;
+    }
+
+    // Reads the records of a run file one at a time.
+    private static final class RunReader {
+        final DataInputStream in;
+        long key;
+        int move;
+        int weight;
+
+        RunReader(Path run) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), 1 << 16));
+        }
+
+        boolean next() throws IOException {
+            try {
+                key = in.readLong();
+                move = in.readInt();
+                weight = in.readInt();
+                return true;
+            } catch(EOFException e) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.wizeline.chess;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+Lazy SMP: several Search instances search the same root at the same time and share one
+TranspositionTable. They do not otherwise communicate; the helpers fill the table with
+results the main search then finds, which makes it reach a given depth sooner. Helpers
+with an odd index start one iteration deeper so the threads are not all in the same part
+of the tree at the same time.
+
+The main search runs on the calling thread and decides the move; when it finishes the
+shared stop signal ends the helpers. Helpers run on a fixed pool of daemon threads
+created once. With one thread no pool is created and the search is exactly the
+single-threaded Search, which keeps results reproducible for tests.
+*/
+public final class ParallelSearch {
+    private final TranspositionTable table;
+    private final Search[] searches;
+    private final AtomicBoolean stopSignal = new AtomicBoolean();
+    private final ExecutorService helpers;
+
+    public ParallelSearch(TranspositionTable table, int threads) {
+        if(threads < 1) {
+            throw new IllegalArgumentException("At least one search thread is needed: " + threads);
+        }
+        this.table = table;
+        searches = new Search[threads];
+        for(int i = 0; i < threads; i++) {
+            searches[i] = new Search(table, stopSignal);
+            searches[i].setFirstDepth(1 + i % 2);
+        }
+        helpers = threads == 1 ? null : Executors.newFixedThreadPool(threads - 1, new HelperThreadFactory());
+    }
+
+    public SearchResult search(Position root, SearchLimits limits, SearchListener listener) {
+        clearStop();
+        return searchUnlessStopped(root, limits, listener);
+    }
+
+    // Clears a stop asked for an earlier search. ComputerPlayer.thinkInBackground does it on
+    // the thread that asks for the search, so a stop that follows is not lost.
+    void clearStop() {
+        stopSignal.set(false);
+    }
+
+    // Like search without clearing the stop signal: a search stopped since clearStop returns
+    // after its first iteration.
+    SearchResult searchUnlessStopped(final Position root, SearchLimits limits, final SearchListener listener) {
+        table.newSearch();
+        if(helpers == null) {
+            return searches[0].search(root, limits, listener);
+        }
+
+        final SearchLimits helperLimits = new SearchLimits();
+        helperLimits.setTimeMillis(limits.getTimeMillis());
+        List<Future<?>> running = new ArrayList<Future<?>>();
+        for(int i = 1; i < searches.length; i++) {
+            final Search helper = searches[i];
+            running.add(helpers.submit(new Runnable() {
+                public void run() {
+                    helper.search(root, helperLimits, null);
+                }
+            }));
+        }
+
+        SearchListener totals = listener == null ? null : new SearchListener() {
+            public void iterationCompleted(SearchResult result) {
+                listener.iterationCompleted(withTotalNodes(result));
+            }
+        };
+        SearchResult result = searches[0].search(root, limits, totals);
+        stopSignal.set(true);
+        for(Future<?> helper : running) {
+            try {
+                helper.get();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch(ExecutionException e) {
+                throw new IllegalStateException("Search helper failed", e.getCause());
+            }
+        }
+        return withTotalNodes(result);
+    }
+
+    // Asks a running search to return as soon as possible, safe to call from any thread.
+    public void stop() {
+        stopSignal.set(true);
+    }
+
+    public int getThreads() {
+        return searches.length;
+    }
+
+    // Ends the helper threads; the instance must not be used afterwards.
+    public void shutdown() {
+        stop();
+        if(helpers != null) {
+            helpers.shutdownNow();
+        }
+    }
+
+    // Helper counts are read while they run, so they are approximate until the helpers finished.
+    private SearchResult withTotalNodes(SearchResult result) {
+        long nodes = 0;
+        for(Search search : searches) {
+            nodes += search.getNodes();
+        }
+        return new SearchResult(result.getBestMove(), result.getScore(), result.getDepth(), nodes,
+            result.getTimeMillis(), result.getPrincipalVariation());
+    }
+
+    private static final class HelperThreadFactory implements ThreadFactory {
+        private static final AtomicInteger COUNT = new AtomicInteger();
+
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "search-helper-" + COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.wizeline.chess;
+
+/*
+Perft walks the legal move tree of a position to a fixed depth and counts the leaf
+nodes. The counts for well known positions are published, so comparing against them
+is the reference correctness check for move generation: every rule (castling, en
+passant, promotions, pins, checks) shows up in them.
+
+Run it with:
+    java com.wizeline.chess.Perft [maxDepth]
+Every reference position is searched up to its reference depth (or maxDepth if it is
+lower). The exit code is 1 when any count differs, so it can gate a build.
+*/
+public final class Perft {
+    // FEN, then the expected node counts starting at depth 1.
+    static final Object[][] REFERENCE_POSITIONS = {
+        {Fen.START_POSITION,
+            new long[] {20L, 400L, 8902L, 197281L, 4865609L, 119060324L}},
+        {"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            new long[] {48L, 2039L, 97862L, 4085603L, 193690690L}},
+        {"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            new long[] {14L, 191L, 2812L, 43238L, 674624L, 11030083L}},
+        {"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            new long[] {6L, 264L, 9467L, 422333L, 15833292L}},
+        {"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            new long[] {44L, 1486L, 62379L, 2103487L, 89941194L}},
+        {"r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            new long[] {46L, 2079L, 89890L, 3894594L, 164075551L}},
+    };
+
+    private final MoveList[] lists;
+
+    public Perft(int maxDepth) {
+        lists = new MoveList[maxDepth + 1];
+        for(int i = 0; i <= maxDepth; i++) {
+            lists[i] = new MoveList();
+        }
+    }
+
+    // Number of leaf nodes of the legal move tree, moves at depth 1 are counted without playing them.
+    public long count(Position position, int depth) {
+        if(depth == 0) {
+            return 1;
+        }
+        MoveList list = lists[depth];
+        MoveGenerator.generateLegal(position, list);
+        if(depth == 1) {
+            return list.size();
+        }
+        long nodes = 0;
+        for(int i = 0; i < list.size(); i++) {
+            int move = list.get(i);
+            position.makeMove(move);
+            nodes += count(position, depth - 1);
+            position.unmakeMove(move);
+        }
+        return nodes;
+    }
+
+    // Prints the node count below every root move, useful to locate a wrong count.
+    public long divide(Position position, int depth) {
+        MoveList list = new MoveList();
+        MoveGenerator.generateLegal(position, list);
+        long total = 0;
+        for(int i = 0; i < list.size(); i++) {
+            int move = list.get(i);
+            position.makeMove(move);
+            long nodes = count(position, depth - 1);
+            position.unmakeMove(move);
+            System.out.println(Move.name(move) + ": " + nodes);
+            total += nodes;
+        }
+        System.out.println("Total: " + total);
+        return total;
+    }
+
+    public static void main(String[] args) {
+        int maxDepth = args.length > 0 ? Integer.parseInt(args[0]) : Integer.MAX_VALUE;
+        boolean failed = false;
+        long totalNodes = 0;
+        long totalNanos = 0;
+        for(Object[] reference : REFERENCE_POSITIONS) {
+            String fen = (String) reference[0];
+            long[] expected = (long[]) reference[1];
+            int depth = Math.min(maxDepth, expected.length);
+            Position position = Fen.parse(fen);
+
+            long start = System.nanoTime();
+            long nodes = new Perft(depth).count(position, depth);
+            long nanos = System.nanoTime() - start;
+            totalNodes += nodes;
+            totalNanos += nanos;
+
+            boolean ok = nodes == expected[depth - 1];
+            failed |= !ok;
+            System.out.println((ok ? "OK   " : "FAIL ") + fen + " depth " + depth + ": " + nodes
+                + (ok ? "" : " (expected " + expected[depth - 1] + ")")
+                + ", " + nanos / 1000000 + " ms, " + nodesPerSecond(nodes, nanos) + " nodes/s");
+        }
+        System.out.println("Total: " + totalNodes + " nodes, " + nodesPerSecond(totalNodes, totalNanos) + " nodes/s");
+        if(failed) {
+            System.exit(1);
+        }
+    }
+
+    private static long nodesPerSecond(long nodes, long nanos) {
+        return nanos == 0 ? 0 : nodes * 1000000000L / nanos;
+    }
+}
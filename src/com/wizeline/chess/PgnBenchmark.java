@@ -0,0 +1,133 @@
+package com.wizeline.chess;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/*
+Throughput of PgnReader in games per second. It reads the given PGN file, or without one
+writes a corpus of random games (with the same seed every run, and one game in a thousand
+carrying an illegal move) to a temporary file and reads that. Every pass prints games,
+plies and megabytes per second, the bytes allocated per game and the heap in use after
+the pass, which stays the same however large the file is.
+
+Run it with:
+    java com.wizeline.chess.PgnBenchmark [file.pgn] [passes]
+    java com.wizeline.chess.PgnBenchmark --games=<n> [passes]
+*/
+public final class PgnBenchmark {
+    private static final int DEFAULT_GAMES = 20000;
+    private static final int MAX_PLIES = 200;
+    private static final int REPORTED_ERRORS = 5;
+
+    public static void main(String[] args) throws IOException {
+        Path file = null;
+        int games = DEFAULT_GAMES;
+        int passes = 3;
+        for(String arg : args) {
+            if(arg.startsWith("--games=")) {
+                games = Integer.parseInt(arg.substring("--games=".length()));
+            } else if(file == null && !arg.matches("\\d+")) {
+                file = Paths.get(arg);
+            } else {
+                passes = Integer.parseInt(arg);
+            }
+        }
+        boolean generated = file == null;
+        if(generated) {
+            file = Files.createTempFile("games", ".pgn");
+            long start = System.nanoTime();
+            writeRandomGames(file, games, new Random(1));
+            System.out.println(String.format("Wrote %d random games, %d bytes, in %d ms",
+                games, Files.size(file), (System.nanoTime() - start) / 1000000L));
+        }
+
+        try {
+            PgnReader reader = new PgnReader(new PgnListener() {
+                private int errors;
+
+                public void gameRejected(long offset, long errorOffset, String reason) {
+                    if(errors++ < REPORTED_ERRORS) {
+                        System.out.println("  game at byte " + offset + " rejected at byte " + errorOffset + ": " + reason);
+                    }
+                }
+            });
+            for(int pass = 1; pass <= passes; pass++) {
+                long allocatedBefore = allocatedBytes();
+                long start = System.nanoTime();
+                PgnStatistics statistics = reader.read(file);
+                long nanos = System.nanoTime() - start;
+                long allocated = allocatedBytes() - allocatedBefore;
+                long total = statistics.getGames() + statistics.getRejectedGames();
+                System.gc();
+                Runtime runtime = Runtime.getRuntime();
+                System.out.println(String.format("pass %d: %s", pass, statistics));
+                System.out.println(String.format("  %.0f games/s, %.0f plies/s, %.1f MB/s, %d B/game allocated, %d KB heap in use",
+                    total * 1e9 / nanos, statistics.getPlies() * 1e9 / nanos, statistics.getBytes() * 1e3 / nanos,
+                    total == 0 ? 0 : allocated / total, (runtime.totalMemory() - runtime.freeMemory()) / 1024));
+            }
+        } finally {
+            if(generated) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    // Plays random legal moves from the initial position and writes the games in PGN.
+    static void writeRandomGames(Path file, int games, Random random) throws IOException {
+        Position position = new Position();
+        MoveList moves = new MoveList();
+        StringBuilder movetext = new StringBuilder();
+        try(Writer out = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 1 << 16)) {
+            for(int game = 1; game <= games; game++) {
+                position.setStartPosition();
+                movetext.setLength(0);
+                int corruptPly = game % 1000 == 0 ? random.nextInt(20) : -1;
+                String result = PgnReader.RESULT_UNKNOWN;
+                for(int ply = 0; ply < MAX_PLIES; ply++) {
+                    GameStatus status = MoveGenerator.status(position, moves);
+                    if(status.isOver()) {
+                        if(status == GameStatus.CHECKMATE) {
+                            result = position.getSideToMove() == Piece.WHITE ? PgnReader.RESULT_BLACK_WINS : PgnReader.RESULT_WHITE_WINS;
+                        } else {
+                            result = PgnReader.RESULT_DRAW;
+                        }
+                        break;
+                    }
+                    if(ply % 2 == 0) {
+                        movetext.append(ply / 2 + 1).append(". ");
+                    }
+                    int move = moves.get(random.nextInt(moves.size()));
+                    movetext.append(ply == corruptPly ? "Qh9" : San.format(position, move)).append(' ');
+                    if(ply % 16 == 15) {
+                        movetext.append('\n');
+                    }
+                    if(random.nextInt(50) == 0) {
+                        movetext.append("{a comment} ");
+                    }
+                    position.makeMove(move);
+                }
+                out.write("[Event \"Random game " + game + "\"]\n");
+                out.write("[Site \"PgnBenchmark\"]\n");
+                out.write("[White \"Random\"]\n");
+                out.write("[Black \"Random\"]\n");
+                out.write("[Result \"" + result + "\"]\n\n");
+                out.append(movetext).append(result).append("\n\n");
+            }
+        }
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,29 @@
+package com.wizeline.chess;
+
+/*
+Receives the games read by PgnReader as they are replayed. Every game starts with
+gameStarted and ends with either gameFinished, when all of its moves were legal, or
+gameRejected. Offsets are byte offsets from the start of the file.
+
+All methods do nothing by default so a listener only implements what it needs. The
+position passed to move belongs to the reader and is reused for the next game, so it
+must not be kept.
+*/
+public interface PgnListener {
+    default void gameStarted(long offset) {
+    }
+
+    default void tag(String name, String value) {
+    }
+
+    // Called with the position before the move is played.
+    default void move(Position position, int move) {
+    }
+
+    // The result is one of the PgnReader.RESULT_ constants.
+    default void gameFinished(long offset, int plies, String result) {
+    }
+
+    default void gameRejected(long offset, long errorOffset, String reason) {
+    }
+}
@@ -0,0 +1,476 @@
+package com.wizeline.chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+Streaming reader for Portable Game Notation (PGN) files. The file is read through a
+channel in fixed size chunks and parsed byte by byte, every move is looked up in the
+legal moves of the position (see San) and played on one Position owned by the reader,
+so the memory used does not depend on the size of the file or the number of games.
+
+A game is a tag section ([Name "value"] pairs, a FEN tag sets the starting position)
+followed by movetext: move numbers, SAN moves, {comments}, ; comments to the end of the
+line, (variations), $ numeric annotations and a termination marker (1-0, 0-1, 1/2-1/2
+or *). Comments and variations are skipped.
+
+A game with a malformed tag, an invalid FEN tag (see Fen for the positions it rejects), a
+move that is not legal or a move that fails to replay is reported to the listener with
+the offset of the problem and the rest of it is skipped up to its termination marker or
+the next tag section; reading goes on with the next game.
+*/
+public final class PgnReader {
+    public static final String RESULT_WHITE_WINS = "1-0";
+    public static final String RESULT_BLACK_WINS = "0-1";
+    public static final String RESULT_DRAW = "1/2-1/2";
+    public static final String RESULT_UNKNOWN = "*";
+
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    // Longer tokens and tag values are cut, which only happens in malformed files.
+    private static final int MAX_TOKEN = 1024;
+    private static final int EOF = -1;
+
+    // Where the reader is in the file.
+    private static final int BETWEEN_GAMES = 0;
+    private static final int TAGS = 1;
+    private static final int MOVES = 2;
+    private static final int SKIPPING = 3;
+
+    private final PgnListener listener;
+    private final ByteBuffer buffer;
+    private final byte[] bytes;
+    private int index;
+    private int limit;
+    private long bufferOffset;
+    private ReadableByteChannel channel;
+    // Set when reading a range of a file with positional reads.
+    private FileChannel file;
+    private long filePosition;
+    private long fileEnd;
+
+    private final byte[] token = new byte[MAX_TOKEN];
+    private int tokenLength;
+
+    private final Position position = new Position();
+    private final MoveList legalMoves = new MoveList();
+    private PgnStatistics statistics;
+    private int state;
+    private boolean skippingTags;
+    private long gameOffset;
+    private String fen;
+    private long fenOffset;
+    private String tagResult;
+    private int plies;
+    private volatile boolean cancelled;
+
+    public PgnReader() {
+        this(new PgnListener() {
+        });
+    }
+
+    public PgnReader(PgnListener listener) {
+        this(listener, DEFAULT_BUFFER_SIZE);
+    }
+
+    public PgnReader(PgnListener listener, int bufferSize) {
+        this.listener = listener;
+        bytes = new byte[bufferSize];
+        buffer = ByteBuffer.wrap(bytes);
+    }
+
+    public PgnStatistics read(Path file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(channel);
+        }
+    }
+
+    // Reads games until the end of the channel, which is not closed.
+    public PgnStatistics read(ReadableByteChannel channel) throws IOException {
+        this.channel = channel;
+        try {
+            return read(0L);
+        } finally {
+            this.channel = null;
+        }
+    }
+
+    // Reads the games in the bytes [start, end) of the file, which should be the boundaries of
+    // games. Offsets passed to the listener count from the start of the file. The position of
+    // the channel is not used, so several readers can read ranges of the same channel at once.
+    public PgnStatistics read(FileChannel file, long start, long end) throws IOException {
+        this.file = file;
+        filePosition = start;
+        fileEnd = end;
+        try {
+            return read(start);
+        } finally {
+            this.file = null;
+        }
+    }
+
+    private PgnStatistics read(long startOffset) throws IOException {
+        statistics = new PgnStatistics();
+        index = 0;
+        limit = 0;
+        bufferOffset = startOffset;
+        state = BETWEEN_GAMES;
+        int c;
+        while((c = peek()) != EOF) {
+            long offset = offset();
+            if(c <= ' ') {
+                index++;
+            } else if(c == '[') {
+                tagSection(offset);
+            } else if(c == '{') {
+                skipComment();
+            } else if(c == ';' || c == '%') {
+                skipLine();
+            } else if(c == '(') {
+                skipVariation();
+            } else if(c == ')' || c == '}' || c == ']') {
+                index++;
+                if(state == MOVES) {
+                    reject(offset, "Unexpected '" + (char) c + "'");
+                }
+            } else {
+                readToken();
+                if(c != '$') {
+                    movetext(offset);
+                }
+            }
+        }
+        if(cancelled) {
+            state = BETWEEN_GAMES;
+        } else {
+            endOfFile();
+        }
+        return statistics;
+    }
+
+    // Makes a running read return at the next refill of the buffer, from any thread. The game
+    // being read is dropped without gameFinished or gameRejected, and later reads return at once.
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private void tagSection(long offset) throws IOException {
+        if(state == SKIPPING && skippingTags) {
+            skipLine();
+            return;
+        }
+        if(state == MOVES) {
+            finishGame(tagResult != null ? tagResult : RESULT_UNKNOWN);
+        }
+        if(state != TAGS) {
+            startGame(offset);
+        }
+        if(!readTag()) {
+            reject(offset, "Malformed tag");
+            skipLine();
+        }
+    }
+
+    // Reads [Name "value"] and passes it on, false when it is malformed.
+    private boolean readTag() throws IOException {
+        long offset = offset();
+        index++;
+        skipSpaces();
+        int nameLength = 0;
+        int c;
+        while((c = peek()) > ' ' && c != '"' && c != ']') {
+            index++;
+            if(nameLength < MAX_TOKEN) {
+                token[nameLength++] = (byte) c;
+            }
+        }
+        skipSpaces();
+        if(nameLength == 0 || peek() != '"') {
+            return false;
+        }
+        index++;
+        tokenLength = nameLength;
+        while((c = peek()) != '"') {
+            // Stops before the end of the line so that skipping the bad tag does not eat the next line.
+            if(c == EOF || c == '\n') {
+                return false;
+            }
+            index++;
+            if(c == '\\') {
+                c = read();
+                if(c == EOF) {
+                    return false;
+                }
+            }
+            if(tokenLength < MAX_TOKEN) {
+                token[tokenLength++] = (byte) c;
+            }
+        }
+        index++;
+        skipSpaces();
+        if(peek() != ']') {
+            return false;
+        }
+        index++;
+        String name = new String(token, 0, nameLength, StandardCharsets.US_ASCII);
+        String value = new String(token, nameLength, tokenLength - nameLength, StandardCharsets.UTF_8);
+        if(name.equals("FEN")) {
+            fen = value;
+            fenOffset = offset;
+        } else if(name.equals("Result")) {
+            tagResult = result(value);
+        }
+        listener.tag(name, value);
+        return true;
+    }
+
+    private void movetext(long offset) {
+        String result = result(token, tokenLength);
+        if(state == SKIPPING) {
+            skippingTags = false;
+            if(result != null) {
+                state = BETWEEN_GAMES;
+            }
+            return;
+        }
+        if(result != null) {
+            if(state != BETWEEN_GAMES && (state == MOVES || startMoves())) {
+                finishGame(result);
+            }
+            return;
+        }
+        if(state == BETWEEN_GAMES) {
+            startGame(offset);
+        }
+        if(state == TAGS && !startMoves()) {
+            return;
+        }
+
+        // Move numbers, alone ("12." or "12...") or in front of the move ("12.e4").
+        int start = 0;
+        while(start < tokenLength && token[start] >= '0' && token[start] <= '9') {
+            start++;
+        }
+        if(start < tokenLength && token[start] != '.') {
+            start = 0;
+        }
+        while(start < tokenLength && token[start] == '.') {
+            start++;
+        }
+        if(start == tokenLength) {
+            return;
+        }
+
+        // A position the move generator cannot handle ends this game only.
+        int move;
+        try {
+            MoveGenerator.generateLegal(position, legalMoves);
+            move = San.parse(position, legalMoves, token, start, tokenLength);
+        } catch(RuntimeException e) {
+            replayFailed(offset + start, start, e);
+            return;
+        }
+        if(move == Move.NONE) {
+            reject(offset + start, "Illegal or unreadable move "
+                + new String(token, start, tokenLength - start, StandardCharsets.UTF_8) + " at ply " + (plies + 1));
+            return;
+        }
+        listener.move(position, move);
+        try {
+            position.makeMove(move);
+        } catch(RuntimeException e) {
+            replayFailed(offset + start, start, e);
+            return;
+        }
+        plies++;
+    }
+
+    private void replayFailed(long offset, int start, RuntimeException e) {
+        reject(offset, "Cannot replay move " + new String(token, start, tokenLength - start, StandardCharsets.UTF_8)
+            + " at ply " + (plies + 1) + ": " + e);
+    }
+
+    private void endOfFile() {
+        if(state == MOVES || state == TAGS && startMoves()) {
+            finishGame(tagResult != null ? tagResult : RESULT_UNKNOWN);
+        }
+        state = BETWEEN_GAMES;
+    }
+
+    private void startGame(long offset) {
+        state = TAGS;
+        gameOffset = offset;
+        fen = null;
+        tagResult = null;
+        plies = 0;
+        listener.gameStarted(offset);
+    }
+
+    // Sets up the position at the end of the tag section, false when the FEN tag is invalid.
+    private boolean startMoves() {
+        if(fen == null) {
+            position.setStartPosition();
+        } else {
+            try {
+                Fen.load(position, fen);
+            } catch(IllegalArgumentException e) {
+                reject(fenOffset, e.getMessage());
+                return false;
+            }
+        }
+        state = MOVES;
+        return true;
+    }
+
+    private void finishGame(String result) {
+        statistics.gameFinished(plies, result);
+        listener.gameFinished(gameOffset, plies, result);
+        state = BETWEEN_GAMES;
+    }
+
+    private void reject(long offset, String reason) {
+        statistics.gameRejected();
+        listener.gameRejected(gameOffset, offset, reason);
+        skippingTags = state == TAGS;
+        state = SKIPPING;
+    }
+
+    // Reads a movetext token into token, up to the next space or delimiter.
+    private void readToken() throws IOException {
+        tokenLength = 0;
+        int c;
+        while((c = peek()) > ' ' && c != '{' && c != '}' && c != '(' && c != ')'
+                && c != '[' && c != ']' && c != ';' && c != '"') {
+            index++;
+            if(tokenLength < MAX_TOKEN) {
+                token[tokenLength++] = (byte) c;
+            }
+        }
+        if(tokenLength == 0) {
+            index++;
+        }
+    }
+
+    private void skipComment() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while(c != '}' && c != EOF);
+    }
+
+    private void skipLine() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while(c != '\n' && c != EOF);
+    }
+
+    // Skips a variation including nested ones and the comments in them.
+    private void skipVariation() throws IOException {
+        int depth = 0;
+        int c;
+        while((c = read()) != EOF) {
+            if(c == '(') {
+                depth++;
+            } else if(c == ')' && --depth == 0) {
+                return;
+            } else if(c == '{') {
+                skipComment();
+            } else if(c == ';') {
+                skipLine();
+            }
+        }
+    }
+
+    private void skipSpaces() throws IOException {
+        int c;
+        while((c = peek()) == ' ' || c == '\t') {
+            index++;
+        }
+    }
+
+    private int peek() throws IOException {
+        if(index == limit && !fill()) {
+            return EOF;
+        }
+        return bytes[index] & 0xFF;
+    }
+
+    private int read() throws IOException {
+        if(index == limit && !fill()) {
+            return EOF;
+        }
+        return bytes[index++] & 0xFF;
+    }
+
+    private boolean fill() throws IOException {
+        if(cancelled) {
+            return false;
+        }
+        bufferOffset += limit;
+        index = 0;
+        limit = 0;
+        buffer.clear();
+        int count;
+        if(file != null) {
+            long remaining = fileEnd - filePosition;
+            if(remaining <= 0) {
+                return false;
+            }
+            buffer.limit((int) Math.min(remaining, bytes.length));
+            count = file.read(buffer, filePosition);
+            if(count > 0) {
+                filePosition += count;
+            }
+        } else {
+            do {
+                count = channel.read(buffer);
+            } while(count == 0);
+        }
+        if(count < 0) {
+            return false;
+        }
+        limit = count;
+        statistics.addBytes(count);
+        return true;
+    }
+
+    private long offset() {
+        return bufferOffset + index;
+    }
+
+    // The RESULT_ constant written in the token, or null when it is not a termination marker.
+    private static String result(byte[] text, int length) {
+        if(length == 1 && text[0] == '*') {
+            return RESULT_UNKNOWN;
+        }
+        if(length == 3 && text[1] == '-' && (text[0] == '1' && text[2] == '0' || text[0] == '0' && text[2] == '1')) {
+            return text[0] == '1' ? RESULT_WHITE_WINS : RESULT_BLACK_WINS;
+        }
+        if(length == 7 && text[0] == '1' && text[1] == '/' && text[2] == '2' && text[3] == '-'
+                && text[4] == '1' && text[5] == '/' && text[6] == '2') {
+            return RESULT_DRAW;
+        }
+        return null;
+    }
+
+    private static String result(String value) {
+        if(value.equals(RESULT_WHITE_WINS)) {
+            return RESULT_WHITE_WINS;
+        } else if(value.equals(RESULT_BLACK_WINS)) {
+            return RESULT_BLACK_WINS;
+        } else if(value.equals(RESULT_DRAW)) {
+            return RESULT_DRAW;
+        }
+        return RESULT_UNKNOWN;
+    }
+}
@@ -0,0 +1,109 @@
+package com.wizeline.chess;
+
+/*
+Counts of what PgnReader found in a file: games replayed and rejected, moves played and
+the results of the accepted games. When a file or a part of it could not be read, the
+counts cover the rest and getFailure tells why.
+*/
+public final class PgnStatistics {
+    private long games;
+    private long rejectedGames;
+    private long plies;
+    private long whiteWins;
+    private long blackWins;
+    private long draws;
+    private long unfinished;
+    private long bytes;
+    private String failure;
+
+    void gameFinished(int gamePlies, String result) {
+        games++;
+        plies += gamePlies;
+        if(result == PgnReader.RESULT_WHITE_WINS) {
+            whiteWins++;
+        } else if(result == PgnReader.RESULT_BLACK_WINS) {
+            blackWins++;
+        } else if(result == PgnReader.RESULT_DRAW) {
+            draws++;
+        } else {
+            unfinished++;
+        }
+    }
+
+    void gameRejected() {
+        rejectedGames++;
+    }
+
+    void addBytes(long count) {
+        bytes += count;
+    }
+
+    // Records why (part of) the file was not read; the first failure is kept.
+    void failed(String reason) {
+        if(failure == null) {
+            failure = reason;
+        }
+    }
+
+    // Adds the counts of another part of the same file or of another file.
+    public void add(PgnStatistics other) {
+        games += other.games;
+        rejectedGames += other.rejectedGames;
+        plies += other.plies;
+        whiteWins += other.whiteWins;
+        blackWins += other.blackWins;
+        draws += other.draws;
+        unfinished += other.unfinished;
+        bytes += other.bytes;
+        if(other.failure != null) {
+            failed(other.failure);
+        }
+    }
+
+    // Games whose moves were all legal.
+    public long getGames() {
+        return games;
+    }
+
+    // Games with a malformed tag, an illegal or unreadable move or an invalid FEN tag.
+    public long getRejectedGames() {
+        return rejectedGames;
+    }
+
+    // Moves played in the accepted games.
+    public long getPlies() {
+        return plies;
+    }
+
+    public long getWhiteWins() {
+        return whiteWins;
+    }
+
+    public long getBlackWins() {
+        return blackWins;
+    }
+
+    public long getDraws() {
+        return draws;
+    }
+
+    // Accepted games ending with "*" or without a result.
+    public long getUnfinished() {
+        return unfinished;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    // Why the file or a part of it was not read, null when all of it was.
+    public String getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return games + " games, " + rejectedGames + " rejected, " + plies + " plies, results +"
+            + whiteWins + " -" + blackWins + " =" + draws + " *" + unfinished + ", " + bytes + " bytes";
+    }
+}
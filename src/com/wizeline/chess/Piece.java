@@ -0,0 +1,92 @@
+package com.wizeline.chess;
+
+/*
+Pieces are encoded as small integers so they can index bitboard arrays directly.
+A piece code is color * 6 + type, which keeps all white pieces in 0..5 and all
+black pieces in 6..11. NONE (-1) marks an empty square.
+
+The string form used by the Board class ("wP", "bK", ...) is kept in a
+precomputed table so converting between both representations never allocates.
+*/
+public final class Piece {
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+
+    public static final int TYPES = 6;
+    public static final int COUNT = 12;
+    public static final int NONE = -1;
+
+    public static final int WHITE_PAWN = 0;
+    public static final int WHITE_KNIGHT = 1;
+    public static final int WHITE_BISHOP = 2;
+    public static final int WHITE_ROOK = 3;
+    public static final int WHITE_QUEEN = 4;
+    public static final int WHITE_KING = 5;
+    public static final int BLACK_PAWN = 6;
+    public static final int BLACK_KNIGHT = 7;
+    public static final int BLACK_BISHOP = 8;
+    public static final int BLACK_ROOK = 9;
+    public static final int BLACK_QUEEN = 10;
+    public static final int BLACK_KING = 11;
+
+    private static final String TYPE_LETTERS = "PNBRQK";
+    private static final String[] NAMES = new String[COUNT];
+
+    static {
+        for(int piece = 0; piece < COUNT; piece++) {
+            char color = colorOf(piece) == WHITE ? 'w' : 'b';
+            NAMES[piece] = new String(new char[] {color, TYPE_LETTERS.charAt(typeOf(piece))});
+        }
+    }
+
+    private Piece() {
+    }
+
+    public static int make(int color, int type) {
+        return color * TYPES + type;
+    }
+
+    public static int colorOf(int piece) {
+        return piece < TYPES ? WHITE : BLACK;
+    }
+
+    public static int typeOf(int piece) {
+        return piece < TYPES ? piece : piece - TYPES;
+    }
+
+    public static char typeLetter(int type) {
+        return TYPE_LETTERS.charAt(type);
+    }
+
+    // Returns the Board representation of a piece, for example "wP" or "bK".
+    public static String name(int piece) {
+        return piece == NONE ? null : NAMES[piece];
+    }
+
+    // Parses the Board representation of a piece, returns NONE when it is not valid.
+    public static int fromName(Object name) {
+        if(!(name instanceof String) || ((String) name).length() != 2) {
+            return NONE;
+        }
+        String value = (String) name;
+        int type = TYPE_LETTERS.indexOf(value.charAt(1));
+        if(type < 0) {
+            return NONE;
+        }
+        char color = value.charAt(0);
+        if(color == 'w') {
+            return make(WHITE, type);
+        }
+        if(color == 'b') {
+            return make(BLACK, type);
+        }
+        return NONE;
+    }
+}
@@ -0,0 +1,430 @@
+package com.wizeline.chess;
+
+import java.util.Arrays;
+
+/*
+The Position class holds the state of a chess game using bitboards: one 64-bit
+long per piece (color and type), one per color and one for all occupied squares.
+Bit n of a bitboard is set when square n (see Square) holds that piece, so asking
+whether a square is occupied, or by what, is a single bit test.
+
+A mailbox array (one entry per square) is kept in sync with the bitboards so that
+finding the piece on a given square does not require looking through twelve
+bitboards.
+
+Besides the pieces the position also stores the side to move, the castling rights,
+the en passant target square and the move counters.
+
+Moves are applied with makeMove and taken back with unmakeMove. The state that a move
+destroys (captured piece, castling rights, en passant square and halfmove clock) is
+packed into one long and pushed on an internal stack, so neither call allocates.
+
+The Zobrist hash of the position is updated incrementally by every change to the
+pieces or the game state. The hash before each move is kept next to the packed state,
+which restores it on unmakeMove and provides the history for repetition detection.
+
+In the same way the position keeps the material and piece-square sums and the game
+phase used by Evaluation, so evaluating a position does not look at its pieces.
+*/
+public final class Position {
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+    public static final int ALL_CASTLING = 15;
+
+    // Castling rights that survive a move touching each square (king or rook origin, rook target).
+    private static final int[] CASTLING_MASKS = new int[Square.COUNT];
+
+    static {
+        Arrays.fill(CASTLING_MASKS, ALL_CASTLING);
+        CASTLING_MASKS[Square.E1] = ALL_CASTLING & ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_MASKS[Square.H1] = ALL_CASTLING & ~WHITE_KINGSIDE;
+        CASTLING_MASKS[Square.A1] = ALL_CASTLING & ~WHITE_QUEENSIDE;
+        CASTLING_MASKS[Square.E8] = ALL_CASTLING & ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_MASKS[Square.H8] = ALL_CASTLING & ~BLACK_KINGSIDE;
+        CASTLING_MASKS[Square.A8] = ALL_CASTLING & ~BLACK_QUEENSIDE;
+    }
+
+    private final long[] pieceBitboards = new long[Piece.COUNT];
+    private final long[] colorBitboards = new long[2];
+    private long occupied;
+    private final int[] board = new int[Square.COUNT];
+
+    private int sideToMove;
+    private int castlingRights;
+    private int enPassantSquare;
+    private int halfmoveClock;
+    private int fullmoveNumber;
+    private long hash;
+    private int middlegameScore;
+    private int endgameScore;
+    private int phase;
+
+    private long[] states = new long[256];
+    private long[] hashes = new long[256];
+    private int stateCount;
+
+    public Position() {
+        clear();
+    }
+
+    // Removes every piece and resets the game state.
+    public void clear() {
+        Arrays.fill(pieceBitboards, 0L);
+        Arrays.fill(colorBitboards, 0L);
+        Arrays.fill(board, Piece.NONE);
+        occupied = 0L;
+        sideToMove = Piece.WHITE;
+        castlingRights = 0;
+        enPassantSquare = Square.NONE;
+        halfmoveClock = 0;
+        fullmoveNumber = 1;
+        hash = 0L;
+        middlegameScore = 0;
+        endgameScore = 0;
+        phase = 0;
+        stateCount = 0;
+    }
+
+    // Sets up the standard initial position of a game.
+    public void setStartPosition() {
+        clear();
+        int[] backRank = {Piece.ROOK, Piece.KNIGHT, Piece.BISHOP, Piece.QUEEN,
+            Piece.KING, Piece.BISHOP, Piece.KNIGHT, Piece.ROOK};
+        for(int file = 0; file < 8; file++) {
+            putPiece(Piece.make(Piece.WHITE, backRank[file]), Square.index(file, 0));
+            putPiece(Piece.WHITE_PAWN, Square.index(file, 1));
+            putPiece(Piece.BLACK_PAWN, Square.index(file, 6));
+            putPiece(Piece.make(Piece.BLACK, backRank[file]), Square.index(file, 7));
+        }
+        setCastlingRights(ALL_CASTLING);
+    }
+
+    public void copyFrom(Position other) {
+        System.arraycopy(other.pieceBitboards, 0, pieceBitboards, 0, Piece.COUNT);
+        System.arraycopy(other.colorBitboards, 0, colorBitboards, 0, 2);
+        System.arraycopy(other.board, 0, board, 0, Square.COUNT);
+        occupied = other.occupied;
+        sideToMove = other.sideToMove;
+        castlingRights = other.castlingRights;
+        enPassantSquare = other.enPassantSquare;
+        halfmoveClock = other.halfmoveClock;
+        fullmoveNumber = other.fullmoveNumber;
+        hash = other.hash;
+        middlegameScore = other.middlegameScore;
+        endgameScore = other.endgameScore;
+        phase = other.phase;
+        if(states.length < other.stateCount) {
+            states = new long[other.states.length];
+            hashes = new long[other.states.length];
+        }
+        System.arraycopy(other.states, 0, states, 0, other.stateCount);
+        System.arraycopy(other.hashes, 0, hashes, 0, other.stateCount);
+        stateCount = other.stateCount;
+    }
+
+    public Position copy() {
+        Position position = new Position();
+        position.copyFrom(this);
+        return position;
+    }
+
+    // Places a piece on an empty square.
+    public void putPiece(int piece, int square) {
+        long bit = 1L << square;
+        pieceBitboards[piece] |= bit;
+        colorBitboards[Piece.colorOf(piece)] |= bit;
+        occupied |= bit;
+        board[square] = piece;
+        hash ^= Zobrist.piece(piece, square);
+        middlegameScore += Evaluation.middlegame(piece, square);
+        endgameScore += Evaluation.endgame(piece, square);
+        phase += Evaluation.phaseWeight(piece);
+    }
+
+    // Removes the piece on a square and returns it, or Piece.NONE if the square was empty.
+    public int removePiece(int square) {
+        int piece = board[square];
+        if(piece != Piece.NONE) {
+            long bit = 1L << square;
+            pieceBitboards[piece] &= ~bit;
+            colorBitboards[Piece.colorOf(piece)] &= ~bit;
+            occupied &= ~bit;
+            board[square] = Piece.NONE;
+            hash ^= Zobrist.piece(piece, square);
+            middlegameScore -= Evaluation.middlegame(piece, square);
+            endgameScore -= Evaluation.endgame(piece, square);
+            phase -= Evaluation.phaseWeight(piece);
+        }
+        return piece;
+    }
+
+    // Moves a piece to an empty square.
+    void movePiece(int from, int to) {
+        int piece = board[from];
+        long bits = (1L << from) | (1L << to);
+        pieceBitboards[piece] ^= bits;
+        colorBitboards[Piece.colorOf(piece)] ^= bits;
+        occupied ^= bits;
+        board[from] = Piece.NONE;
+        board[to] = piece;
+        hash ^= Zobrist.piece(piece, from) ^ Zobrist.piece(piece, to);
+        middlegameScore += Evaluation.middlegame(piece, to) - Evaluation.middlegame(piece, from);
+        endgameScore += Evaluation.endgame(piece, to) - Evaluation.endgame(piece, from);
+    }
+
+    public int pieceAt(int square) {
+        return board[square];
+    }
+
+    public boolean isEmpty(int square) {
+        return (occupied & (1L << square)) == 0;
+    }
+
+    public long bitboard(int piece) {
+        return pieceBitboards[piece];
+    }
+
+    public long bitboard(int color, int type) {
+        return pieceBitboards[Piece.make(color, type)];
+    }
+
+    public long colorBitboard(int color) {
+        return colorBitboards[color];
+    }
+
+    public long occupied() {
+        return occupied;
+    }
+
+    public int pieceCount() {
+        return Long.bitCount(occupied);
+    }
+
+    public int kingSquare(int color) {
+        long king = pieceBitboards[Piece.make(color, Piece.KING)];
+        return king == 0 ? Square.NONE : Long.numberOfTrailingZeros(king);
+    }
+
+    // All pieces of both colors attacking a square, given an occupancy for the sliders.
+    public long attackersTo(int square, long occupied) {
+        long rooksQueens = pieceBitboards[Piece.WHITE_ROOK] | pieceBitboards[Piece.BLACK_ROOK]
+            | pieceBitboards[Piece.WHITE_QUEEN] | pieceBitboards[Piece.BLACK_QUEEN];
+        long bishopsQueens = pieceBitboards[Piece.WHITE_BISHOP] | pieceBitboards[Piece.BLACK_BISHOP]
+            | pieceBitboards[Piece.WHITE_QUEEN] | pieceBitboards[Piece.BLACK_QUEEN];
+        return (Attacks.pawn(Piece.BLACK, square) & pieceBitboards[Piece.WHITE_PAWN])
+            | (Attacks.pawn(Piece.WHITE, square) & pieceBitboards[Piece.BLACK_PAWN])
+            | (Attacks.knight(square) & (pieceBitboards[Piece.WHITE_KNIGHT] | pieceBitboards[Piece.BLACK_KNIGHT]))
+            | (Attacks.king(square) & (pieceBitboards[Piece.WHITE_KING] | pieceBitboards[Piece.BLACK_KING]))
+            | (Attacks.rook(square, occupied) & rooksQueens)
+            | (Attacks.bishop(square, occupied) & bishopsQueens);
+    }
+
+    public boolean isAttacked(int square, int byColor) {
+        return isAttacked(square, byColor, occupied);
+    }
+
+    public boolean isAttacked(int square, int byColor, long occupied) {
+        int offset = byColor * Piece.TYPES;
+        long queens = pieceBitboards[offset + Piece.QUEEN];
+        return (Attacks.pawn(byColor ^ 1, square) & pieceBitboards[offset + Piece.PAWN]) != 0
+            || (Attacks.knight(square) & pieceBitboards[offset + Piece.KNIGHT]) != 0
+            || (Attacks.king(square) & pieceBitboards[offset + Piece.KING]) != 0
+            || (Attacks.rook(square, occupied) & (pieceBitboards[offset + Piece.ROOK] | queens)) != 0
+            || (Attacks.bishop(square, occupied) & (pieceBitboards[offset + Piece.BISHOP] | queens)) != 0;
+    }
+
+    // True when the king of the side to move is attacked.
+    public boolean isInCheck() {
+        int king = kingSquare(sideToMove);
+        return king != Square.NONE && isAttacked(king, sideToMove ^ 1);
+    }
+
+    // Applies a move generated for this position. It is not checked for legality.
+    public void makeMove(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int flags = Move.flags(move);
+        int piece = board[from];
+        int us = sideToMove;
+
+        int capturedSquare = flags == Move.EN_PASSANT ? to ^ 8 : to;
+        int captured = Move.isCapture(move) ? board[capturedSquare] : Piece.NONE;
+        pushState(captured);
+        if(captured != Piece.NONE) {
+            removePiece(capturedSquare);
+        }
+
+        halfmoveClock++;
+        if(captured != Piece.NONE || Piece.typeOf(piece) == Piece.PAWN) {
+            halfmoveClock = 0;
+        }
+        setEnPassantSquare(Square.NONE);
+
+        movePiece(from, to);
+        if(Move.isPromotion(move)) {
+            removePiece(to);
+            putPiece(Piece.make(us, Move.promotionType(move)), to);
+        } else if(flags == Move.DOUBLE_PAWN_PUSH) {
+            int target = (from + to) >>> 1;
+            // Only recorded when it can be used, so equal positions compare equal.
+            if((Attacks.pawn(us, target) & pieceBitboards[Piece.make(us ^ 1, Piece.PAWN)]) != 0) {
+                setEnPassantSquare(target);
+            }
+        } else if(flags == Move.KING_CASTLE) {
+            movePiece(to + 1, to - 1);
+        } else if(flags == Move.QUEEN_CASTLE) {
+            movePiece(to - 2, to + 1);
+        }
+
+        setCastlingRights(castlingRights & CASTLING_MASKS[from] & CASTLING_MASKS[to]);
+        if(us == Piece.BLACK) {
+            fullmoveNumber++;
+        }
+        sideToMove = us ^ 1;
+        hash ^= Zobrist.side();
+    }
+
+    // Takes back the last move applied with makeMove, which must be passed again.
+    public void unmakeMove(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int flags = Move.flags(move);
+        sideToMove ^= 1;
+        int us = sideToMove;
+        if(us == Piece.BLACK) {
+            fullmoveNumber--;
+        }
+
+        if(Move.isPromotion(move)) {
+            removePiece(to);
+            putPiece(Piece.make(us, Piece.PAWN), to);
+        } else if(flags == Move.KING_CASTLE) {
+            movePiece(to - 1, to + 1);
+        } else if(flags == Move.QUEEN_CASTLE) {
+            movePiece(to + 1, to - 2);
+        }
+        movePiece(to, from);
+
+        long state = states[--stateCount];
+        int captured = (int) (state & 15) - 1;
+        if(captured != Piece.NONE) {
+            putPiece(captured, flags == Move.EN_PASSANT ? to ^ 8 : to);
+        }
+        castlingRights = (int) (state >>> 4) & 15;
+        enPassantSquare = (int) ((state >>> 8) & 127) - 1;
+        halfmoveClock = (int) (state >>> 16);
+        hash = hashes[stateCount];
+    }
+
+    private void pushState(int captured) {
+        if(stateCount == states.length) {
+            states = Arrays.copyOf(states, states.length * 2);
+            hashes = Arrays.copyOf(hashes, hashes.length * 2);
+        }
+        hashes[stateCount] = hash;
+        states[stateCount++] = (captured + 1)
+            | (castlingRights << 4)
+            | ((long) (enPassantSquare + 1) << 8)
+            | ((long) halfmoveClock << 16);
+    }
+
+    // Zobrist hash of the position, see Zobrist.
+    public long getHash() {
+        return hash;
+    }
+
+    // White minus black material and piece-square sum for the middlegame, see Evaluation.
+    public int getMiddlegameScore() {
+        return middlegameScore;
+    }
+
+    // White minus black material and piece-square sum for the endgame, see Evaluation.
+    public int getEndgameScore() {
+        return endgameScore;
+    }
+
+    // Game phase from the pieces left on the board, Evaluation.MAX_PHASE at the start of a game.
+    public int getPhase() {
+        return phase;
+    }
+
+    // Number of earlier positions in the move history equal to the current one.
+    // Only positions since the last capture or pawn move can repeat.
+    public int repetitions() {
+        int count = 0;
+        int oldest = Math.max(0, stateCount - halfmoveClock);
+        for(int i = stateCount - 2; i >= oldest; i -= 2) {
+            if(hashes[i] == hash) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // True when the current position already occurred before, as used by search.
+    public boolean isRepetition() {
+        int oldest = Math.max(0, stateCount - halfmoveClock);
+        for(int i = stateCount - 2; i >= oldest; i -= 2) {
+            if(hashes[i] == hash) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // True when the current position occurred at least three times in the game.
+    public boolean isThreefoldRepetition() {
+        return repetitions() >= 2;
+    }
+
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+    public void setSideToMove(int sideToMove) {
+        if(sideToMove != this.sideToMove) {
+            hash ^= Zobrist.side();
+        }
+        this.sideToMove = sideToMove;
+    }
+
+    public boolean isWhiteToMove() {
+        return sideToMove == Piece.WHITE;
+    }
+
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    public void setCastlingRights(int castlingRights) {
+        hash ^= Zobrist.castling(this.castlingRights) ^ Zobrist.castling(castlingRights);
+        this.castlingRights = castlingRights;
+    }
+
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    public void setEnPassantSquare(int enPassantSquare) {
+        hash ^= Zobrist.enPassant(this.enPassantSquare) ^ Zobrist.enPassant(enPassantSquare);
+        this.enPassantSquare = enPassantSquare;
+    }
+
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public void setHalfmoveClock(int halfmoveClock) {
+        this.halfmoveClock = halfmoveClock;
+    }
+
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    public void setFullmoveNumber(int fullmoveNumber) {
+        this.fullmoveNumber = fullmoveNumber;
+    }
+}
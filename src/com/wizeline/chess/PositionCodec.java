@@ -0,0 +1,112 @@
+package com.wizeline.chess;
+
+/*
+Compact binary encoding of a position in ENCODED_SIZE (30) bytes, for storing and sending
+large sets of positions:
+    bytes 0-7    occupied squares bitboard, big-endian
+    bytes 8-23   one 4-bit piece code per occupied square in square order (see Piece),
+                 two per byte with the first in the high half; unused halves are zero
+    byte 24      side to move in bit 0, castling rights in bits 1-4
+    byte 25      en passant square, 255 when there is none
+    bytes 26-27  halfmove clock
+    bytes 28-29  fullmove number
+
+Only positions with at most 32 pieces can be encoded, which includes every position that
+can arise in a game. Decoding rebuilds the position through putPiece and the setters, so
+its hash and evaluation sums are those of the encoded position.
+*/
+public final class PositionCodec {
+    public static final int ENCODED_SIZE = 30;
+    public static final int MAX_PIECES = 32;
+
+    private static final int NO_EN_PASSANT = 255;
+
+    private PositionCodec() {
+    }
+
+    public static byte[] encode(Position position) {
+        byte[] data = new byte[ENCODED_SIZE];
+        encode(position, data, 0);
+        return data;
+    }
+
+    // Writes the position to data[offset..offset + ENCODED_SIZE).
+    public static void encode(Position position, byte[] data, int offset) {
+        long occupied = position.occupied();
+        if(Long.bitCount(occupied) > MAX_PIECES) {
+            throw new IllegalArgumentException("Cannot encode more than " + MAX_PIECES + " pieces");
+        }
+        for(int i = 0; i < 8; i++) {
+            data[offset + i] = (byte) (occupied >>> (56 - 8 * i));
+        }
+        for(int i = 8; i < 24; i++) {
+            data[offset + i] = 0;
+        }
+        int nibble = 0;
+        while(occupied != 0) {
+            int square = Long.numberOfTrailingZeros(occupied);
+            occupied &= occupied - 1;
+            int shift = (nibble & 1) == 0 ? 4 : 0;
+            data[offset + 8 + (nibble >> 1)] |= position.pieceAt(square) << shift;
+            nibble++;
+        }
+        int enPassant = position.getEnPassantSquare();
+        data[offset + 24] = (byte) (position.getSideToMove() | position.getCastlingRights() << 1);
+        data[offset + 25] = (byte) (enPassant == Square.NONE ? NO_EN_PASSANT : enPassant);
+        putShort(data, offset + 26, position.getHalfmoveClock());
+        putShort(data, offset + 28, position.getFullmoveNumber());
+    }
+
+    public static Position decode(byte[] data) {
+        Position position = new Position();
+        decode(data, 0, position);
+        return position;
+    }
+
+    // Replaces the contents of the position with the one encoded at data[offset..].
+    public static void decode(byte[] data, int offset, Position position) {
+        long occupied = 0;
+        for(int i = 0; i < 8; i++) {
+            occupied = (occupied << 8) | (data[offset + i] & 0xFF);
+        }
+        if(Long.bitCount(occupied) > MAX_PIECES) {
+            throw new IllegalArgumentException("Invalid encoded position: more than " + MAX_PIECES + " pieces");
+        }
+        int flags = data[offset + 24] & 0xFF;
+        int enPassant = data[offset + 25] & 0xFF;
+        if(flags > 31 || enPassant >= Square.COUNT && enPassant != NO_EN_PASSANT) {
+            throw new IllegalArgumentException("Invalid encoded position state");
+        }
+
+        position.clear();
+        int nibble = 0;
+        while(occupied != 0) {
+            int square = Long.numberOfTrailingZeros(occupied);
+            occupied &= occupied - 1;
+            int shift = (nibble & 1) == 0 ? 4 : 0;
+            int piece = (data[offset + 8 + (nibble >> 1)] >>> shift) & 15;
+            if(piece >= Piece.COUNT) {
+                throw new IllegalArgumentException("Invalid encoded piece " + piece + " on " + Square.name(square));
+            }
+            position.putPiece(piece, square);
+            nibble++;
+        }
+        position.setSideToMove(flags & 1);
+        position.setCastlingRights(flags >>> 1);
+        position.setEnPassantSquare(enPassant == NO_EN_PASSANT ? Square.NONE : enPassant);
+        position.setHalfmoveClock(getShort(data, offset + 26));
+        position.setFullmoveNumber(getShort(data, offset + 28));
+    }
+
+    private static void putShort(byte[] data, int offset, int value) {
+        if(value < 0 || value > 0xFFFF) {
+            throw new IllegalArgumentException("Move counter out of range: " + value);
+        }
+        data[offset] = (byte) (value >>> 8);
+        data[offset + 1] = (byte) value;
+    }
+
+    private static int getShort(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 8 | (data[offset + 1] & 0xFF);
+    }
+}
@@ -0,0 +1,114 @@
+package com.wizeline.chess;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/*
+A Map<String, String> view over a Position, used by the Board class so existing code
+that reads or writes board.pieces ("e4" -> "wP") keeps working. Nothing is stored
+here: every call is translated to a bitboard or mailbox lookup on the position, and
+the square and piece names come from precomputed tables.
+*/
+final class PositionMap extends AbstractMap<String, String> {
+    private final Position position;
+
+    PositionMap(Position position) {
+        this.position = position;
+    }
+
+    @Override
+    public String get(Object key) {
+        int square = Square.parse(key);
+        return square == Square.NONE ? null : Piece.name(position.pieceAt(square));
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int square = Square.parse(key);
+        return square != Square.NONE && !position.isEmpty(square);
+    }
+
+    @Override
+    public String put(String key, String value) {
+        int square = Square.parse(key);
+        if(square == Square.NONE) {
+            throw new IllegalArgumentException("Invalid square: " + key);
+        }
+        int piece = Piece.fromName(value);
+        if(piece == Piece.NONE) {
+            throw new IllegalArgumentException("Invalid piece: " + value);
+        }
+        String previous = Piece.name(position.removePiece(square));
+        position.putPiece(piece, square);
+        return previous;
+    }
+
+    @Override
+    public String remove(Object key) {
+        int square = Square.parse(key);
+        return square == Square.NONE ? null : Piece.name(position.removePiece(square));
+    }
+
+    @Override
+    public int size() {
+        return position.pieceCount();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return position.occupied() == 0;
+    }
+
+    @Override
+    public void clear() {
+        position.clear();
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        return new AbstractSet<Map.Entry<String, String>>() {
+            @Override
+            public Iterator<Map.Entry<String, String>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return position.pieceCount();
+            }
+        };
+    }
+
+    private class EntryIterator implements Iterator<Map.Entry<String, String>> {
+        private long remaining = position.occupied();
+        private int last = Square.NONE;
+
+        @Override
+        public boolean hasNext() {
+            return remaining != 0;
+        }
+
+        @Override
+        public Map.Entry<String, String> next() {
+            if(remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            last = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            return new SimpleImmutableEntry<String, String>(Square.name(last), Piece.name(position.pieceAt(last)));
+        }
+
+        @Override
+        public void remove() {
+            if(last == Square.NONE) {
+                throw new IllegalStateException();
+            }
+            position.removePiece(last);
+            last = Square.NONE;
+        }
+    }
+}
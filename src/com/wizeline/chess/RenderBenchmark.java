@@ -0,0 +1,144 @@
+package com.wizeline.chess;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Map;
+import java.util.Random;
+
+/*
+Frame times of the Board while a game is played back, rendered in software into an image
+the size of the panel (no window is opened, so it also runs without a display):
+- "legacy full": what Board.paint did before: clear the panel, draw the 64 tiles, the
+  coordinates and every piece, scaling its image and looking it up by square name.
+- "cached full": Board.paintComponent over the whole panel (background image and pre-scaled
+  pieces), what a repaint() of the panel costs now.
+- "dirty tiles": Board.paintComponent clipped to the tiles changed by the move, joined into
+  one rectangle the way Swing's RepaintManager joins the areas of repaint(x, y, w, h).
+Each frame plays the next move of a random game first; the time per frame and the frames
+per second are printed against the 16.7 ms budget of 60 frames per second.
+
+Run it with:
+    java com.wizeline.chess.RenderBenchmark [seconds per measurement]
+*/
+public final class RenderBenchmark {
+    private static final long WARMUP_NANOS = 1000000000L;
+    private static final int GAME_PLIES = 200;
+
+    private static long sink;
+
+    private interface Operation {
+        void run(Graphics2D graphics, Rectangle changed);
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 2.0;
+        long measureNanos = (long) (seconds * 1000000000L);
+
+        final Board board = new Board(Fen.parse(Fen.START_POSITION));
+        board.setSize(board.getPreferredSize());
+        final BufferedImage[] images = new BufferedImage[Piece.COUNT];
+        for(int piece = 0; piece < Piece.COUNT; piece++) {
+            images[piece] = SpriteAtlas.original(piece);
+        }
+        final Rectangle panel = new Rectangle(board.getPreferredSize());
+
+        measure("legacy full", board, measureNanos, new Operation() {
+            public void run(Graphics2D graphics, Rectangle changed) {
+                legacyPaint(graphics, board.pieces, images, panel);
+            }
+        });
+        measure("cached full", board, measureNanos, new Operation() {
+            public void run(Graphics2D graphics, Rectangle changed) {
+                graphics.setClip(panel);
+                board.paintComponent(graphics);
+            }
+        });
+        measure("dirty tiles", board, measureNanos, new Operation() {
+            public void run(Graphics2D graphics, Rectangle changed) {
+                graphics.setClip(changed);
+                board.paintComponent(graphics);
+            }
+        });
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    private static void measure(String name, Board board, long measureNanos, Operation operation) {
+        BufferedImage frame = new BufferedImage(board.getWidth(), board.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = frame.createGraphics();
+        Random random = new Random(1);
+        run(board, graphics, random, WARMUP_NANOS, operation);
+        long start = System.nanoTime();
+        long frames = run(board, graphics, random, measureNanos, operation);
+        long nanos = System.nanoTime() - start;
+        graphics.dispose();
+        sink += frame.getRGB(100, 100);
+        double frameMillis = nanos / 1e6 / frames;
+        System.out.println(String.format("%-12s %8.3f ms/frame %10.0f frames/s %6.1f%% of the 60 fps budget",
+            name, frameMillis, 1000 / frameMillis, frameMillis * 100 / (1000.0 / 60)));
+    }
+
+    // Plays random moves on the board's position and renders a frame after each, returns the frames.
+    private static long run(Board board, Graphics2D graphics, Random random, long nanos, Operation operation) {
+        Position position = board.getPosition();
+        MoveList moves = new MoveList();
+        long frames = 0;
+        long deadline = System.nanoTime() + nanos;
+        do {
+            MoveGenerator.generateLegal(position, moves);
+            if(moves.isEmpty() || position.getHalfmoveClock() >= 100 || position.getFullmoveNumber() > GAME_PLIES / 2) {
+                position.copyFrom(Fen.parse(Fen.START_POSITION));
+            } else {
+                position.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+            Rectangle changed = null;
+            long squares = board.changedSquares();
+            while(squares != 0) {
+                Rectangle tile = board.tileBounds(Long.numberOfTrailingZeros(squares));
+                squares &= squares - 1;
+                changed = changed == null ? tile : changed.union(tile);
+            }
+            if(changed != null) {
+                operation.run(graphics, changed);
+            }
+            frames++;
+        } while(System.nanoTime() < deadline);
+        return frames;
+    }
+
+    // The former Board.paint, kept here as the baseline.
+    private static void legacyPaint(Graphics2D graphics, Map<String, String> pieces, BufferedImage[] images, Rectangle panel) {
+        int tile = 60;
+        int offset = 25;
+        graphics.setClip(panel);
+        graphics.clearRect(0, 0, panel.width, panel.height);
+        Color color = Color.WHITE;
+        for(int row = 0; row < Board.ROWS; row++) {
+            color = color.equals(Color.WHITE) ? Color.GRAY : Color.WHITE;
+            for(int col = 0; col < Board.COLS; col++) {
+                graphics.setColor(Color.BLACK);
+                graphics.drawRect(offset + tile * col, offset + tile * row, tile, tile);
+                color = color.equals(Color.WHITE) ? Color.GRAY : Color.WHITE;
+                graphics.setColor(color);
+                graphics.fillRect(offset + tile * col, offset + tile * row, tile, tile);
+            }
+        }
+        graphics.setColor(Color.BLACK);
+        for(int row = 0; row < Board.ROWS; row++) {
+            graphics.drawString(Character.toString((char) ('8' - row)), 10, offset + tile * row + tile / 2);
+        }
+        for(int col = 0; col < Board.COLS; col++) {
+            graphics.drawString(Character.toString((char) ('A' + col)), offset + tile * col + tile / 2, panel.height - offset / 2);
+        }
+        for(int row = 0; row < Board.ROWS; row++) {
+            for(int col = 0; col < Board.COLS; col++) {
+                String piece = pieces.get(Board.COLUMN_NAMES[col] + Integer.toString(Board.ROWS - row));
+                if(piece != null) {
+                    graphics.drawImage(images[Piece.fromName(piece)], offset + tile * col, offset + tile * row, tile, tile, null);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.wizeline.chess;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+One game loaded for replay: its moves and a snapshot of the position every few plies,
+encoded with PositionCodec (30 bytes each). Going to any ply decodes the last snapshot
+at or before it and plays at most snapshotInterval - 1 moves from there, so jumping
+around a long game never replays it from the start.
+
+It does not depend on AWT or Swing; ReplayViewer shows the games on a Board.
+*/
+public final class ReplayGame {
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 16;
+
+    private final String title;
+    private final int[] moves;
+    private final byte[] snapshots;
+    private final int snapshotInterval;
+
+    private ReplayGame(String title, int[] moves, byte[] snapshots, int snapshotInterval) {
+        this.title = title;
+        this.moves = moves;
+        this.snapshots = snapshots;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    // Reads the games of a PGN file, leaving out the ones PgnReader rejects.
+    public static List<ReplayGame> load(Path file, int snapshotInterval) throws IOException {
+        Loader loader = new Loader(snapshotInterval);
+        new PgnReader(loader).read(file);
+        return loader.getGames();
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public int getPlies() {
+        return moves.length;
+    }
+
+    // The move played at a ply, 0 being the first move.
+    public int getMove(int ply) {
+        return moves[ply];
+    }
+
+    // Sets up the position after the given number of plies.
+    public void seek(Position position, int ply) {
+        if(ply < 0 || ply > moves.length) {
+            throw new IllegalArgumentException("Ply " + ply + " is not between 0 and " + moves.length);
+        }
+        int snapshot = Math.min(ply / snapshotInterval, (moves.length - 1) / snapshotInterval);
+        PositionCodec.decode(snapshots, snapshot * PositionCodec.ENCODED_SIZE, position);
+        for(int i = snapshot * snapshotInterval; i < ply; i++) {
+            position.makeMove(moves[i]);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return title;
+    }
+
+    // Collects the games replayed by a PgnReader, for callers that drive or cancel the reader.
+    public static class Loader implements PgnListener {
+        private final int snapshotInterval;
+        private final List<ReplayGame> games = new ArrayList<ReplayGame>();
+        private String white;
+        private String black;
+        private int[] moves = new int[256];
+        private byte[] snapshots = new byte[16 * PositionCodec.ENCODED_SIZE];
+        private int plies;
+
+        public Loader(int snapshotInterval) {
+            this.snapshotInterval = snapshotInterval;
+        }
+
+        // The games collected so far, to be read by the thread of the reader or after it finished.
+        public List<ReplayGame> getGames() {
+            return games;
+        }
+
+        public void gameStarted(long offset) {
+            white = "?";
+            black = "?";
+            plies = 0;
+        }
+
+        public void tag(String name, String value) {
+            if(name.equals("White")) {
+                white = value;
+            } else if(name.equals("Black")) {
+                black = value;
+            }
+        }
+
+        public void move(Position position, int move) {
+            if(plies == moves.length) {
+                moves = Arrays.copyOf(moves, plies * 2);
+            }
+            if(plies % snapshotInterval == 0) {
+                int offset = plies / snapshotInterval * PositionCodec.ENCODED_SIZE;
+                if(offset == snapshots.length) {
+                    snapshots = Arrays.copyOf(snapshots, offset * 2);
+                }
+                PositionCodec.encode(position, snapshots, offset);
+            }
+            moves[plies++] = move;
+        }
+
+        public void gameFinished(long offset, int gamePlies, String result) {
+            if(plies == 0) {
+                return;
+            }
+            int count = (plies - 1) / snapshotInterval + 1;
+            games.add(new ReplayGame(white + " - " + black + " " + result, Arrays.copyOf(moves, plies),
+                Arrays.copyOf(snapshots, count * PositionCodec.ENCODED_SIZE), snapshotInterval));
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.wizeline.chess;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.GridLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/*
+Plays back the games of a PGN file on a Board, from a few plies per second up to hundreds.
+
+A Swing Timer ticks at 60 frames per second on the event dispatch thread. Every tick plays
+the plies due at the chosen speed since the last one (several per frame at high speeds,
+only the last position is drawn), lets the Board repaint the changed tiles and paints them
+right away so the time of the whole frame can be measured. A tick that comes later than
+one frame period after the previous one counts the frames it skipped as dropped. The
+average and worst frame times and the dropped frames are shown below the board.
+
+The slider and the step buttons seek through ReplayGame, which starts from the closest
+snapshot, so seeking costs the same anywhere in a game.
+
+The file is read on a background thread: the window opens at once, shows the number of
+games read so far and can cancel the reading, keeping the games read until then.
+
+Run it with:
+    java com.wizeline.chess.ReplayViewer <games.pgn> [--speed=<plies per second>] [--snapshots=<plies>]
+*/
+public final class ReplayViewer {
+    public static final int FRAMES_PER_SECOND = 60;
+    public static final int DEFAULT_SPEED = 10;
+    public static final int MAX_SPEED = 1000;
+    private static final long FRAME_NANOS = 1000000000L / FRAMES_PER_SECOND;
+    // Statistics are shown a few times per second, setting a label every frame would relayout it.
+    private static final long STATUS_NANOS = 250000000L;
+    private static final int PROGRESS_GAMES = 500;
+
+    private final ExecutorService background = Executors.newSingleThreadExecutor();
+    private PgnReader reader;
+    private List<ReplayGame> games = Collections.emptyList();
+    private final Position position = new Position();
+    private final Board board;
+    private final Timer timer;
+    private ReplayGame game;
+    private int ply;
+
+    private JFrame frame;
+    private JComboBox<ReplayGame> gameBox;
+    private JButton playButton;
+    private JButton backButton;
+    private JButton forwardButton;
+    private JButton cancelButton;
+    private JSpinner speedSpinner;
+    private JSlider slider;
+    private JLabel statusLabel;
+    private boolean updatingSlider;
+
+    private double pliesDue;
+    private long lastTick;
+    private long lastStatus;
+    private long frames;
+    private long frameNanos;
+    private long worstFrameNanos;
+    private long droppedFrames;
+
+    public ReplayViewer(Path file, int snapshotInterval, int speed) {
+        board = new Board(position);
+        timer = new Timer((int) (FRAME_NANOS / 1000000L), new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                tick();
+            }
+        });
+        timer.setCoalesce(true);
+        initializeWindow(speed);
+        load(file, snapshotInterval);
+    }
+
+    public static void main(String[] args) {
+        String file = null;
+        int speed = DEFAULT_SPEED;
+        int snapshotInterval = ReplayGame.DEFAULT_SNAPSHOT_INTERVAL;
+        for(String arg : args) {
+            if(arg.startsWith("--speed=")) {
+                speed = Integer.parseInt(arg.substring("--speed=".length()));
+            } else if(arg.startsWith("--snapshots=")) {
+                snapshotInterval = Integer.parseInt(arg.substring("--snapshots=".length()));
+            } else {
+                file = arg;
+            }
+        }
+        if(file == null) {
+            System.out.println("Usage: java com.wizeline.chess.ReplayViewer <games.pgn> [--speed=<plies per second>] [--snapshots=<plies>]");
+            System.exit(2);
+        }
+        final Path path = Paths.get(file);
+        final int interval = snapshotInterval;
+        final int initialSpeed = speed;
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                new ReplayViewer(path, interval, initialSpeed);
+            }
+        });
+    }
+
+    // Reads the games on the background thread, the progress and the games come back through invokeLater.
+    private void load(final Path file, int snapshotInterval) {
+        final ReplayGame.Loader loader = new ReplayGame.Loader(snapshotInterval) {
+            @Override
+            public void gameFinished(long offset, int plies, String result) {
+                super.gameFinished(offset, plies, result);
+                final int count = getGames().size();
+                if(count % PROGRESS_GAMES == 0) {
+                    SwingUtilities.invokeLater(new Runnable() {
+                        public void run() {
+                            if(reader != null) {
+                                statusLabel.setText("Loading " + file.getFileName() + ": " + count + " games");
+                            }
+                        }
+                    });
+                }
+            }
+        };
+        reader = new PgnReader(loader);
+        final PgnReader current = reader;
+        statusLabel.setText("Loading " + file.getFileName());
+        updateControls();
+        background.submit(new Runnable() {
+            public void run() {
+                String error = null;
+                try {
+                    current.read(file);
+                } catch(IOException | RuntimeException e) {
+                    error = e.toString();
+                }
+                final String failure = error;
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        loaded(file, loader.getGames(), current.isCancelled(), failure);
+                    }
+                });
+            }
+        });
+        background.shutdown();
+    }
+
+    private void loaded(Path file, List<ReplayGame> loadedGames, boolean cancelled, String failure) {
+        reader = null;
+        games = loadedGames;
+        gameBox.setModel(new DefaultComboBoxModel<ReplayGame>(games.toArray(new ReplayGame[games.size()])));
+        selectGame(0);
+        updateControls();
+        if(games.isEmpty()) {
+            statusLabel.setText(failure != null ? "Cannot read " + file + ": " + failure : "No games to replay in " + file);
+            return;
+        }
+        if(failure != null || cancelled) {
+            statusLabel.setText((failure != null ? "Read failed: " + failure : "Loading cancelled") + ", " + games.size() + " games");
+        }
+    }
+
+    private void updateControls() {
+        boolean ready = reader == null && game != null;
+        playButton.setEnabled(ready);
+        backButton.setEnabled(ready);
+        forwardButton.setEnabled(ready);
+        slider.setEnabled(ready);
+        gameBox.setEnabled(ready);
+        cancelButton.setEnabled(reader != null);
+    }
+
+    private void initializeWindow(int speed) {
+        frame = new JFrame("Replay");
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.setResizable(false);
+        frame.add(board, BorderLayout.CENTER);
+
+        gameBox = new JComboBox<ReplayGame>();
+        gameBox.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                selectGame(gameBox.getSelectedIndex());
+            }
+        });
+        playButton = new JButton("Play");
+        playButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                setPlaying(!timer.isRunning());
+            }
+        });
+        backButton = new JButton("<");
+        backButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                setPlaying(false);
+                seek(ply - 1);
+            }
+        });
+        forwardButton = new JButton(">");
+        forwardButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                setPlaying(false);
+                seek(ply + 1);
+            }
+        });
+        cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                if(reader != null) {
+                    reader.cancel();
+                }
+            }
+        });
+        speedSpinner = new JSpinner(new SpinnerNumberModel(Math.max(1, Math.min(MAX_SPEED, speed)), 1, MAX_SPEED, 10));
+        JPanel controls = new JPanel(new FlowLayout());
+        controls.add(backButton);
+        controls.add(playButton);
+        controls.add(forwardButton);
+        controls.add(new JLabel("Plies/s:"));
+        controls.add(speedSpinner);
+        controls.add(gameBox);
+        controls.add(cancelButton);
+
+        slider = new JSlider(0, 0, 0);
+        slider.addChangeListener(new ChangeListener() {
+            public void stateChanged(ChangeEvent e) {
+                if(!updatingSlider) {
+                    seek(slider.getValue());
+                }
+            }
+        });
+        statusLabel = new JLabel(" ", SwingConstants.CENTER);
+
+        JPanel bottomPanel = new JPanel(new GridLayout(3, 1));
+        bottomPanel.add(controls);
+        bottomPanel.add(slider);
+        bottomPanel.add(statusLabel);
+        frame.add(bottomPanel, BorderLayout.SOUTH);
+        frame.pack();
+        frame.setLocationRelativeTo(null);
+        frame.setVisible(true);
+    }
+
+    private void selectGame(int index) {
+        if(index < 0 || index >= games.size() || games.get(index) == game) {
+            return;
+        }
+        setPlaying(false);
+        game = games.get(index);
+        updatingSlider = true;
+        slider.setMaximum(game.getPlies());
+        updatingSlider = false;
+        frame.setTitle("Replay: " + game.getTitle());
+        seek(0);
+    }
+
+    private void setPlaying(boolean playing) {
+        if(playing == timer.isRunning()) {
+            return;
+        }
+        if(playing) {
+            if(ply == game.getPlies()) {
+                seek(0);
+            }
+            pliesDue = 0;
+            lastTick = 0;
+            frames = 0;
+            frameNanos = 0;
+            worstFrameNanos = 0;
+            droppedFrames = 0;
+            timer.start();
+        } else {
+            timer.stop();
+        }
+        playButton.setText(playing ? "Pause" : "Play");
+    }
+
+    private void seek(int target) {
+        ply = Math.max(0, Math.min(game.getPlies(), target));
+        game.seek(position, ply);
+        board.draw();
+        updateSlider();
+        showStatus();
+    }
+
+    // Plays the plies due since the last frame and paints the changed tiles.
+    private void tick() {
+        long start = System.nanoTime();
+        if(lastTick != 0) {
+            long interval = start - lastTick;
+            droppedFrames += Math.max(0, (interval + FRAME_NANOS / 2) / FRAME_NANOS - 1);
+            pliesDue += ((Number) speedSpinner.getValue()).doubleValue() * interval / 1e9;
+        } else {
+            pliesDue = 1;
+        }
+        lastTick = start;
+        int steps = (int) pliesDue;
+        pliesDue -= steps;
+        for(int i = 0; i < steps && ply < game.getPlies(); i++) {
+            position.makeMove(game.getMove(ply++));
+        }
+        board.draw();
+        RepaintManager.currentManager(board).paintDirtyRegions();
+        updateSlider();
+
+        long elapsed = System.nanoTime() - start;
+        frames++;
+        frameNanos += elapsed;
+        worstFrameNanos = Math.max(worstFrameNanos, elapsed);
+        if(ply == game.getPlies()) {
+            setPlaying(false);
+            showStatus();
+        } else if(start - lastStatus >= STATUS_NANOS) {
+            lastStatus = start;
+            showStatus();
+        }
+    }
+
+    private void updateSlider() {
+        updatingSlider = true;
+        slider.setValue(ply);
+        updatingSlider = false;
+    }
+
+    private void showStatus() {
+        String text = String.format("Ply %d/%d", ply, game.getPlies());
+        if(frames > 0) {
+            text += String.format(" | frame %.2f ms avg, %.2f ms max | %d frames, %d dropped",
+                frameNanos / 1e6 / frames, worstFrameNanos / 1e6, frames, droppedFrames);
+        }
+        statusLabel.setText(text);
+    }
+}
@@ -0,0 +1,188 @@
+package com.wizeline.chess;
+
+/*
+Standard Algebraic Notation (SAN), the move notation of PGN files: the piece letter
+(none for pawns), as much of the origin square as needed to tell two such pieces apart,
+"x" for captures, the target square and "=Q" style promotions, for example "Nbd7",
+"exd5", "e8=Q+" or "O-O-O". Check and annotation marks ("+", "#", "!", "?") are ignored.
+
+Parsing works on the legal moves of the position: the text only has to identify exactly
+one of them. Digit castling ("0-0"), promotions without "=" ("e8Q") and long algebraic
+moves ("Ng1-f3") are accepted as well.
+*/
+public final class San {
+    private San() {
+    }
+
+    // Returns the legal move written in SAN, or Move.NONE when it is malformed, illegal or ambiguous.
+    public static int parse(Position position, String san) {
+        MoveList legalMoves = new MoveList();
+        MoveGenerator.generateLegal(position, legalMoves);
+        byte[] text = new byte[san.length()];
+        for(int i = 0; i < text.length; i++) {
+            char c = san.charAt(i);
+            text[i] = c < 128 ? (byte) c : (byte) '?';
+        }
+        return parse(position, legalMoves, text, 0, text.length);
+    }
+
+    // Same as above on ASCII bytes text[start..end) with the legal moves of the position already generated.
+    public static int parse(Position position, MoveList legalMoves, byte[] text, int start, int end) {
+        while(end > start && isAnnotation(text[end - 1])) {
+            end--;
+        }
+        if(end - start < 2) {
+            return Move.NONE;
+        }
+        if(text[start] == 'O' || text[start] == '0') {
+            return parseCastling(legalMoves, text, start, end);
+        }
+
+        int promotion = Piece.NONE;
+        int last = text[end - 1];
+        if(last != 'b' && pieceType(Character.toUpperCase(last)) >= Piece.KNIGHT) {
+            // "e8=Q", "e8Q", "e8=q"; a lowercase b would be a file, so only the '=' form allows it.
+            promotion = pieceType(Character.toUpperCase(last));
+            end--;
+            if(text[end - 1] == '=') {
+                end--;
+            }
+        } else if(last == 'b' && end - start >= 4 && text[end - 2] == '=') {
+            promotion = Piece.BISHOP;
+            end -= 2;
+        }
+        if(promotion == Piece.KING) {
+            return Move.NONE;
+        }
+        if(end - start < 2) {
+            return Move.NONE;
+        }
+        int toFile = text[end - 2] - 'a';
+        int toRank = text[end - 1] - '1';
+        if(toFile < 0 || toFile > 7 || toRank < 0 || toRank > 7) {
+            return Move.NONE;
+        }
+        int to = Square.index(toFile, toRank);
+        end -= 2;
+
+        int type = Piece.PAWN;
+        if(start < end && text[start] >= 'A' && text[start] <= 'Z') {
+            type = pieceType(text[start]);
+            if(type < 0 || type == Piece.PAWN && text[start] != 'P') {
+                return Move.NONE;
+            }
+            start++;
+        }
+        int fromFile = -1;
+        int fromRank = -1;
+        for(int i = start; i < end; i++) {
+            int c = text[i];
+            if(c >= 'a' && c <= 'h') {
+                fromFile = c - 'a';
+            } else if(c >= '1' && c <= '8') {
+                fromRank = c - '1';
+            } else if(c != 'x' && c != ':' && c != '-') {
+                return Move.NONE;
+            }
+        }
+
+        int found = Move.NONE;
+        for(int i = 0; i < legalMoves.size(); i++) {
+            int move = legalMoves.get(i);
+            int from = Move.from(move);
+            if(Move.to(move) != to || Piece.typeOf(position.pieceAt(from)) != type
+                    || fromFile >= 0 && Square.file(from) != fromFile
+                    || fromRank >= 0 && Square.rank(from) != fromRank) {
+                continue;
+            }
+            if(Move.isPromotion(move) ? Move.promotionType(move) != promotion : promotion != Piece.NONE) {
+                continue;
+            }
+            if(found != Move.NONE) {
+                return Move.NONE;
+            }
+            found = move;
+        }
+        return found;
+    }
+
+    // Writes a legal move of the position in SAN, including the check or mate mark.
+    public static String format(Position position, int move) {
+        MoveList legalMoves = new MoveList();
+        MoveGenerator.generateLegal(position, legalMoves);
+        StringBuilder san = new StringBuilder(8);
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int type = Piece.typeOf(position.pieceAt(from));
+        if(Move.flags(move) == Move.KING_CASTLE) {
+            san.append("O-O");
+        } else if(Move.flags(move) == Move.QUEEN_CASTLE) {
+            san.append("O-O-O");
+        } else {
+            if(type != Piece.PAWN) {
+                san.append(Piece.typeLetter(type));
+                boolean ambiguous = false;
+                boolean sameFile = false;
+                boolean sameRank = false;
+                for(int i = 0; i < legalMoves.size(); i++) {
+                    int other = Move.from(legalMoves.get(i));
+                    if(Move.to(legalMoves.get(i)) == to && other != from && Piece.typeOf(position.pieceAt(other)) == type) {
+                        ambiguous = true;
+                        sameFile |= Square.file(other) == Square.file(from);
+                        sameRank |= Square.rank(other) == Square.rank(from);
+                    }
+                }
+                if(ambiguous && (!sameFile || sameRank)) {
+                    san.append((char) ('a' + Square.file(from)));
+                }
+                if(sameFile) {
+                    san.append((char) ('1' + Square.rank(from)));
+                }
+            } else if(Move.isCapture(move)) {
+                san.append((char) ('a' + Square.file(from)));
+            }
+            if(Move.isCapture(move)) {
+                san.append('x');
+            }
+            san.append(Square.name(to));
+            if(Move.isPromotion(move)) {
+                san.append('=').append(Piece.typeLetter(Move.promotionType(move)));
+            }
+        }
+        position.makeMove(move);
+        if(position.isInCheck()) {
+            MoveGenerator.generateLegal(position, legalMoves);
+            san.append(legalMoves.isEmpty() ? '#' : '+');
+        }
+        position.unmakeMove(move);
+        return san.toString();
+    }
+
+    private static int parseCastling(MoveList legalMoves, byte[] text, int start, int end) {
+        int length = end - start;
+        if(length != 3 && length != 5) {
+            return Move.NONE;
+        }
+        for(int i = start; i < end; i++) {
+            int expected = (i - start) % 2 == 0 ? text[start] : '-';
+            if(text[i] != expected) {
+                return Move.NONE;
+            }
+        }
+        int flags = length == 3 ? Move.KING_CASTLE : Move.QUEEN_CASTLE;
+        for(int i = 0; i < legalMoves.size(); i++) {
+            if(Move.flags(legalMoves.get(i)) == flags) {
+                return legalMoves.get(i);
+            }
+        }
+        return Move.NONE;
+    }
+
+    private static int pieceType(int letter) {
+        return "PNBRQK".indexOf(letter);
+    }
+
+    private static boolean isAnnotation(byte c) {
+        return c == '+' || c == '#' || c == '!' || c == '?';
+    }
+}
@@ -0,0 +1,378 @@
+package com.wizeline.chess;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+Game-tree search: iterative deepening over a principal variation search (alpha-beta that
+searches the first move with a full window and the others with a null window, searching
+again only when one of them turns out better), followed at the horizon by a quiescence
+search over captures so positions are only evaluated when they are quiet.
+
+Moves are tried in this order: the best move stored in the transposition table, captures
+by most valuable victim / least valuable attacker (MVV-LVA), promotions, the two killer
+moves of the ply (quiet moves that caused a cutoff in a sibling) and the remaining quiet
+moves by their history score (how often they caused a cutoff anywhere).
+
+The search works on its own copy of the position and keeps one MoveList and one score
+array per ply, so searching does not allocate. The limits (see SearchLimits) are checked
+every few hundred nodes, as is stop(), so a search ends promptly when asked. The first
+iteration always completes so there is a move to play.
+
+One Search must only be used by one thread at a time; several of them can share one
+TranspositionTable and one stop signal, which is how ParallelSearch runs them.
+*/
+public final class Search {
+    public static final int MATE = 32000;
+    // Scores beyond this bound are mates, the difference to MATE being the distance in plies.
+    public static final int MATE_BOUND = MATE - 1000;
+    static final int MAX_PLY = 128;
+
+    private static final int INFINITY = 32500;
+    private static final int CHECK_INTERVAL = 255;
+
+    private static final int HASH_MOVE_SCORE = 2000000;
+    private static final int CAPTURE_SCORE = 1000000;
+    private static final int PROMOTION_SCORE = 900000;
+    private static final int FIRST_KILLER_SCORE = 800000;
+    private static final int SECOND_KILLER_SCORE = 700000;
+    private static final int HISTORY_LIMIT = 600000;
+
+    private final TranspositionTable table;
+    private final Position position = new Position();
+    private final MoveList[] moveLists = new MoveList[MAX_PLY + 1];
+    private final int[][] moveScores = new int[MAX_PLY + 1][MoveList.CAPACITY];
+    private final int[][] killers = new int[MAX_PLY + 1][2];
+    private final int[][] history = new int[Piece.COUNT][Square.COUNT];
+    private final int[][] principalVariation = new int[MAX_PLY + 1][MAX_PLY + 1];
+    private final int[] principalVariationLength = new int[MAX_PLY + 1];
+
+    private final AtomicBoolean stopSignal;
+    private final boolean ownsStopSignal;
+    private int firstDepth = 1;
+    private boolean aborted;
+    private long nodes;
+    private long nodeLimit;
+    private long startNanos;
+    private long deadlineNanos;
+    private int rootDepth;
+
+    public Search(TranspositionTable table) {
+        this(table, new AtomicBoolean(), true);
+    }
+
+    // A search stopped through a signal shared with other searches. The owner of the signal
+    // resets it and starts the new generation of the transposition table.
+    Search(TranspositionTable table, AtomicBoolean stopSignal) {
+        this(table, stopSignal, false);
+    }
+
+    private Search(TranspositionTable table, AtomicBoolean stopSignal, boolean ownsStopSignal) {
+        this.table = table;
+        this.stopSignal = stopSignal;
+        this.ownsStopSignal = ownsStopSignal;
+        for(int ply = 0; ply <= MAX_PLY; ply++) {
+            moveLists[ply] = new MoveList();
+        }
+    }
+
+    // Searches the position, which is not modified, and returns the best move found.
+    public SearchResult search(Position root, SearchLimits limits, SearchListener listener) {
+        position.copyFrom(root);
+        if(ownsStopSignal) {
+            stopSignal.set(false);
+            table.newSearch();
+        }
+        aborted = false;
+        nodes = 0;
+        nodeLimit = limits.getNodes();
+        startNanos = System.nanoTime();
+        deadlineNanos = limits.getTimeMillis() > 0 ? startNanos + limits.getTimeMillis() * 1000000L : 0;
+        for(int[] plyKillers : killers) {
+            plyKillers[0] = Move.NONE;
+            plyKillers[1] = Move.NONE;
+        }
+        ageHistory();
+
+        SearchResult result = new SearchResult(Move.NONE, 0, 0, 0, 0, new int[0]);
+        for(int depth = firstDepth; depth <= limits.getDepth(); depth++) {
+            rootDepth = depth;
+            int score = search(depth, 0, -INFINITY, INFINITY);
+            if(aborted) {
+                break;
+            }
+            int[] line = new int[principalVariationLength[0]];
+            System.arraycopy(principalVariation[0], 0, line, 0, line.length);
+            long elapsed = (System.nanoTime() - startNanos) / 1000000L;
+            result = new SearchResult(line.length > 0 ? line[0] : Move.NONE, score, depth, nodes, elapsed, line);
+            if(listener != null) {
+                listener.iterationCompleted(result);
+            }
+            if(line.length == 0 || (Math.abs(score) >= MATE_BOUND && MATE - Math.abs(score) <= depth)) {
+                break;
+            }
+            // The next iteration takes longer than all previous ones together, so it would not finish.
+            if(deadlineNanos != 0 && System.nanoTime() - startNanos > (deadlineNanos - startNanos) / 2) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    // Asks a running search to return as soon as possible, safe to call from any thread.
+    public void stop() {
+        stopSignal.set(true);
+    }
+
+    // Helper threads of a parallel search start at different depths so they do not all search the same tree.
+    void setFirstDepth(int firstDepth) {
+        this.firstDepth = firstDepth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    private int search(int depth, int ply, int alpha, int beta) {
+        principalVariationLength[ply] = ply;
+        boolean rootNode = ply == 0;
+        boolean pvNode = beta - alpha > 1;
+        if(!rootNode) {
+            if(position.getHalfmoveClock() >= 100 || position.isRepetition()) {
+                return 0;
+            }
+            // Mate distance pruning: no line from here can beat a mate found closer to the root.
+            alpha = Math.max(alpha, -MATE + ply);
+            beta = Math.min(beta, MATE - ply - 1);
+            if(alpha >= beta) {
+                return alpha;
+            }
+        }
+        boolean inCheck = position.isInCheck();
+        if(inCheck) {
+            depth++;
+        }
+        if(depth <= 0 || ply >= MAX_PLY) {
+            return quiesce(ply, alpha, beta);
+        }
+        countNode();
+
+        long key = position.getHash();
+        long entry = table.probe(key);
+        int hashMove = Move.NONE;
+        if(entry != TranspositionTable.NOT_FOUND) {
+            hashMove = TranspositionTable.move(entry);
+            if(!pvNode && TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if(bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        MoveList list = moveLists[ply];
+        MoveGenerator.generateLegal(position, list);
+        if(list.isEmpty()) {
+            return inCheck ? -MATE + ply : 0;
+        }
+        int[] scores = moveScores[ply];
+        scoreMoves(list, scores, ply, hashMove);
+
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = Move.NONE;
+        for(int i = 0; i < list.size(); i++) {
+            int move = pickMove(list, scores, i);
+            position.makeMove(move);
+            int score;
+            if(i == 0) {
+                score = -search(depth - 1, ply + 1, -beta, -alpha);
+            } else {
+                score = -search(depth - 1, ply + 1, -alpha - 1, -alpha);
+                if(score > alpha && score < beta) {
+                    score = -search(depth - 1, ply + 1, -beta, -alpha);
+                }
+            }
+            position.unmakeMove(move);
+            if(aborted) {
+                return 0;
+            }
+
+            if(score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+                if(score > alpha) {
+                    alpha = score;
+                    updatePrincipalVariation(ply, move);
+                    if(score >= beta) {
+                        if(!Move.isCapture(move) && !Move.isPromotion(move)) {
+                            rememberCutoff(ply, move, depth);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        int bound = bestScore >= beta ? TranspositionTable.LOWER
+            : bestScore > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        table.store(key, bestMove, toTable(bestScore, ply), depth, bound);
+        return bestScore;
+    }
+
+    private int quiesce(int ply, int alpha, int beta) {
+        principalVariationLength[ply] = ply;
+        countNode();
+        if(aborted) {
+            return 0;
+        }
+        boolean inCheck = position.isInCheck();
+        if(ply >= MAX_PLY) {
+            return inCheck ? 0 : Evaluation.evaluate(position);
+        }
+
+        int bestScore = -INFINITY;
+        MoveList list = moveLists[ply];
+        if(inCheck) {
+            // Every evasion is searched, standing pat is not an option when in check.
+            MoveGenerator.generateLegal(position, list);
+            if(list.isEmpty()) {
+                return -MATE + ply;
+            }
+        } else {
+            bestScore = Evaluation.evaluate(position);
+            if(bestScore >= beta) {
+                return bestScore;
+            }
+            alpha = Math.max(alpha, bestScore);
+            MoveGenerator.generateLegalCaptures(position, list);
+        }
+        int[] scores = moveScores[ply];
+        scoreMoves(list, scores, ply, Move.NONE);
+
+        for(int i = 0; i < list.size(); i++) {
+            int move = pickMove(list, scores, i);
+            position.makeMove(move);
+            int score = -quiesce(ply + 1, -beta, -alpha);
+            position.unmakeMove(move);
+            if(aborted) {
+                return 0;
+            }
+            if(score > bestScore) {
+                bestScore = score;
+                if(score > alpha) {
+                    alpha = score;
+                    if(score >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return bestScore;
+    }
+
+    private void countNode() {
+        nodes++;
+        if((nodes & CHECK_INTERVAL) == 0 && rootDepth > 1) {
+            if(stopSignal.get()
+                    || (nodeLimit > 0 && nodes >= nodeLimit)
+                    || (deadlineNanos != 0 && System.nanoTime() >= deadlineNanos)) {
+                aborted = true;
+            }
+        }
+    }
+
+    private void scoreMoves(MoveList list, int[] scores, int ply, int hashMove) {
+        for(int i = 0; i < list.size(); i++) {
+            int move = list.get(i);
+            int score;
+            if(move == hashMove) {
+                score = HASH_MOVE_SCORE;
+            } else if(Move.isCapture(move)) {
+                int victim = Move.flags(move) == Move.EN_PASSANT ? Piece.PAWN : Piece.typeOf(position.pieceAt(Move.to(move)));
+                int attacker = Piece.typeOf(position.pieceAt(Move.from(move)));
+                score = CAPTURE_SCORE + victim * 16 - attacker;
+            } else if(Move.isPromotion(move)) {
+                score = PROMOTION_SCORE + Move.promotionType(move);
+            } else if(move == killers[ply][0]) {
+                score = FIRST_KILLER_SCORE;
+            } else if(move == killers[ply][1]) {
+                score = SECOND_KILLER_SCORE;
+            } else {
+                score = history[position.pieceAt(Move.from(move))][Move.to(move)];
+            }
+            scores[i] = score;
+        }
+    }
+
+    // Moves the best scored remaining move to index and returns it.
+    private static int pickMove(MoveList list, int[] scores, int index) {
+        int best = index;
+        for(int i = index + 1; i < list.size(); i++) {
+            if(scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        if(best != index) {
+            list.swap(index, best);
+            int score = scores[index];
+            scores[index] = scores[best];
+            scores[best] = score;
+        }
+        return list.get(index);
+    }
+
+    private void rememberCutoff(int ply, int move, int depth) {
+        if(killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        int piece = position.pieceAt(Move.from(move));
+        history[piece][Move.to(move)] += depth * depth;
+        if(history[piece][Move.to(move)] > HISTORY_LIMIT) {
+            ageHistory();
+        }
+    }
+
+    private void ageHistory() {
+        for(int[] pieceHistory : history) {
+            for(int square = 0; square < Square.COUNT; square++) {
+                pieceHistory[square] /= 2;
+            }
+        }
+    }
+
+    private void updatePrincipalVariation(int ply, int move) {
+        int[] line = principalVariation[ply];
+        int[] childLine = principalVariation[ply + 1];
+        line[ply] = move;
+        int length = principalVariationLength[ply + 1];
+        for(int i = ply + 1; i < length; i++) {
+            line[i] = childLine[i];
+        }
+        principalVariationLength[ply] = Math.max(length, ply + 1);
+    }
+
+    // Mate scores are stored relative to the node, so they stay correct when reached at another ply.
+    private static int toTable(int score, int ply) {
+        if(score >= MATE_BOUND) {
+            return score + ply;
+        }
+        if(score <= -MATE_BOUND) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if(score >= MATE_BOUND) {
+            return score - ply;
+        }
+        if(score <= -MATE_BOUND) {
+            return score + ply;
+        }
+        return score;
+    }
+}
@@ -0,0 +1,63 @@
+package com.wizeline.chess;
+
+/*
+Budget of a search. Any combination of limits can be set; the search stops at the first
+one reached. A limit of 0 means unlimited, but at least one iteration (depth 1) is always
+completed so there is a move to play.
+*/
+public final class SearchLimits {
+    public static final int MAX_DEPTH = 64;
+    // Moves a game on a clock is assumed to last when the controller does not say.
+    public static final int DEFAULT_MOVES_TO_GO = 30;
+    // Kept back from the remaining time for the delay between the engine and the clock.
+    public static final long MOVE_OVERHEAD_MILLIS = 30;
+
+    private int depth = MAX_DEPTH;
+    private long timeMillis;
+    private long nodes;
+
+    public static SearchLimits depth(int depth) {
+        SearchLimits limits = new SearchLimits();
+        limits.setDepth(depth);
+        return limits;
+    }
+
+    public static SearchLimits time(long timeMillis) {
+        SearchLimits limits = new SearchLimits();
+        limits.setTimeMillis(timeMillis);
+        return limits;
+    }
+
+    // Budget of one move on a clock with the remaining time and increment of the side to move:
+    // an even share of the remaining time over the moves to go (0 when unknown) and most of the
+    // increment, but never more than the remaining time less the overhead.
+    public static SearchLimits clock(long remainingMillis, long incrementMillis, int movesToGo) {
+        long share = remainingMillis / (movesToGo > 0 ? movesToGo : DEFAULT_MOVES_TO_GO) + incrementMillis * 3 / 4;
+        return time(Math.max(1, Math.min(share, remainingMillis - MOVE_OVERHEAD_MILLIS)));
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public void setDepth(int depth) {
+        this.depth = Math.max(1, Math.min(depth, MAX_DEPTH));
+    }
+
+    // Hard wall-clock budget for the whole search.
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public void setTimeMillis(long timeMillis) {
+        this.timeMillis = timeMillis;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public void setNodes(long nodes) {
+        this.nodes = nodes;
+    }
+}
@@ -0,0 +1,13 @@
+package com.wizeline.chess;
+
+/*
+Receives the result of every completed iteration of a search, for example to show the
+depth, score and principal variation while the engine is thinking.
+*/
+public interface SearchListener {
+    void iterationCompleted(SearchResult result);
+
+    // Called with the move to play by ComputerPlayer.thinkInBackground.
+    default void searchFinished(SearchResult result) {
+    }
+}
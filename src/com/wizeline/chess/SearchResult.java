@@ -0,0 +1,116 @@
+package com.wizeline.chess;
+
+/*
+Outcome of a search iteration: the best move, its score in centipawns from the point of
+view of the side to move, the principal variation and the effort spent so far. A move
+taken from the opening book has no score and no search effort, one taken from the endgame
+tablebases has the exact score but no search effort.
+*/
+public final class SearchResult {
+    private final int bestMove;
+    private final int score;
+    private final int depth;
+    private final long nodes;
+    private final long timeMillis;
+    private final int[] principalVariation;
+    private final int source;
+
+    private static final int SEARCH = 0;
+    private static final int BOOK = 1;
+    private static final int TABLEBASE = 2;
+
+    public SearchResult(int bestMove, int score, int depth, long nodes, long timeMillis, int[] principalVariation) {
+        this(bestMove, score, depth, nodes, timeMillis, principalVariation, SEARCH);
+    }
+
+    private SearchResult(int bestMove, int score, int depth, long nodes, long timeMillis, int[] principalVariation,
+            int source) {
+        this.bestMove = bestMove;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.timeMillis = timeMillis;
+        this.principalVariation = principalVariation;
+        this.source = source;
+    }
+
+    public static SearchResult fromBook(int move) {
+        return new SearchResult(move, 0, 0, 0, 0, new int[] {move}, BOOK);
+    }
+
+    public static SearchResult fromTablebase(int move, int score) {
+        return new SearchResult(move, score, 0, 0, 0, new int[] {move}, TABLEBASE);
+    }
+
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    // Deepest completed iteration.
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public long getNodesPerSecond() {
+        return timeMillis == 0 ? nodes * 1000 : nodes * 1000 / timeMillis;
+    }
+
+    public int[] getPrincipalVariation() {
+        return principalVariation.clone();
+    }
+
+    // True when the move comes from the opening book instead of a search.
+    public boolean isBookMove() {
+        return source == BOOK;
+    }
+
+    // True when the move comes from the endgame tablebases instead of a search.
+    public boolean isTablebaseMove() {
+        return source == TABLEBASE;
+    }
+
+    public boolean isMate() {
+        return Math.abs(score) >= Search.MATE_BOUND;
+    }
+
+    // Moves until mate, positive when the side to move mates.
+    public int getMateIn() {
+        int plies = Search.MATE - Math.abs(score);
+        return score > 0 ? (plies + 1) / 2 : -(plies + 1) / 2;
+    }
+
+    public String principalVariationText() {
+        StringBuilder text = new StringBuilder();
+        for(int move : principalVariation) {
+            if(text.length() > 0) {
+                text.append(' ');
+            }
+            text.append(Move.name(move));
+        }
+        return text.toString();
+    }
+
+    @Override
+    public String toString() {
+        String scoreText = isMate() ? "mate " + getMateIn() : "cp " + score;
+        if(source == BOOK) {
+            return "book move " + Move.name(bestMove);
+        } else if(source == TABLEBASE) {
+            return "tablebase move " + Move.name(bestMove) + " score " + scoreText;
+        }
+        return "depth " + depth + " score " + scoreText + " nodes " + nodes + " nps " + getNodesPerSecond()
+            + " time " + timeMillis + " pv " + principalVariationText();
+    }
+}
@@ -0,0 +1,52 @@
+package com.wizeline.chess;
+
+/*
+Time-to-depth scaling of ParallelSearch. Every fixed position is searched to the same
+depth with 1, 2, 4, ... threads up to the number of cores (or the given maximum), each
+run with a fresh transposition table, and the speedup over one thread is printed.
+
+Run it with:
+    java com.wizeline.chess.SmpBenchmark [depth] [maxThreads] [hashMB]
+*/
+public final class SmpBenchmark {
+    private static final String[] POSITIONS = {
+        Fen.START_POSITION,
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+    };
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 9;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int hash = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+
+        System.out.println("Time to depth " + depth + " (" + Runtime.getRuntime().availableProcessors() + " cores)");
+        long baseline = 0;
+        for(int threads = 1; threads <= maxThreads; threads = nextThreadCount(threads, maxThreads)) {
+            long totalMillis = 0;
+            long totalNodes = 0;
+            for(String fen : POSITIONS) {
+                ParallelSearch search = new ParallelSearch(new TranspositionTable(hash), threads);
+                long start = System.nanoTime();
+                SearchResult result = search.search(Fen.parse(fen), SearchLimits.depth(depth), null);
+                totalMillis += (System.nanoTime() - start) / 1000000L;
+                totalNodes += result.getNodes();
+                search.shutdown();
+            }
+            if(threads == 1) {
+                baseline = totalMillis;
+            }
+            System.out.println(String.format("%3d threads: %7d ms, %12d nodes, %10d nodes/s, speedup %.2f",
+                threads, totalMillis, totalNodes, totalMillis == 0 ? 0 : totalNodes * 1000 / totalMillis,
+                totalMillis == 0 ? 0.0 : (double) baseline / totalMillis));
+        }
+    }
+
+    private static int nextThreadCount(int threads, int maxThreads) {
+        if(threads < maxThreads && threads * 2 > maxThreads) {
+            return maxThreads;
+        }
+        return threads * 2;
+    }
+}
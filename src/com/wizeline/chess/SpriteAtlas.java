@@ -0,0 +1,120 @@
+package com.wizeline.chess;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.imageio.ImageIO;
+
+/*
+The piece images of one tile size, shared by every Board of the process.
+
+Nothing is loaded up front: the PNG file of a piece is decoded when the piece is first
+drawn at a size and scaled once into an image in the format of the screen (a compatible
+image), so drawing it is a plain copy without conversion. Only the scaled image is kept.
+Boards of the same tile size get the same atlas, so several boards cost no more memory or
+decoding than one. A piece whose file is missing or cannot be read is remembered, so the
+file is looked up and the error printed once, and the piece is not drawn.
+
+Atlases can be used from several threads; two threads asking for a new image at once may
+both build it, and one of them is kept.
+*/
+public final class SpriteAtlas {
+    private static final String[] TYPE_IMAGE_NAMES = {"pawn", "knight", "bishop", "rook", "queen", "king"};
+    private static final ConcurrentHashMap<Long, SpriteAtlas> ATLASES = new ConcurrentHashMap<Long, SpriteAtlas>();
+    // 1 for the pieces whose file could not be read.
+    private static final AtomicIntegerArray UNREADABLE = new AtomicIntegerArray(Piece.COUNT);
+
+    private final int width;
+    private final int height;
+    private final AtomicReferenceArray<BufferedImage> sprites = new AtomicReferenceArray<BufferedImage>(Piece.COUNT);
+
+    private SpriteAtlas(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    // The shared atlas of a tile size; creating it does not load any image.
+    public static SpriteAtlas forTileSize(int width, int height) {
+        Long key = (long) width << 32 | height;
+        SpriteAtlas atlas = ATLASES.get(key);
+        if(atlas == null) {
+            atlas = new SpriteAtlas(width, height);
+            SpriteAtlas existing = ATLASES.putIfAbsent(key, atlas);
+            if(existing != null) {
+                atlas = existing;
+            }
+        }
+        return atlas;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    // The image of a piece at the size of the atlas, null when its file cannot be read.
+    public BufferedImage get(int piece) {
+        BufferedImage sprite = sprites.get(piece);
+        if(sprite == null) {
+            BufferedImage original = original(piece);
+            if(original == null) {
+                return null;
+            }
+            sprite = scale(original);
+            sprites.compareAndSet(piece, null, sprite);
+        }
+        return sprite;
+    }
+
+    // Decodes the image file of a piece, null when it cannot be read.
+    static BufferedImage original(int piece) {
+        if(UNREADABLE.get(piece) != 0) {
+            return null;
+        }
+        String color = Piece.colorOf(piece) == Piece.WHITE ? "white_" : "black_";
+        BufferedImage image = load(color + TYPE_IMAGE_NAMES[Piece.typeOf(piece)]);
+        if(image == null) {
+            UNREADABLE.set(piece, 1);
+        }
+        return image;
+    }
+
+    private static BufferedImage load(String imageName) {
+        try {
+            URL url = SpriteAtlas.class.getResource("/images/" + imageName + ".png");
+            if(url == null) {
+                url = SpriteAtlas.class.getResource("/" + imageName + ".png");
+            }
+            return url == null ? null : ImageIO.read(url);
+        } catch(IOException e) {
+            System.out.println("Error loading image");
+            return null;
+        }
+    }
+
+    private BufferedImage scale(BufferedImage image) {
+        BufferedImage scaled;
+        if(GraphicsEnvironment.isHeadless()) {
+            scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        } else {
+            scaled = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration()
+                .createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+        }
+        Graphics2D graphics = scaled.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.drawImage(image, 0, 0, width, height, null);
+        graphics.dispose();
+        return scaled;
+    }
+}
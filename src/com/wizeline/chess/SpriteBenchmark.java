@@ -0,0 +1,135 @@
+package com.wizeline.chess;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+/*
+Cold start of the piece images: the time from the start of a new JVM until a number of
+boards have painted their first frame, and the memory the images they keep take, for
+- "eager": what every Board did before SpriteAtlas: decode the twelve PNG files and scale
+  them to the tile size in its constructor.
+- "atlas": Board with the shared SpriteAtlas, which decodes and scales every image once
+  per process when it is first drawn at the tile size.
+Every measurement runs in a fresh JVM (started with the classpath of this one) so class
+loading and image decoding are really cold; the median of the runs is printed, both as
+measured inside the JVM and including its start.
+
+Run it with:
+    java com.wizeline.chess.SpriteBenchmark [runs]
+*/
+public final class SpriteBenchmark {
+    private static final int[] BOARD_COUNTS = {1, 4};
+    private static final String[] TYPE_IMAGE_NAMES = {"pawn", "knight", "bishop", "rook", "queen", "king"};
+    private static final int TILE_SIZE = 60;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if(args.length > 0 && args[0].startsWith("--child=")) {
+            child(args[0].substring("--child=".length()), Integer.parseInt(args[1]));
+            return;
+        }
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        for(int boards : BOARD_COUNTS) {
+            for(String mode : new String[] {"eager", "atlas"}) {
+                long[] inside = new long[runs];
+                long[] total = new long[runs];
+                String memory = "";
+                for(int run = 0; run < runs; run++) {
+                    long start = System.nanoTime();
+                    String[] output = runChild(mode, boards).split(" ");
+                    total[run] = System.nanoTime() - start;
+                    inside[run] = Long.parseLong(output[0]);
+                    memory = output[1];
+                }
+                System.out.println(String.format("%-6s %d board%s: first frame after %6.1f ms in the JVM, %6.1f ms with JVM start, images %s KB",
+                    mode, boards, boards == 1 ? " " : "s", median(inside) / 1e6, median(total) / 1e6, memory));
+            }
+        }
+    }
+
+    private static String runChild(String mode, int boards) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, "-Djava.awt.headless=true", "-cp", System.getProperty("java.class.path"),
+            SpriteBenchmark.class.getName(), "--child=" + mode, Integer.toString(boards)).redirectErrorStream(true).start();
+        String line;
+        try(BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            line = output.readLine();
+        }
+        if(process.waitFor() != 0 || line == null) {
+            throw new IllegalStateException("Benchmark process failed: " + line);
+        }
+        return line;
+    }
+
+    // Creates the boards, paints the first frame of each and prints the nanoseconds and image kilobytes.
+    private static void child(String mode, int boards) throws IOException {
+        long start = System.nanoTime();
+        List<BufferedImage> kept = new ArrayList<BufferedImage>();
+        BufferedImage frame = new BufferedImage(525, 540, BufferedImage.TYPE_INT_RGB);
+        Position position = Fen.parse(Fen.START_POSITION);
+        boolean eager = mode.equals("eager");
+        for(int i = 0; i < boards; i++) {
+            // The eager boards are empty so they only draw the tiles, the pieces are drawn here.
+            Board board = new Board(eager ? new Position() : position);
+            board.setSize(board.getPreferredSize());
+            Graphics2D graphics = frame.createGraphics();
+            graphics.setClip(0, 0, frame.getWidth(), frame.getHeight());
+            board.paintComponent(graphics);
+            if(eager) {
+                BufferedImage[] images = eagerImages();
+                kept.addAll(Arrays.asList(images));
+                for(int square = 0; square < Square.COUNT; square++) {
+                    int piece = position.pieceAt(square);
+                    if(piece != Piece.NONE) {
+                        graphics.drawImage(images[piece], 25 + TILE_SIZE * Square.file(square),
+                            25 + TILE_SIZE * (7 - Square.rank(square)), null);
+                    }
+                }
+            }
+            graphics.dispose();
+        }
+        long nanos = System.nanoTime() - start;
+        if(!eager) {
+            SpriteAtlas atlas = SpriteAtlas.forTileSize(TILE_SIZE, TILE_SIZE);
+            for(int piece = 0; piece < Piece.COUNT; piece++) {
+                kept.add(atlas.get(piece));
+            }
+        }
+        long bytes = 0;
+        for(BufferedImage image : kept) {
+            bytes += (long) image.getWidth() * image.getHeight() * 4;
+        }
+        System.out.println(nanos + " " + bytes / 1024);
+    }
+
+    // The former Board.loadImages: decodes the twelve files and scales them to the tile size.
+    private static BufferedImage[] eagerImages() throws IOException {
+        BufferedImage[] images = new BufferedImage[Piece.COUNT];
+        for(int piece = 0; piece < Piece.COUNT; piece++) {
+            String color = Piece.colorOf(piece) == Piece.WHITE ? "white_" : "black_";
+            BufferedImage original = ImageIO.read(SpriteBenchmark.class.getResource("/images/" + color
+                + TYPE_IMAGE_NAMES[Piece.typeOf(piece)] + ".png"));
+            images[piece] = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D graphics = images[piece].createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(original, 0, 0, TILE_SIZE, TILE_SIZE, null);
+            graphics.dispose();
+        }
+        return images;
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
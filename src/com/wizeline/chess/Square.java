@@ -0,0 +1,63 @@
+package com.wizeline.chess;
+
+/*
+Squares are numbered from 0 to 63 starting at a1 and moving along the ranks:
+a1 = 0, b1 = 1, ..., h1 = 7, a2 = 8, ..., h8 = 63. The same index is the bit
+position of the square inside a bitboard.
+*/
+public final class Square {
+    public static final int NONE = -1;
+    public static final int COUNT = 64;
+
+    public static final int A1 = 0, B1 = 1, C1 = 2, D1 = 3, E1 = 4, F1 = 5, G1 = 6, H1 = 7;
+    public static final int A8 = 56, B8 = 57, C8 = 58, D8 = 59, E8 = 60, F8 = 61, G8 = 62, H8 = 63;
+
+    private static final String[] NAMES = new String[COUNT];
+
+    static {
+        for(int square = 0; square < COUNT; square++) {
+            NAMES[square] = new String(new char[] {(char) ('a' + file(square)), (char) ('1' + rank(square))});
+        }
+    }
+
+    private Square() {
+    }
+
+    public static int index(int file, int rank) {
+        return rank * 8 + file;
+    }
+
+    public static int file(int square) {
+        return square & 7;
+    }
+
+    public static int rank(int square) {
+        return square >>> 3;
+    }
+
+    // Returns the board coordinate of a square, for example "e4".
+    public static String name(int square) {
+        return NAMES[square];
+    }
+
+    // Parses a board coordinate such as "e4" starting at offset, returns NONE when it is not valid.
+    public static int parse(CharSequence text, int offset) {
+        if(text == null || offset < 0 || offset + 2 > text.length()) {
+            return NONE;
+        }
+        int file = text.charAt(offset) - 'a';
+        int rank = text.charAt(offset + 1) - '1';
+        if(file < 0 || file > 7 || rank < 0 || rank > 7) {
+            return NONE;
+        }
+        return index(file, rank);
+    }
+
+    // Parses a key of the Board pieces map, which must be exactly one coordinate.
+    public static int parse(Object name) {
+        if(!(name instanceof String) || ((String) name).length() != 2) {
+            return NONE;
+        }
+        return parse((String) name, 0);
+    }
+}
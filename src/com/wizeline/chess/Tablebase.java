@@ -0,0 +1,311 @@
+package com.wizeline.chess;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+Endgame tablebases: the exact outcome of every position with up to MAX_PIECES pieces of a
+given material, written by TablebaseGenerator. A table is named after its material with the
+stronger side first, for example "KQvK" or "KBNvK", and consists of two files:
+    <name>.wdl   2 bits per position: 0 draw (or impossible position), 1 win, 2 loss
+    <name>.dtm   1 byte per position: distance to mate in plies for wins and losses
+both from the point of view of the side to move. Positions are indexed by the side to move
+followed by the square of every piece in the order of the name, the first side white:
+    index = ((side * 64 + square of piece 1) * 64 + square of piece 2) * 64 ...
+Positions where black is the stronger side are looked up with colors and ranks swapped.
+Materials that cannot mate (KvK, KBvK, KNvK) are draws without a file.
+
+The files are memory-mapped when a probe first needs them, so probes cost no heap and
+only touch the pages of the positions asked for. Castling rights and en passant captures
+are not part of the tables; positions that have them are not probed.
+
+A Tablebase can be probed from several threads at once.
+*/
+public final class Tablebase implements Closeable {
+    public static final int MAX_PIECES = 4;
+
+    public static final int LOSS = -1;
+    public static final int DRAW = 0;
+    public static final int WIN = 1;
+    // Returned when the position is not covered by the available tables.
+    public static final int UNKNOWN = -2;
+
+    static final int WDL_DRAW = 0;
+    static final int WDL_WIN = 1;
+    static final int WDL_LOSS = 2;
+    static final String WDL_SUFFIX = ".wdl";
+    static final String DTM_SUFFIX = ".dtm";
+
+    // Piece letters in the order they appear in table names.
+    private static final String LETTERS = "KQRBNP";
+    private static final int[] LETTER_TYPES = {Piece.KING, Piece.QUEEN, Piece.ROOK, Piece.BISHOP, Piece.KNIGHT, Piece.PAWN};
+    private static final String[] TRIVIAL_DRAWS = {"KvK", "KBvK", "KNvK"};
+
+    private final Path directory;
+    private final ConcurrentHashMap<String, Table> tables = new ConcurrentHashMap<String, Table>();
+
+    public Tablebase(Path directory) {
+        this.directory = directory;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    // WIN, DRAW or LOSS for the side to move, or UNKNOWN.
+    public int probeWdl(Position position) {
+        long probe = probe(position);
+        return probe == UNKNOWN ? UNKNOWN : (int) (probe >> 8) - 1;
+    }
+
+    // Plies to mate with best play for wins and losses, 0 for draws, -1 when unknown.
+    public int probeDtm(Position position) {
+        long probe = probe(position);
+        return probe == UNKNOWN ? -1 : (int) (probe & 0xFF);
+    }
+
+    // The move that wins fastest, loses slowest or keeps the draw, or Move.NONE when the
+    // position or one of the positions after its moves is not covered.
+    public int bestMove(Position position) {
+        if(probe(position) == UNKNOWN) {
+            return Move.NONE;
+        }
+        MoveList moves = new MoveList();
+        MoveGenerator.generateLegal(position, moves);
+        int best = Move.NONE;
+        int bestRank = Integer.MIN_VALUE;
+        for(int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            position.makeMove(move);
+            long child = probe(position);
+            position.unmakeMove(move);
+            if(child == UNKNOWN) {
+                return Move.NONE;
+            }
+            int rank = -score((int) (child >> 8) - 1, (int) (child & 0xFF));
+            if(rank > bestRank) {
+                best = move;
+                bestRank = rank;
+            }
+        }
+        return best;
+    }
+
+    // Search score of a probe result, mate scores count the plies like Search does.
+    public static int score(int wdl, int dtm) {
+        if(wdl == WIN) {
+            return Search.MATE - dtm;
+        } else if(wdl == LOSS) {
+            return -Search.MATE + dtm;
+        }
+        return 0;
+    }
+
+    // Forgets a table that was opened or found missing, so the next probe looks at the files again.
+    public void reload(String name) {
+        tables.remove(name);
+    }
+
+    @Override
+    public void close() throws IOException {
+        tables.clear();
+    }
+
+    // Outcome and distance packed as (wdl + 1) << 8 | dtm, or UNKNOWN.
+    private long probe(Position position) {
+        if(Long.bitCount(position.occupied()) > MAX_PIECES || position.getCastlingRights() != 0
+                || position.getEnPassantSquare() != Square.NONE) {
+            return UNKNOWN;
+        }
+        String white = side(position, Piece.WHITE);
+        String black = side(position, Piece.BLACK);
+        boolean mirrored = !isStronger(white, black);
+        String name = mirrored ? black + "v" + white : white + "v" + black;
+        if(isTrivialDraw(name)) {
+            return (DRAW + 1) << 8;
+        }
+        Table table = table(name);
+        if(table == null) {
+            return UNKNOWN;
+        }
+        long index = index(position, table.pieces, mirrored);
+        int wdl = table.wdl(index);
+        return (long) ((wdl == WDL_WIN ? WIN : wdl == WDL_LOSS ? LOSS : DRAW) + 1) << 8 | table.dtm(index);
+    }
+
+    private Table table(String name) {
+        Table table = tables.get(name);
+        if(table == null) {
+            table = Table.open(directory, name);
+            Table existing = tables.putIfAbsent(name, table);
+            if(existing != null) {
+                table = existing;
+            }
+        }
+        return table.wdl == null ? null : table;
+    }
+
+    // Index of the position in a table whose pieces are given in index order.
+    static long index(Position position, int[] pieces, boolean mirrored) {
+        int flip = mirrored ? 56 : 0;
+        int colorFlip = mirrored ? 1 : 0;
+        long index = position.getSideToMove() ^ colorFlip;
+        long used = 0;
+        for(int piece : pieces) {
+            long candidates = position.bitboard(Piece.colorOf(piece) ^ colorFlip, Piece.typeOf(piece)) & ~used;
+            int square = Long.numberOfTrailingZeros(candidates);
+            used |= 1L << square;
+            index = index * 64 + (square ^ flip);
+        }
+        return index;
+    }
+
+    // Pieces of a table name in index order, for example KQvK is white king, white queen, black king.
+    static int[] pieces(String name) {
+        int separator = name.indexOf('v');
+        int[] pieces = new int[name.length() - 1];
+        for(int i = 0, n = 0; i < name.length(); i++) {
+            if(i != separator) {
+                int type = LETTER_TYPES[LETTERS.indexOf(name.charAt(i))];
+                pieces[n++] = Piece.make(i < separator ? Piece.WHITE : Piece.BLACK, type);
+            }
+        }
+        return pieces;
+    }
+
+    // Table name of two sides with the stronger first, for example ("K", "KQ") gives KQvK.
+    static String name(String first, String second) {
+        String a = sorted(first);
+        String b = sorted(second);
+        return isStronger(a, b) ? a + "v" + b : b + "v" + a;
+    }
+
+    static boolean isTrivialDraw(String name) {
+        for(String draw : TRIVIAL_DRAWS) {
+            if(draw.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Names of the tables reached by a capture or a promotion from the given one.
+    static List<String> successors(String name) {
+        int separator = name.indexOf('v');
+        String[] sides = {name.substring(0, separator), name.substring(separator + 1)};
+        List<String> successors = new ArrayList<String>();
+        for(int side = 0; side < 2; side++) {
+            String own = sides[side];
+            String other = sides[1 - side];
+            for(int i = 1; i < own.length(); i++) {
+                String without = own.substring(0, i) + own.substring(i + 1);
+                addOnce(successors, name(without, other));
+                if(own.charAt(i) == 'P') {
+                    for(char promotion : "QRBN".toCharArray()) {
+                        addOnce(successors, name(without + promotion, other));
+                        // A promotion can capture at the same time.
+                        for(int j = 1; j < other.length(); j++) {
+                            addOnce(successors, name(without + promotion, other.substring(0, j) + other.substring(j + 1)));
+                        }
+                    }
+                }
+            }
+        }
+        return successors;
+    }
+
+    private static void addOnce(List<String> names, String name) {
+        if(!names.contains(name)) {
+            names.add(name);
+        }
+    }
+
+    private static String side(Position position, int color) {
+        StringBuilder side = new StringBuilder(MAX_PIECES);
+        for(int i = 0; i < LETTERS.length(); i++) {
+            for(int n = Long.bitCount(position.bitboard(color, LETTER_TYPES[i])); n > 0; n--) {
+                side.append(LETTERS.charAt(i));
+            }
+        }
+        return side.toString();
+    }
+
+    private static String sorted(String side) {
+        StringBuilder sorted = new StringBuilder(side.length());
+        for(int i = 0; i < LETTERS.length(); i++) {
+            for(int j = 0; j < side.length(); j++) {
+                if(side.charAt(j) == LETTERS.charAt(i)) {
+                    sorted.append(side.charAt(j));
+                }
+            }
+        }
+        return sorted.toString();
+    }
+
+    // True when side a comes first in a table name: more material, or the same and not after b.
+    private static boolean isStronger(String a, String b) {
+        int difference = material(a) - material(b);
+        return difference > 0 || difference == 0 && a.compareTo(b) <= 0;
+    }
+
+    private static int material(String side) {
+        int material = 0;
+        for(int i = 0; i < side.length(); i++) {
+            material += Evaluation.PIECE_VALUES[LETTER_TYPES[LETTERS.indexOf(side.charAt(i))]];
+        }
+        return material;
+    }
+
+    // The mapped files of one table; wdl is null when the table is not available.
+    private static final class Table {
+        final int[] pieces;
+        final ByteBuffer wdl;
+        final ByteBuffer dtm;
+
+        private Table(int[] pieces, ByteBuffer wdl, ByteBuffer dtm) {
+            this.pieces = pieces;
+            this.wdl = wdl;
+            this.dtm = dtm;
+        }
+
+        static Table open(Path directory, String name) {
+            int[] pieces = pieces(name);
+            Path wdlFile = directory.resolve(name + WDL_SUFFIX);
+            Path dtmFile = directory.resolve(name + DTM_SUFFIX);
+            long positions = 2L << (6 * pieces.length);
+            if(pieces.length > MAX_PIECES || !Files.isRegularFile(wdlFile) || !Files.isRegularFile(dtmFile)) {
+                return new Table(pieces, null, null);
+            }
+            try {
+                return new Table(pieces, map(wdlFile, positions / 4), map(dtmFile, positions));
+            } catch(IOException e) {
+                return new Table(pieces, null, null);
+            }
+        }
+
+        private static ByteBuffer map(Path file, long size) throws IOException {
+            try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if(channel.size() != size) {
+                    throw new IOException("Unexpected size of tablebase file " + file);
+                }
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+        }
+
+        int wdl(long index) {
+            return (wdl.get((int) (index >>> 2)) >>> ((int) (index & 3) * 2)) & 3;
+        }
+
+        int dtm(long index) {
+            return dtm.get((int) index) & 0xFF;
+        }
+    }
+}
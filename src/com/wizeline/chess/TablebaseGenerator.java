@@ -0,0 +1,494 @@
+package com.wizeline.chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/*
+Generates the Tablebase files of small endings by retrograde analysis.
+
+1. Every index of the table is set up as a position once. Impossible positions (two pieces
+   on a square, pawns on the first or last rank, the side not to move in check) are marked
+   invalid, mates are losses in 0 and stalemates draws. For the other positions the moves
+   that stay in the table are counted, and the moves that capture or promote are looked
+   up in the smaller tables they lead to, which are generated first.
+2. Then the results spread backwards one ply at a time. From each position decided at
+   distance n, the moves are taken back (un-moves) to find its predecessors: if it is lost
+   for the side to move, the predecessor wins in n + 1; if it is won, the predecessor has
+   one move less left to try, and once none is left (and no capture escapes to a draw) it
+   is lost in n + 1, or later if a capture leads to a longer win for the opponent.
+3. Whatever is not decided at the end is a draw.
+
+Both steps are split over a fixed number of threads: the setup works on index ranges and
+each ply on parts of the positions decided at the previous one, with the state of every
+position in one AtomicIntegerArray updated by compare-and-set.
+
+Run it with:
+    java com.wizeline.chess.TablebaseGenerator <directory> [KQvK KRvK ...] [--threads=<n>]
+Without names it generates KQvK, KRvK, KPvK and KBNvK.
+*/
+public final class TablebaseGenerator {
+    public static final String[] DEFAULT_TABLES = {"KQvK", "KRvK", "KPvK", "KBNvK"};
+    private static final int MAX_DISTANCE = 255;
+    // Slot of the lists by distance that holds positions decided already, not candidates.
+    private static final int DECIDED = MAX_DISTANCE + 1;
+
+    // Packed state of a position during generation.
+    private static final int UNKNOWN = 0;
+    private static final int WIN = 1;
+    private static final int LOSS = 2;
+    private static final int DRAW = 3;
+    private static final int INVALID = 4;
+    private static final int STATE_MASK = 7;
+    private static final int DISTANCE_SHIFT = 3;
+    // Moves within the table that are not known to lose yet.
+    private static final int COUNT_SHIFT = 11;
+    // Shortest a loss can be because of captures into won smaller tables.
+    private static final int FLOOR_SHIFT = 19;
+    // A capture leads to a draw, or a loss for the opponent, so the position cannot be lost.
+    private static final int NO_LOSS = 1 << 27;
+    private static final int BYTE = 0xFF;
+
+    private final Tablebase tablebase;
+    private final int threads;
+    private final ExecutorService executor;
+
+    public TablebaseGenerator(Path directory, int threads) {
+        this.tablebase = new Tablebase(directory);
+        this.threads = threads;
+        this.executor = Executors.newFixedThreadPool(threads);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path directory = null;
+        List<String> names = new ArrayList<String>();
+        for(String arg : args) {
+            if(arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if(directory == null) {
+                directory = Paths.get(arg);
+            } else {
+                names.add(arg);
+            }
+        }
+        if(directory == null) {
+            System.out.println("Usage: java com.wizeline.chess.TablebaseGenerator <directory> [KQvK KRvK ...] [--threads=<n>]");
+            System.exit(2);
+        }
+        if(names.isEmpty()) {
+            names.addAll(Arrays.asList(DEFAULT_TABLES));
+        }
+        Files.createDirectories(directory);
+        TablebaseGenerator generator = new TablebaseGenerator(directory, threads);
+        try {
+            for(String name : names) {
+                generator.generateWithSuccessors(name);
+            }
+        } finally {
+            generator.shutdown();
+        }
+    }
+
+    // Generates the table after the ones it depends on, skipping tables whose files exist.
+    public void generateWithSuccessors(String name) throws IOException {
+        String canonical = canonical(name);
+        if(Tablebase.isTrivialDraw(canonical) || exists(canonical)) {
+            return;
+        }
+        for(String successor : Tablebase.successors(canonical)) {
+            generateWithSuccessors(successor);
+        }
+        generate(canonical);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void generate(final String name) throws IOException {
+        final int[] pieces = Tablebase.pieces(name);
+        if(pieces.length > Tablebase.MAX_PIECES) {
+            throw new IllegalArgumentException("Tables have at most " + Tablebase.MAX_PIECES + " pieces: " + name);
+        }
+        long start = System.nanoTime();
+        final int size = 2 << (6 * pieces.length);
+        final AtomicIntegerArray states = new AtomicIntegerArray(size);
+
+        // Step 1: set up every position, candidates[d] lists the positions that may be decided at distance d.
+        List<Callable<IntList[]>> setup = new ArrayList<Callable<IntList[]>>();
+        final int part = (size + threads - 1) / threads;
+        for(int t = 0; t < threads; t++) {
+            final int from = t * part;
+            final int to = Math.min(size, from + part);
+            setup.add(new Callable<IntList[]>() {
+                public IntList[] call() {
+                    return setUp(pieces, states, from, to);
+                }
+            });
+        }
+        IntList[] candidates = merge(run(setup));
+
+        // Step 2: decide the positions ply by ply.
+        IntList decided = new IntList();
+        int longest = 0;
+        for(int distance = 0; distance < MAX_DISTANCE; distance++) {
+            IntList current = candidates[distance];
+            candidates[distance] = null;
+            for(int i = 0; i < current.size; i++) {
+                int code = current.values[i];
+                int index = code >>> 1;
+                int state = (code & 1) == 1 ? LOSS : WIN;
+                if(decide(states, index, state, distance)) {
+                    decided.add(index);
+                }
+            }
+            if(decided.size == 0) {
+                if(!hasCandidates(candidates, distance + 1)) {
+                    break;
+                }
+                continue;
+            }
+            longest = distance;
+            final IntList level = decided;
+            final int next = distance + 1;
+            List<Callable<IntList[]>> steps = new ArrayList<Callable<IntList[]>>();
+            final int stepPart = (level.size + threads - 1) / threads;
+            for(int t = 0; t < threads; t++) {
+                final int from = t * stepPart;
+                final int to = Math.min(level.size, from + stepPart);
+                steps.add(new Callable<IntList[]>() {
+                    public IntList[] call() {
+                        return retract(pieces, states, level, from, to, next);
+                    }
+                });
+            }
+            IntList[] found = merge(run(steps));
+            decided = found[DECIDED];
+            for(int d = next; d <= MAX_DISTANCE; d++) {
+                candidates[d].addAll(found[d]);
+            }
+        }
+
+        // Step 3: write the files.
+        byte[] wdl = new byte[size / 4];
+        byte[] dtm = new byte[size];
+        long wins = 0;
+        long losses = 0;
+        long draws = 0;
+        long invalid = 0;
+        for(int index = 0; index < size; index++) {
+            int value = states.get(index);
+            int state = value & STATE_MASK;
+            int code = Tablebase.WDL_DRAW;
+            if(state == WIN) {
+                code = Tablebase.WDL_WIN;
+                wins++;
+            } else if(state == LOSS) {
+                code = Tablebase.WDL_LOSS;
+                losses++;
+            } else if(state == INVALID) {
+                invalid++;
+            } else {
+                draws++;
+            }
+            wdl[index >>> 2] |= code << ((index & 3) * 2);
+            dtm[index] = (byte) (code == Tablebase.WDL_DRAW ? 0 : (value >>> DISTANCE_SHIFT) & BYTE);
+        }
+        Path directory = tablebase.getDirectory();
+        write(directory.resolve(name + Tablebase.WDL_SUFFIX), wdl);
+        write(directory.resolve(name + Tablebase.DTM_SUFFIX), dtm);
+        tablebase.reload(name);
+
+        System.out.println(String.format("%-6s %9d positions: %9d wins, %9d losses, %9d draws, %9d invalid, "
+                + "longest mate %d plies, %6d ms, wdl %d bytes, dtm %d bytes",
+            name, size, wins, losses, draws, invalid, longest, (System.nanoTime() - start) / 1000000L, wdl.length, dtm.length));
+    }
+
+    // Sets up positions [from, to) and returns the candidates found, indexed by distance.
+    private IntList[] setUp(int[] pieces, AtomicIntegerArray states, int from, int to) {
+        IntList[] candidates = newLevels();
+        Position position = new Position();
+        MoveList moves = new MoveList();
+        int[] squares = new int[pieces.length];
+        for(int index = from; index < to; index++) {
+            if(!setPosition(position, pieces, index, squares)) {
+                states.set(index, INVALID);
+                continue;
+            }
+            MoveGenerator.generateLegal(position, moves);
+            if(moves.isEmpty()) {
+                if(position.isInCheck()) {
+                    candidates[0].add(index << 1 | 1);
+                } else {
+                    states.set(index, DRAW);
+                }
+                continue;
+            }
+            int count = 0;
+            int floor = 0;
+            boolean noLoss = false;
+            int fastestWin = MAX_DISTANCE + 1;
+            for(int i = 0; i < moves.size(); i++) {
+                int move = moves.get(i);
+                if(!Move.isCapture(move) && !Move.isPromotion(move)) {
+                    count++;
+                    continue;
+                }
+                position.makeMove(move);
+                int wdl = tablebase.probeWdl(position);
+                int dtm = tablebase.probeDtm(position);
+                position.unmakeMove(move);
+                if(wdl == Tablebase.UNKNOWN) {
+                    throw new IllegalStateException("Missing table after " + Move.name(move) + " in " + Fen.format(position));
+                }
+                if(wdl == Tablebase.LOSS) {
+                    fastestWin = Math.min(fastestWin, dtm + 1);
+                    noLoss = true;
+                } else if(wdl == Tablebase.WIN) {
+                    floor = Math.max(floor, dtm + 1);
+                } else {
+                    noLoss = true;
+                }
+            }
+            states.set(index, UNKNOWN | count << COUNT_SHIFT | Math.min(floor, MAX_DISTANCE) << FLOOR_SHIFT | (noLoss ? NO_LOSS : 0));
+            if(fastestWin <= MAX_DISTANCE) {
+                candidates[fastestWin].add(index << 1);
+            }
+            if(count == 0 && !noLoss && floor <= MAX_DISTANCE) {
+                candidates[floor].add(index << 1 | 1);
+            }
+        }
+        return candidates;
+    }
+
+    // Takes back the moves leading to the positions level[from..to) decided at distance - 1.
+    // Predecessors decided at distance are returned in the DECIDED list, later candidates by distance.
+    private IntList[] retract(int[] pieces, AtomicIntegerArray states, IntList level, int from, int to, int distance) {
+        IntList[] found = newLevels();
+        int n = pieces.length;
+        int[] squares = new int[n];
+        for(int i = from; i < to; i++) {
+            int index = level.values[i];
+            boolean lost = (states.get(index) & STATE_MASK) == LOSS;
+            int sideToMove = index >>> (6 * n);
+            int mover = sideToMove ^ 1;
+            long occupied = 0;
+            for(int p = 0; p < n; p++) {
+                squares[p] = (index >>> (6 * (n - 1 - p))) & 63;
+                occupied |= 1L << squares[p];
+            }
+            for(int p = 0; p < n; p++) {
+                int piece = pieces[p];
+                if(Piece.colorOf(piece) != mover) {
+                    continue;
+                }
+                int square = squares[p];
+                long origins = origins(piece, square, occupied);
+                int shift = 6 * (n - 1 - p);
+                int base = (index & ~(63 << shift) & ~(1 << (6 * n))) | (mover << (6 * n));
+                while(origins != 0) {
+                    int origin = Long.numberOfTrailingZeros(origins);
+                    origins &= origins - 1;
+                    int predecessor = base | (origin << shift);
+                    if(lost) {
+                        if(decide(states, predecessor, WIN, distance)) {
+                            found[DECIDED].add(predecessor);
+                        }
+                    } else {
+                        int decidedAt = countDown(states, predecessor, distance);
+                        if(decidedAt == distance) {
+                            found[DECIDED].add(predecessor);
+                        } else if(decidedAt > distance) {
+                            found[decidedAt].add(predecessor << 1 | 1);
+                        }
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    // Squares a piece now on square can have come from without capturing.
+    private static long origins(int piece, int square, long occupied) {
+        int type = Piece.typeOf(piece);
+        if(type != Piece.PAWN) {
+            return Attacks.of(type, square, occupied) & ~occupied;
+        }
+        boolean white = Piece.colorOf(piece) == Piece.WHITE;
+        int rank = Square.rank(square);
+        int back = white ? square - 8 : square + 8;
+        if(white ? rank < 2 : rank > 5) {
+            return 0L;
+        }
+        if((occupied & (1L << back)) != 0) {
+            return 0L;
+        }
+        long origins = 1L << back;
+        if(rank == (white ? 3 : 4)) {
+            int start = white ? square - 16 : square + 16;
+            if((occupied & (1L << start)) == 0) {
+                origins |= 1L << start;
+            }
+        }
+        return origins;
+    }
+
+    // Marks an undecided position as won or lost at distance, false if it was already decided.
+    private static boolean decide(AtomicIntegerArray states, int index, int state, int distance) {
+        while(true) {
+            int value = states.get(index);
+            if((value & STATE_MASK) != UNKNOWN || state == LOSS && (value & NO_LOSS) != 0) {
+                return false;
+            }
+            if(states.compareAndSet(index, value, state | distance << DISTANCE_SHIFT)) {
+                return true;
+            }
+        }
+    }
+
+    // One more move of an undecided position is known to lead to a win for the opponent.
+    // Returns the distance the position is lost at once no move is left: distance itself
+    // when it has been decided now, a larger one when a capture makes the loss longer
+    // (then it is only a candidate), or -1 when it is not lost yet.
+    private static int countDown(AtomicIntegerArray states, int index, int distance) {
+        while(true) {
+            int value = states.get(index);
+            if((value & STATE_MASK) != UNKNOWN) {
+                return -1;
+            }
+            int count = (value >>> COUNT_SHIFT) & BYTE;
+            int floor = (value >>> FLOOR_SHIFT) & BYTE;
+            int updated = value - (1 << COUNT_SHIFT);
+            boolean lost = count == 1 && (value & NO_LOSS) == 0;
+            if(lost && floor <= distance) {
+                updated = LOSS | distance << DISTANCE_SHIFT;
+            }
+            if(states.compareAndSet(index, value, updated)) {
+                return !lost ? -1 : floor <= distance ? distance : floor;
+            }
+        }
+    }
+
+    // Places the pieces of an index, false when the position is impossible.
+    private static boolean setPosition(Position position, int[] pieces, int index, int[] squares) {
+        int n = pieces.length;
+        long occupied = 0;
+        for(int p = 0; p < n; p++) {
+            int square = (index >>> (6 * (n - 1 - p))) & 63;
+            int rank = Square.rank(square);
+            if((occupied & (1L << square)) != 0 || Piece.typeOf(pieces[p]) == Piece.PAWN && (rank == 0 || rank == 7)) {
+                return false;
+            }
+            occupied |= 1L << square;
+            squares[p] = square;
+        }
+        position.clear();
+        for(int p = 0; p < n; p++) {
+            position.putPiece(pieces[p], squares[p]);
+        }
+        int sideToMove = index >>> (6 * n);
+        position.setSideToMove(sideToMove);
+        return !position.isAttacked(position.kingSquare(sideToMove ^ 1), sideToMove);
+    }
+
+    private List<IntList[]> run(List<Callable<IntList[]>> tasks) {
+        List<IntList[]> results = new ArrayList<IntList[]>();
+        try {
+            for(Future<IntList[]> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Tablebase generation interrupted", e);
+        } catch(ExecutionException e) {
+            throw new IllegalStateException("Tablebase generation failed", e.getCause());
+        }
+        return results;
+    }
+
+    private static IntList[] merge(List<IntList[]> parts) {
+        IntList[] merged = newLevels();
+        for(IntList[] part : parts) {
+            for(int d = 0; d < merged.length; d++) {
+                merged[d].addAll(part[d]);
+            }
+        }
+        return merged;
+    }
+
+    private static boolean hasCandidates(IntList[] candidates, int from) {
+        for(int d = from; d < candidates.length; d++) {
+            if(candidates[d].size > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static IntList[] newLevels() {
+        IntList[] levels = new IntList[MAX_DISTANCE + 2];
+        for(int d = 0; d < levels.length; d++) {
+            levels[d] = new IntList();
+        }
+        return levels;
+    }
+
+    private boolean exists(String name) {
+        Path directory = tablebase.getDirectory();
+        return Files.isRegularFile(directory.resolve(name + Tablebase.WDL_SUFFIX))
+            && Files.isRegularFile(directory.resolve(name + Tablebase.DTM_SUFFIX));
+    }
+
+    private static String canonical(String name) {
+        int separator = name.indexOf('v');
+        if(separator < 0) {
+            throw new IllegalArgumentException("Table names look like KQvK: " + name);
+        }
+        return Tablebase.name(name.substring(0, separator), name.substring(separator + 1));
+    }
+
+    private static void write(Path file, byte[] data) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while(buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    // Growable list of ints, a List<Integer> would box the millions of indexes.
+    private static final class IntList {
+        int[] values = new int[16];
+        int size;
+
+        void add(int value) {
+            if(size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(IntList other) {
+            if(size + other.size > values.length) {
+                values = Arrays.copyOf(values, Math.max(size + other.size, size * 2));
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+    }
+}
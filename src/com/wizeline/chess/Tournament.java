@@ -0,0 +1,434 @@
+package com.wizeline.chess;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+Self-play match between two configurations of the ComputerPlayer, A and B, to tell whether
+a change makes the computer stronger. Every opening of the suite is played twice with the
+colors swapped. The games run concurrently, one per worker thread, each worker with its
+own pair of players; the moves go through a GameEngine, which rejects illegal ones and
+reports mate, stalemate and threefold repetition. The runner also adjudicates the 50-move
+rule, insufficient material (no pawns, rooks or queens and at most one minor piece) and
+games longer than MAX_GAME_PLIES as draws.
+
+Every finished game is printed at once with the running score of A, its Elo difference
+with the 95% margin and, with an SPRT, the log-likelihood ratio. The sequential probability
+ratio test weighs H0 "A is elo0 stronger than B" against H1 "A is elo1 stronger" with the
+normal approximation of the score (as Fishtest does, logistic Elo) and stops the match as
+soon as the ratio leaves the bounds given by alpha and beta; the games in flight are still
+counted. The summary adds the games per hour per core (the workers times the search
+threads of a player).
+
+Budgets by nodes or depth make the result independent of how busy the machine is; with
+movetime the workers should not outnumber the cores.
+
+Run it with:
+    java com.wizeline.chess.Tournament --a=<player> --b=<player> [--openings=<file>] [--games=<n>]
+        [--concurrency=<n>] [--sprt=<elo0>,<elo1>] [--alpha=0.05] [--beta=0.05]
+where a player is a list of depth=<n>, nodes=<n>, movetime=<ms>, hash=<MB>, threads=<n> and
+book=<file>, for example --a=nodes=20000,hash=4 --b=nodes=10000,hash=4. The openings file
+has one FEN or EPD record per line (operations after the four EPD fields are ignored, lines
+starting with # are skipped); without it RANDOM_OPENINGS openings of RANDOM_OPENING_PLIES
+random plies are used. It exits with code 1 when a move was rejected.
+*/
+public final class Tournament {
+    public static final int MAX_GAME_PLIES = 600;
+    public static final int RANDOM_OPENINGS = 500;
+    public static final int RANDOM_OPENING_PLIES = 4;
+
+    private final List<String> openings;
+    private final String playerA;
+    private final String playerB;
+    private final int maxGames;
+    private final int searchThreads;
+    private final Sprt sprt;
+    private final PrintStream out;
+    private final AtomicInteger nextGame = new AtomicInteger();
+
+    // Results of A, guarded by this.
+    private int wins;
+    private int losses;
+    private int draws;
+    private int illegalMoves;
+    private volatile boolean stopped;
+    private String verdict;
+
+    public Tournament(List<String> openings, String playerA, String playerB, int maxGames, Sprt sprt, PrintStream out) {
+        if(openings.isEmpty()) {
+            throw new IllegalArgumentException("No openings");
+        }
+        // Builds the players once to reject invalid specifications before any game starts.
+        ComputerPlayer a = player(playerA);
+        ComputerPlayer b = player(playerB);
+        this.searchThreads = Math.max(a.getThreads(), b.getThreads());
+        a.shutdown();
+        b.shutdown();
+        this.openings = openings;
+        this.playerA = playerA;
+        this.playerB = playerB;
+        this.maxGames = maxGames;
+        this.sprt = sprt;
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String a = null;
+        String b = null;
+        String openingsFile = null;
+        int games = 1000;
+        int concurrency = Runtime.getRuntime().availableProcessors();
+        String sprtBounds = null;
+        double alpha = 0.05;
+        double beta = 0.05;
+        for(String arg : args) {
+            if(arg.startsWith("--a=")) {
+                a = arg.substring("--a=".length());
+            } else if(arg.startsWith("--b=")) {
+                b = arg.substring("--b=".length());
+            } else if(arg.startsWith("--openings=")) {
+                openingsFile = arg.substring("--openings=".length());
+            } else if(arg.startsWith("--games=")) {
+                games = Integer.parseInt(arg.substring("--games=".length()));
+            } else if(arg.startsWith("--concurrency=")) {
+                concurrency = Integer.parseInt(arg.substring("--concurrency=".length()));
+            } else if(arg.startsWith("--sprt=")) {
+                sprtBounds = arg.substring("--sprt=".length());
+            } else if(arg.startsWith("--alpha=")) {
+                alpha = Double.parseDouble(arg.substring("--alpha=".length()));
+            } else if(arg.startsWith("--beta=")) {
+                beta = Double.parseDouble(arg.substring("--beta=".length()));
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+        if(a == null || b == null) {
+            System.out.println("Usage: java com.wizeline.chess.Tournament --a=<player> --b=<player> [--openings=<file>]"
+                + " [--games=<n>] [--concurrency=<n>] [--sprt=<elo0>,<elo1>] [--alpha=0.05] [--beta=0.05]");
+            System.exit(2);
+        }
+        Sprt sprt = null;
+        if(sprtBounds != null) {
+            String[] bounds = sprtBounds.split(",");
+            sprt = new Sprt(Double.parseDouble(bounds[0]), Double.parseDouble(bounds[1]), alpha, beta);
+        }
+        List<String> openings = openingsFile == null ? randomOpenings(RANDOM_OPENINGS, RANDOM_OPENING_PLIES, new Random(1))
+            : readOpenings(openingsFile);
+        Tournament tournament = new Tournament(openings, a, b, games, sprt, System.out);
+        tournament.run(concurrency);
+        if(tournament.getIllegalMoves() > 0) {
+            System.exit(1);
+        }
+    }
+
+    // Plays the games on the given number of worker threads and prints the summary.
+    public void run(int concurrency) throws InterruptedException {
+        out.println(String.format("A: %s, B: %s, %d openings, up to %d games on %d workers%s", playerA, playerB,
+            openings.size(), maxGames, concurrency, sprt == null ? "" : ", " + sprt));
+        final CountDownLatch done = new CountDownLatch(concurrency);
+        long start = System.nanoTime();
+        for(int i = 0; i < concurrency; i++) {
+            Thread worker = new Thread(new Runnable() {
+                public void run() {
+                    ComputerPlayer a = player(playerA);
+                    ComputerPlayer b = player(playerB);
+                    try {
+                        int game;
+                        while(!stopped && (game = nextGame.getAndIncrement()) < maxGames) {
+                            play(game, a, b);
+                        }
+                    } finally {
+                        a.shutdown();
+                        b.shutdown();
+                        done.countDown();
+                    }
+                }
+            }, "Tournament worker " + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+        done.await();
+        double hours = (System.nanoTime() - start) / 3.6e12;
+        int cores = concurrency * searchThreads;
+        synchronized(this) {
+            int games = wins + losses + draws;
+            out.println(String.format("Finished %d games: A %s", games, score()));
+            out.println(verdict != null ? verdict : sprt == null ? "No SPRT" : "SPRT inconclusive");
+            out.println(String.format("%.1f games/hour/core (%d games in %.1f s on %d cores)", games / hours / cores,
+                games, hours * 3600, cores));
+        }
+    }
+
+    public synchronized int getWins() {
+        return wins;
+    }
+
+    public synchronized int getLosses() {
+        return losses;
+    }
+
+    public synchronized int getDraws() {
+        return draws;
+    }
+
+    public synchronized int getIllegalMoves() {
+        return illegalMoves;
+    }
+
+    // The SPRT verdict, null while no bound was reached or without an SPRT.
+    public synchronized String getVerdict() {
+        return verdict;
+    }
+
+    // Plays game number n: opening n / 2, A has white in even games.
+    private void play(int n, ComputerPlayer a, ComputerPlayer b) {
+        a.getTranspositionTable().clear();
+        b.getTranspositionTable().clear();
+        GameEngine engine = new GameEngine(openings.get(n / 2 % openings.size()));
+        boolean aWhite = n % 2 == 0;
+        String reason;
+        int plies = 0;
+        while((reason = adjudicate(engine, plies)) == null) {
+            ComputerPlayer mover = (engine.getSideToMove() == Piece.WHITE) == aWhite ? a : b;
+            int move = mover.think(engine.getPosition(), null).getBestMove();
+            if(!engine.applyMove(move)) {
+                reason = "illegal move " + Move.name(move) + " by " + (mover == a ? "A" : "B");
+                break;
+            }
+            plies++;
+        }
+        // The side to move lost when it is mated or tried an illegal move, which was not played.
+        double whiteScore = 0.5;
+        if(engine.status() == GameStatus.CHECKMATE || reason.startsWith("illegal")) {
+            whiteScore = engine.getSideToMove() == Piece.WHITE ? 0 : 1;
+        }
+        record(n, aWhite, aWhite ? whiteScore : 1 - whiteScore, reason, plies);
+    }
+
+    private synchronized void record(int n, boolean aWhite, double scoreA, String reason, int plies) {
+        if(scoreA == 1) {
+            wins++;
+        } else if(scoreA == 0) {
+            losses++;
+        } else {
+            draws++;
+        }
+        if(reason.startsWith("illegal")) {
+            illegalMoves++;
+        }
+        String line = String.format("Game %d (opening %d, A %s): %s %s in %d plies | A %s", n + 1, n / 2 % openings.size() + 1,
+            aWhite ? "white" : "black", scoreA == 1 ? "A wins" : scoreA == 0 ? "B wins" : "draw", reason, plies, score());
+        if(sprt != null) {
+            double llr = sprt.llr(wins, draws, losses);
+            line += String.format(" | LLR %.2f [%.2f, %.2f]", llr, sprt.lowerBound(), sprt.upperBound());
+            if(verdict == null && llr >= sprt.upperBound()) {
+                verdict = String.format("SPRT accepted H1: A is at least %.1f Elo stronger", sprt.elo1);
+            } else if(verdict == null && llr <= sprt.lowerBound()) {
+                verdict = String.format("SPRT accepted H0: A is not more than %.1f Elo stronger", sprt.elo0);
+            }
+            stopped = verdict != null;
+        }
+        out.println(line);
+        out.flush();
+    }
+
+    // Wins, losses and draws of A and its Elo difference with the 95% margin.
+    private String score() {
+        int games = wins + losses + draws;
+        double mean = games == 0 ? 0.5 : (wins + draws / 2.0) / games;
+        double margin = games == 0 ? 0 : 1.96 * Math.sqrt(variance(wins, draws, losses) / games);
+        double low = elo(mean - margin);
+        double high = elo(mean + margin);
+        return String.format("+%d -%d =%d, score %.1f%%, Elo %.1f +/- %.1f", wins, losses, draws, mean * 100,
+            elo(mean), (high - low) / 2);
+    }
+
+    // Why the game is over, or null while it goes on.
+    private static String adjudicate(GameEngine engine, int plies) {
+        switch(engine.status()) {
+            case CHECKMATE:
+                return "checkmate";
+            case STALEMATE:
+                return "stalemate";
+            case THREEFOLD_REPETITION:
+                return "threefold repetition";
+            default:
+                break;
+        }
+        Position position = engine.getPosition();
+        if(position.getHalfmoveClock() >= 100) {
+            return "50-move rule";
+        }
+        if(isInsufficientMaterial(position)) {
+            return "insufficient material";
+        }
+        return plies >= MAX_GAME_PLIES ? "maximum length" : null;
+    }
+
+    // Neither side can mate: no pawns, rooks or queens and at most one bishop or knight.
+    static boolean isInsufficientMaterial(Position position) {
+        long heavy = 0;
+        long minors = 0;
+        for(int color = Piece.WHITE; color <= Piece.BLACK; color++) {
+            heavy |= position.bitboard(color, Piece.PAWN) | position.bitboard(color, Piece.ROOK)
+                | position.bitboard(color, Piece.QUEEN);
+            minors |= position.bitboard(color, Piece.KNIGHT) | position.bitboard(color, Piece.BISHOP);
+        }
+        return heavy == 0 && Long.bitCount(minors) <= 1;
+    }
+
+    // A computer player from a specification such as "nodes=20000,hash=4".
+    static ComputerPlayer player(String specification) {
+        SearchLimits limits = new SearchLimits();
+        int hash = ComputerPlayer.DEFAULT_HASH_MEGABYTES;
+        int threads = 1;
+        String book = null;
+        boolean limited = false;
+        for(String setting : specification.split(",")) {
+            int equals = setting.indexOf('=');
+            String name = equals < 0 ? setting : setting.substring(0, equals);
+            String value = equals < 0 ? "" : setting.substring(equals + 1);
+            try {
+                if(name.equals("depth")) {
+                    limits.setDepth(Integer.parseInt(value));
+                    limited = true;
+                } else if(name.equals("nodes")) {
+                    limits.setNodes(Long.parseLong(value));
+                    limited = true;
+                } else if(name.equals("movetime")) {
+                    limits.setTimeMillis(Long.parseLong(value));
+                    limited = true;
+                } else if(name.equals("hash")) {
+                    hash = Integer.parseInt(value);
+                } else if(name.equals("threads")) {
+                    threads = Integer.parseInt(value);
+                } else if(name.equals("book")) {
+                    book = value;
+                } else {
+                    throw new IllegalArgumentException("Unknown player setting " + name + " in " + specification);
+                }
+            } catch(NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid player setting " + setting + " in " + specification, e);
+            }
+        }
+        if(!limited) {
+            throw new IllegalArgumentException("A player needs depth, nodes or movetime: " + specification);
+        }
+        ComputerPlayer player = new ComputerPlayer(hash, threads, limits);
+        if(book != null) {
+            try {
+                player.setOpeningBook(new OpeningBook(Paths.get(book)));
+            } catch(IOException e) {
+                throw new IllegalArgumentException("Cannot open book " + book, e);
+            }
+        }
+        return player;
+    }
+
+    // The FEN or EPD records of a file, as FEN records.
+    public static List<String> readOpenings(String file) throws IOException {
+        List<String> openings = new ArrayList<String>();
+        for(String line : Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8)) {
+            String[] fields = line.trim().split("\\s+");
+            if(fields.length < 4 || fields[0].startsWith("#")) {
+                continue;
+            }
+            String fen = fields[0] + " " + fields[1] + " " + fields[2] + " " + fields[3];
+            if(fields.length >= 6 && fields[4].matches("\\d+") && fields[5].matches("\\d+")) {
+                fen += " " + fields[4] + " " + fields[5];
+            }
+            openings.add(Fen.format(Fen.parse(fen)));
+        }
+        return openings;
+    }
+
+    // Distinct positions after a number of random plies from the initial position, none of them over.
+    public static List<String> randomOpenings(int count, int plies, Random random) {
+        Set<String> openings = new LinkedHashSet<String>();
+        while(openings.size() < count) {
+            GameEngine engine = new GameEngine();
+            for(int ply = 0; ply < plies && !engine.status().isOver(); ply++) {
+                List<String> moves = engine.legalMoves();
+                engine.applyMove(moves.get(random.nextInt(moves.size())));
+            }
+            if(!engine.status().isOver()) {
+                openings.add(engine.getFen());
+            }
+        }
+        return new ArrayList<String>(openings);
+    }
+
+    // Elo difference that gives the expected score, within +/-1200 so a perfect score stays finite.
+    static double elo(double score) {
+        double clamped = Math.max(0.001, Math.min(0.999, score));
+        return 400 * Math.log10(clamped / (1 - clamped));
+    }
+
+    // Variance of the score of one game.
+    static double variance(int wins, int draws, int losses) {
+        int games = wins + draws + losses;
+        if(games == 0) {
+            return 0;
+        }
+        double mean = (wins + draws / 2.0) / games;
+        return (wins * (1 - mean) * (1 - mean) + draws * (0.5 - mean) * (0.5 - mean) + losses * mean * mean) / games;
+    }
+
+    // Sequential probability ratio test of elo0 against elo1, with error rates alpha and beta.
+    public static final class Sprt {
+        private final double elo0;
+        private final double elo1;
+        private final double alpha;
+        private final double beta;
+
+        public Sprt(double elo0, double elo1, double alpha, double beta) {
+            if(elo1 <= elo0) {
+                throw new IllegalArgumentException("elo1 must be above elo0: " + elo0 + ", " + elo1);
+            }
+            this.elo0 = elo0;
+            this.elo1 = elo1;
+            this.alpha = alpha;
+            this.beta = beta;
+        }
+
+        // Log-likelihood ratio of H1 against H0, 0 while the results do not vary.
+        public double llr(int wins, int draws, int losses) {
+            int games = wins + draws + losses;
+            double variance = variance(wins, draws, losses);
+            if(variance == 0) {
+                return 0;
+            }
+            double mean = (wins + draws / 2.0) / games;
+            double score0 = score(elo0);
+            double score1 = score(elo1);
+            return games * (score1 - score0) * (2 * mean - score0 - score1) / (2 * variance);
+        }
+
+        public double lowerBound() {
+            return Math.log(beta / (1 - alpha));
+        }
+
+        public double upperBound() {
+            return Math.log((1 - beta) / alpha);
+        }
+
+        private static double score(double elo) {
+            return 1 / (1 + Math.pow(10, -elo / 400));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("SPRT elo0 %.1f elo1 %.1f alpha %.2f beta %.2f", elo0, elo1, alpha, beta);
+        }
+    }
+}
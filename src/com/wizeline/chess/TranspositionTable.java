@@ -0,0 +1,198 @@
+package com.wizeline.chess;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Fixed-size cache of search results indexed by Zobrist key, shared by all search threads.
+
+The table is one long[] so its memory use is exactly the configured size. Each entry
+takes two longs: the key XOR the data, and the data itself. The data packs
+    bits 0-15  best move (see Move, which fits in 16 bits)
+    bits 16-31 score
+    bits 32-39 depth
+    bits 40-41 bound (UPPER, LOWER or EXACT, never 0 so a stored entry is never 0)
+    bits 42-47 age (search generation)
+Threads read and write entries without locks. When two threads write the same entry at
+the same time the two longs may come from different writes; the XOR of both then does not
+give back the key, so the torn entry is seen as a miss instead of returning wrong data.
+
+Entries are grouped in buckets of four (64 bytes, one cache line). A store replaces the
+entry of the same position if there is one, otherwise the entry whose depth is lowest
+once older generations are penalized, so deep and recent results survive.
+
+Scores are stored as given; adjusting mate scores to the distance from the root is up to
+the caller.
+*/
+public final class TranspositionTable {
+    public static final int UPPER = 1;
+    public static final int LOWER = 2;
+    public static final int EXACT = 3;
+
+    // Returned by probe when the position is not in the table.
+    public static final long NOT_FOUND = 0L;
+
+    private static final int ENTRY_LONGS = 2;
+    private static final int BUCKET_ENTRIES = 4;
+    private static final int BUCKET_LONGS = ENTRY_LONGS * BUCKET_ENTRIES;
+    private static final int AGE_MASK = 63;
+
+    private long[] table;
+    private long bucketCount;
+    private int age;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+
+    public TranspositionTable(int megabytes) {
+        resize(megabytes);
+    }
+
+    // Replaces the table by an empty one of the given size in megabytes.
+    public void resize(int megabytes) {
+        if(megabytes < 1) {
+            throw new IllegalArgumentException("Transposition table size must be at least 1 MB: " + megabytes);
+        }
+        long longs = (long) megabytes * 1024 * 1024 / Long.BYTES;
+        bucketCount = longs / BUCKET_LONGS;
+        if(bucketCount * BUCKET_LONGS > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Transposition table size too large: " + megabytes + " MB");
+        }
+        table = new long[(int) (bucketCount * BUCKET_LONGS)];
+        age = 0;
+        resetStatistics();
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0L);
+        age = 0;
+    }
+
+    public int getSizeMegabytes() {
+        return (int) ((long) table.length * Long.BYTES / (1024 * 1024));
+    }
+
+    // Called when a new search starts, so entries of older searches are replaced first.
+    public void newSearch() {
+        age = (age + 1) & AGE_MASK;
+    }
+
+    // Returns the data stored for the key, or NOT_FOUND.
+    public long probe(long key) {
+        int bucket = bucketIndex(key);
+        for(int i = 0; i < BUCKET_LONGS; i += ENTRY_LONGS) {
+            long data = table[bucket + i + 1];
+            if(data != 0 && (table[bucket + i] ^ data) == key) {
+                hits.increment();
+                return data;
+            }
+        }
+        misses.increment();
+        return NOT_FOUND;
+    }
+
+    public void store(long key, int move, int score, int depth, int bound) {
+        int bucket = bucketIndex(key);
+        int replace = -1;
+        int replaceValue = Integer.MAX_VALUE;
+        long replaceData = 0;
+        for(int i = 0; i < BUCKET_LONGS; i += ENTRY_LONGS) {
+            long data = table[bucket + i + 1];
+            if(data == 0 || (table[bucket + i] ^ data) == key) {
+                replace = i;
+                replaceData = data;
+                break;
+            }
+            int value = depth(data) - 8 * ((age - age(data)) & AGE_MASK);
+            if(value < replaceValue) {
+                replace = i;
+                replaceValue = value;
+                replaceData = data;
+            }
+        }
+        boolean samePosition = replaceData != 0 && (table[bucket + replace] ^ replaceData) == key;
+        if(samePosition) {
+            // Keep the known best move when this result has none, and deeper exact results.
+            if(move == Move.NONE) {
+                move = move(replaceData);
+            }
+            if(bound != EXACT && depth < depth(replaceData) && age(replaceData) == age) {
+                return;
+            }
+        } else if(replaceData != 0) {
+            collisions.increment();
+        }
+        long data = (move & 0xFFFFL)
+            | ((score & 0xFFFFL) << 16)
+            | ((long) Math.min(Math.max(depth, 0), 255) << 32)
+            | ((long) bound << 40)
+            | ((long) age << 42);
+        table[bucket + replace] = key ^ data;
+        table[bucket + replace + 1] = data;
+        stores.increment();
+    }
+
+    public static int move(long data) {
+        return (int) (data & 0xFFFF);
+    }
+
+    public static int score(long data) {
+        return (short) (data >>> 16);
+    }
+
+    public static int depth(long data) {
+        return (int) ((data >>> 32) & 0xFF);
+    }
+
+    public static int bound(long data) {
+        return (int) ((data >>> 40) & 3);
+    }
+
+    private static int age(long data) {
+        return (int) ((data >>> 42) & AGE_MASK);
+    }
+
+    // Permille of sampled entries used by the current search, as reported by UCI engines.
+    public int hashfull() {
+        int sample = (int) Math.min(1000, bucketCount * BUCKET_ENTRIES);
+        int used = 0;
+        for(int i = 0; i < sample; i++) {
+            long data = table[i * ENTRY_LONGS + 1];
+            if(data != 0 && age(data) == age) {
+                used++;
+            }
+        }
+        return sample == 0 ? 0 : used * 1000 / sample;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    // Stores that overwrote the entry of another position.
+    public long getCollisions() {
+        return collisions.sum();
+    }
+
+    public long getStores() {
+        return stores.sum();
+    }
+
+    public void resetStatistics() {
+        hits.reset();
+        misses.reset();
+        collisions.reset();
+        stores.reset();
+    }
+
+    // Multiplies the high half of the key by the bucket count, so any table size is uniform.
+    private int bucketIndex(long key) {
+        return (int) (((key >>> 32) * bucketCount) >>> 32) * BUCKET_LONGS;
+    }
+}
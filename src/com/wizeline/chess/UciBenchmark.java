@@ -0,0 +1,140 @@
+package com.wizeline.chess;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+Responsiveness of Main --uci, run in fresh JVMs started with the classpath of this one:
+- startup: time from starting the JVM until "uciok" is read, against the time an empty
+  main needs to print a line, so the difference is the cost of the engine itself. One
+  more child logs the classes it loads and the benchmark fails if one is from java.awt or
+  javax.swing.
+- stop: "go infinite" on the perft positions, "stop" after STOP_AFTER_MILLIS, and the time
+  until "bestmove" is read. It includes the pipe in both directions.
+The median and worst of the runs are printed.
+
+Run it with:
+    java com.wizeline.chess.UciBenchmark [runs]
+It exits with code 1 when AWT or Swing was loaded.
+*/
+public final class UciBenchmark {
+    private static final long STOP_AFTER_MILLIS = 300;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if(args.length > 0 && args[0].equals("--empty")) {
+            System.out.println("ready");
+            return;
+        }
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+
+        long[] empty = new long[runs];
+        long[] engine = new long[runs];
+        for(int run = 0; run < runs; run++) {
+            long start = System.nanoTime();
+            Child child = new Child(UciBenchmark.class.getName(), "--empty");
+            child.readUntil("ready");
+            empty[run] = System.nanoTime() - start;
+            child.finish();
+
+            start = System.nanoTime();
+            child = new Child(Main.class.getName(), "--uci");
+            child.send("uci");
+            child.readUntil("uciok");
+            engine[run] = System.nanoTime() - start;
+            child.send("quit");
+            child.finish();
+        }
+        Child child = new Child("-verbose:class", Main.class.getName(), "--uci");
+        child.send("uci");
+        boolean awtLoaded = child.readUntil("uciok");
+        child.send("quit");
+        child.finish();
+        print("empty main", empty);
+        print("uciok", engine);
+        System.out.println(String.format("%-12s median %7.2f ms", "engine cost", (median(engine) - median(empty)) / 1e6));
+
+        long[] stop = new long[Perft.REFERENCE_POSITIONS.length * runs];
+        Child engineProcess = new Child(Main.class.getName(), "--uci");
+        engineProcess.send("isready");
+        engineProcess.readUntil("readyok");
+        for(int i = 0; i < stop.length; i++) {
+            engineProcess.send("position fen " + Perft.REFERENCE_POSITIONS[i % Perft.REFERENCE_POSITIONS.length][0]);
+            engineProcess.send("go infinite");
+            Thread.sleep(STOP_AFTER_MILLIS);
+            long start = System.nanoTime();
+            engineProcess.send("stop");
+            engineProcess.readUntil("bestmove");
+            stop[i] = System.nanoTime() - start;
+        }
+        engineProcess.send("quit");
+        engineProcess.finish();
+        print("stop", stop);
+
+        if(awtLoaded) {
+            System.out.println("FAIL: AWT or Swing classes were loaded in UCI mode");
+            System.exit(1);
+        }
+    }
+
+    // A JVM started with the classpath of this one, whose output includes its errors.
+    private static final class Child {
+        private final Process process;
+        private final BufferedReader output;
+
+        Child(String... arguments) throws IOException {
+            String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+            String[] command = new String[arguments.length + 3];
+            command[0] = java;
+            command[1] = "-cp";
+            command[2] = System.getProperty("java.class.path");
+            System.arraycopy(arguments, 0, command, 3, arguments.length);
+            process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.US_ASCII));
+        }
+
+        void send(String command) throws IOException {
+            OutputStream input = process.getOutputStream();
+            input.write((command + "\n").getBytes(StandardCharsets.US_ASCII));
+            input.flush();
+        }
+
+        // Reads up to a line starting with the prefix, returns whether an AWT or Swing class was
+        // reported loaded on the way.
+        boolean readUntil(String prefix) throws IOException {
+            boolean awtLoaded = false;
+            String line;
+            while((line = output.readLine()) != null) {
+                if(line.startsWith(prefix)) {
+                    return awtLoaded;
+                }
+                awtLoaded |= line.contains(" java.awt.") || line.contains(" javax.swing.");
+            }
+            throw new IllegalStateException("Process ended before " + prefix);
+        }
+
+        // Reads the rest of the output and waits for the end of the process.
+        void finish() throws IOException, InterruptedException {
+            while(output.readLine() != null) {
+            }
+            process.waitFor();
+        }
+    }
+
+    private static void print(String name, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        System.out.println(String.format("%-12s median %7.2f ms, max %7.2f ms (%d runs)", name,
+            median(nanos) / 1e6, sorted[sorted.length - 1] / 1e6, nanos.length));
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,367 @@
+package com.wizeline.chess;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+/*
+The Universal Chess Interface, so the computer player can be run by tournament managers and
+analysis programs (Main --uci). Like ConsoleGame it reads one command per line and never
+touches AWT or Swing. The player, its transposition table and the move generator tables are
+only built by the first command that needs them (usually isready, which the controller sends
+to wait for that), so "uci" is answered as soon as the JVM has started and the options set
+before are applied without building anything twice.
+Supported commands:
+    uci, isready, ucinewgame, quit
+    position startpos|fen <record> [moves <move>...]
+    go [wtime <ms>] [btime <ms>] [winc <ms>] [binc <ms>] [movestogo <n>] [movetime <ms>]
+       [depth <n>] [nodes <n>] [mate <n>] [infinite]
+    stop
+    setoption name Hash|Threads value <n>
+Other commands are answered with an "info string" and otherwise ignored.
+
+The thread calling run only reads and handles commands; go starts the search with
+ComputerPlayer.thinkInBackground and returns at once, so stop is read while the search runs
+and ends it within a few hundred nodes. Every completed iteration is reported as an "info"
+line and the result as "bestmove", both written by the search thread. After "go infinite"
+the best move is held back until stop, as the protocol requires. A command that changes the
+position or the player while a search runs stops it first.
+*/
+public final class UciProtocol {
+    public static final String NAME = "Wizeline Chess";
+    public static final String AUTHOR = "Wizeline";
+    private static final int MAX_HASH_MEGABYTES = 4096;
+    private static final int MAX_THREADS = 256;
+
+    private final BufferedReader input;
+    private final PrintStream output;
+    private final MoveList moves = new MoveList();
+    private int hashMegabytes;
+    private int threads;
+    private OpeningBook book;
+    private Tablebase tablebase;
+    // Built by player(), the player is only replaced while no search runs.
+    private Position position;
+    private volatile ComputerPlayer player;
+
+    // State of the search, guarded by this.
+    private boolean searching;
+    private boolean infinite;
+    private boolean stopRequested;
+    private SearchResult heldResult;
+
+    private final Executor searchThread = new Executor() {
+        public void execute(Runnable runnable) {
+            runnable.run();
+        }
+    };
+
+    public UciProtocol(int hashMegabytes, int threads, InputStream input, PrintStream output) {
+        this.hashMegabytes = hashMegabytes;
+        this.threads = threads;
+        this.input = new BufferedReader(new InputStreamReader(input));
+        this.output = output;
+    }
+
+    // Sets the book the player consults before searching, null to always search.
+    public void setOpeningBook(OpeningBook book) {
+        this.book = book;
+    }
+
+    // Sets the tablebases the player consults before searching, null to always search.
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    public void run() throws IOException {
+        try {
+            String line;
+            while((line = input.readLine()) != null) {
+                String[] tokens = line.trim().split("\\s+");
+                if(tokens[0].isEmpty()) {
+                    continue;
+                }
+                if(tokens[0].equals("quit")) {
+                    break;
+                }
+                handle(tokens);
+            }
+        } finally {
+            waitForSearch();
+            if(player != null) {
+                player.shutdown();
+            }
+        }
+    }
+
+    private void handle(String[] tokens) {
+        String command = tokens[0];
+        if(command.equals("uci")) {
+            send("id name " + NAME);
+            send("id author " + AUTHOR);
+            send("option name Hash type spin default " + ComputerPlayer.DEFAULT_HASH_MEGABYTES + " min 1 max " + MAX_HASH_MEGABYTES);
+            send("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+            send("uciok");
+        } else if(command.equals("isready")) {
+            player();
+            send("readyok");
+        } else if(command.equals("ucinewgame")) {
+            waitForSearch();
+            player().getTranspositionTable().clear();
+        } else if(command.equals("setoption")) {
+            waitForSearch();
+            setOption(tokens);
+        } else if(command.equals("position")) {
+            waitForSearch();
+            setPosition(tokens);
+        } else if(command.equals("go")) {
+            waitForSearch();
+            go(tokens);
+        } else if(command.equals("stop")) {
+            stop();
+        } else if(!command.equals("debug") && !command.equals("ponderhit")) {
+            send("info string Unknown command: " + command);
+        }
+    }
+
+    // setoption name <name> value <value>; names and values may not contain spaces here.
+    private void setOption(String[] tokens) {
+        int nameIndex = indexOf(tokens, "name", 1) + 1;
+        int valueIndex = indexOf(tokens, "value", nameIndex) + 1;
+        if(nameIndex == 0 || valueIndex == 0 || valueIndex >= tokens.length) {
+            send("info string Malformed option: " + String.join(" ", tokens));
+            return;
+        }
+        String name = tokens[nameIndex];
+        int value;
+        try {
+            value = Integer.parseInt(tokens[valueIndex]);
+        } catch(NumberFormatException e) {
+            send("info string Invalid value for " + name + ": " + tokens[valueIndex]);
+            return;
+        }
+        if(name.equalsIgnoreCase("Hash")) {
+            hashMegabytes = Math.max(1, Math.min(value, MAX_HASH_MEGABYTES));
+            if(player != null) {
+                player.getTranspositionTable().resize(hashMegabytes);
+            }
+        } else if(name.equalsIgnoreCase("Threads")) {
+            int count = Math.max(1, Math.min(value, MAX_THREADS));
+            if(count != threads && player != null) {
+                player.shutdown();
+                player = null;
+            }
+            threads = count;
+        } else {
+            send("info string Unknown option: " + name);
+        }
+    }
+
+    // position startpos|fen <record> [moves <move>...]; an invalid record or move is reported and
+    // the position is left at the last valid one.
+    private void setPosition(String[] tokens) {
+        player();
+        int movesIndex = indexOf(tokens, "moves", 1);
+        int end = movesIndex < 0 ? tokens.length : movesIndex;
+        if(tokens.length > 1 && tokens[1].equals("startpos")) {
+            Fen.load(position, Fen.START_POSITION);
+        } else if(tokens.length > 2 && tokens[1].equals("fen")) {
+            try {
+                position.copyFrom(Fen.parse(String.join(" ", Arrays.copyOfRange(tokens, 2, end))));
+            } catch(IllegalArgumentException e) {
+                send("info string Invalid FEN: " + e.getMessage());
+                return;
+            }
+        } else {
+            send("info string Malformed position: " + String.join(" ", tokens));
+            return;
+        }
+        for(int i = end + 1; i < tokens.length; i++) {
+            int move = findMove(tokens[i]);
+            if(move == Move.NONE) {
+                send("info string Illegal move: " + tokens[i]);
+                return;
+            }
+            position.makeMove(move);
+        }
+    }
+
+    private int findMove(String text) {
+        MoveGenerator.generateLegal(position, moves);
+        for(int i = 0; i < moves.size(); i++) {
+            if(Move.name(moves.get(i)).equals(text)) {
+                return moves.get(i);
+            }
+        }
+        return Move.NONE;
+    }
+
+    private void go(String[] tokens) {
+        long[] clock = new long[4];
+        int movesToGo = 0;
+        long moveTime = 0;
+        int depth = 0;
+        int mate = 0;
+        long nodes = 0;
+        boolean searchInfinite = false;
+        try {
+            for(int i = 1; i < tokens.length; i++) {
+                String token = tokens[i];
+                if(token.equals("infinite")) {
+                    searchInfinite = true;
+                } else if(i + 1 < tokens.length) {
+                    int clockIndex = Arrays.asList("wtime", "btime", "winc", "binc").indexOf(token);
+                    if(clockIndex >= 0) {
+                        clock[clockIndex] = Long.parseLong(tokens[++i]);
+                    } else if(token.equals("movestogo")) {
+                        movesToGo = Integer.parseInt(tokens[++i]);
+                    } else if(token.equals("movetime")) {
+                        moveTime = Long.parseLong(tokens[++i]);
+                    } else if(token.equals("depth")) {
+                        depth = Integer.parseInt(tokens[++i]);
+                    } else if(token.equals("mate")) {
+                        mate = Integer.parseInt(tokens[++i]);
+                    } else if(token.equals("nodes")) {
+                        nodes = Long.parseLong(tokens[++i]);
+                    }
+                }
+            }
+        } catch(NumberFormatException e) {
+            send("info string Malformed go: " + String.join(" ", tokens));
+            return;
+        }
+
+        int side = position.getSideToMove();
+        long remaining = clock[side == Piece.WHITE ? 0 : 1];
+        SearchLimits limits;
+        if(searchInfinite) {
+            limits = new SearchLimits();
+        } else if(moveTime > 0) {
+            limits = SearchLimits.time(moveTime);
+        } else if(remaining > 0) {
+            limits = SearchLimits.clock(remaining, clock[side == Piece.WHITE ? 2 : 3], movesToGo);
+        } else {
+            limits = new SearchLimits();
+        }
+        if(depth > 0) {
+            limits.setDepth(depth);
+        } else if(mate > 0) {
+            limits.setDepth(2 * mate - 1);
+        }
+        limits.setNodes(nodes);
+
+        synchronized(this) {
+            searching = true;
+            infinite = searchInfinite;
+            stopRequested = false;
+            heldResult = null;
+        }
+        final ComputerPlayer searchPlayer = player();
+        searchPlayer.setLimits(limits);
+        searchPlayer.thinkInBackground(position, new SearchListener() {
+            public void iterationCompleted(SearchResult result) {
+                send(info(result));
+            }
+
+            public void searchFinished(SearchResult result) {
+                finished(result);
+            }
+        }, searchThread);
+    }
+
+    // The player and the position, built when first needed with the options set so far.
+    private ComputerPlayer player() {
+        if(player == null) {
+            if(position == null) {
+                position = Fen.parse(Fen.START_POSITION);
+            }
+            ComputerPlayer created = new ComputerPlayer(hashMegabytes, threads, new SearchLimits());
+            created.setOpeningBook(book);
+            created.setTablebase(tablebase);
+            player = created;
+        }
+        return player;
+    }
+
+    private synchronized void finished(SearchResult result) {
+        if(result.isBookMove() || result.isTablebaseMove()) {
+            send(info(result));
+        }
+        if(infinite && !stopRequested) {
+            heldResult = result;
+        } else {
+            sendBestMove(result);
+        }
+    }
+
+    private synchronized void stop() {
+        if(!searching) {
+            return;
+        }
+        stopRequested = true;
+        player.stop();
+        if(heldResult != null) {
+            sendBestMove(heldResult);
+        }
+    }
+
+    // Stops a running search and waits until its best move was sent.
+    private synchronized void waitForSearch() {
+        stop();
+        boolean interrupted = false;
+        while(searching) {
+            try {
+                wait();
+            } catch(InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if(interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sendBestMove(SearchResult result) {
+        int[] line = result.getPrincipalVariation();
+        send("bestmove " + Move.name(result.getBestMove()) + (line.length > 1 ? " ponder " + Move.name(line[1]) : ""));
+        searching = false;
+        heldResult = null;
+        notifyAll();
+    }
+
+    // The "info" line of an iteration, or of a move from the book or the tablebases.
+    static String info(SearchResult result) {
+        if(result.isBookMove()) {
+            return "info string book move " + Move.name(result.getBestMove());
+        }
+        StringBuilder text = new StringBuilder("info");
+        if(!result.isTablebaseMove()) {
+            text.append(" depth ").append(result.getDepth());
+        }
+        text.append(result.isMate() ? " score mate " + result.getMateIn() : " score cp " + result.getScore());
+        if(!result.isTablebaseMove()) {
+            text.append(" nodes ").append(result.getNodes())
+                .append(" nps ").append(result.getNodesPerSecond())
+                .append(" time ").append(result.getTimeMillis());
+        }
+        return text.append(" pv ").append(result.principalVariationText()).toString();
+    }
+
+    private void send(String line) {
+        output.println(line);
+        output.flush();
+    }
+
+    private static int indexOf(String[] tokens, String token, int from) {
+        for(int i = from; i < tokens.length; i++) {
+            if(tokens[i].equals(token)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
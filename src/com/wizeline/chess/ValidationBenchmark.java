@@ -0,0 +1,68 @@
+package com.wizeline.chess;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/*
+Scaling of BatchValidator. The given PGN file, or a generated corpus of random games, is
+validated with 1, 2, 4, ... threads up to the number of cores (or the given maximum) and
+the games per second and speedup over one thread are printed. Every run validates the
+whole file after a warm-up pass that also brings the file into the page cache.
+
+Run it with:
+    java com.wizeline.chess.ValidationBenchmark [file.pgn] [maxThreads]
+    java com.wizeline.chess.ValidationBenchmark --games=<n> [maxThreads]
+*/
+public final class ValidationBenchmark {
+    private static final int DEFAULT_GAMES = 50000;
+
+    public static void main(String[] args) throws IOException {
+        Path file = null;
+        int games = DEFAULT_GAMES;
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        for(String arg : args) {
+            if(arg.startsWith("--games=")) {
+                games = Integer.parseInt(arg.substring("--games=".length()));
+            } else if(file == null && !arg.matches("\\d+")) {
+                file = Paths.get(arg);
+            } else {
+                maxThreads = Integer.parseInt(arg);
+            }
+        }
+        boolean generated = file == null;
+        if(generated) {
+            file = Files.createTempFile("games", ".pgn");
+            PgnBenchmark.writeRandomGames(file, games, new Random(1));
+        }
+
+        try {
+            System.out.println("Validating " + Files.size(file) + " bytes ("
+                + Runtime.getRuntime().availableProcessors() + " cores)");
+            BatchValidator warmup = new BatchValidator(maxThreads);
+            warmup.validate(file, null);
+            warmup.shutdown();
+
+            double baseline = 0;
+            for(int threads = 1; threads <= maxThreads; threads = threads < maxThreads && threads * 2 > maxThreads ? maxThreads : threads * 2) {
+                BatchValidator validator = new BatchValidator(threads);
+                long start = System.nanoTime();
+                PgnStatistics statistics = validator.validate(file, null);
+                long nanos = System.nanoTime() - start;
+                validator.shutdown();
+                double gamesPerSecond = (statistics.getGames() + statistics.getRejectedGames()) * 1e9 / nanos;
+                if(threads == 1) {
+                    baseline = gamesPerSecond;
+                }
+                System.out.println(String.format("%3d threads: %7d ms, %9.0f games/s, speedup %.2f  (%s)",
+                    threads, nanos / 1000000L, gamesPerSecond, gamesPerSecond / baseline, statistics));
+            }
+        } finally {
+            if(generated) {
+                Files.delete(file);
+            }
+        }
+    }
+}
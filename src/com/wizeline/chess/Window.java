@@ -1,20 +1,12 @@
 package com.wizeline.chess;
 
-import com.sun.org.apache.xpath.internal.SourceTree;
-
-import java.lang.*;
-
 import java.awt.BorderLayout;
 import java.awt.FlowLayout;
 import java.awt.event.*;
-import java.lang.reflect.Array;
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.concurrent.Executor;
 
 import javax.swing.*;
 
-import static com.sun.java.accessibility.util.AWTEventMonitor.addMouseListener;
-
 /*
 The Window class handles the User Interface. It is divided in two sections:
 - The chess board which is handle by the Board class.
@@ -23,13 +15,24 @@ The Window class handles the User Interface. It is divided in two sections:
   
 To handle the input from the input text field (when the Enter/Return key is pressed or
 the Submit button is clicked) modify the actionPerformed method from the private class InputActionListener.
+The Undo and Redo buttons take moves back and play them again through the GameEngine.
+
+The computer thinks on its own thread (ComputerPlayer.thinkInBackground), never on the
+event dispatch thread, so the window keeps painting and answering while it does. Each
+completed iteration is shown in outputLabel through SwingUtilities.invokeLater and the Stop
+button makes it play the best move found so far. The game does not change while it
+thinks: moves typed and the undo buttons wait for its move.
  
 To display information such as whose turn it is, if a player is in check, error messages and more
 use the JLabel outputLabel. To modify its value use its method setText(String).
 
+The rules of the game are enforced by a GameEngine, which does not depend on Swing. The
+Window class is one client of it: it passes the text typed by the players to the engine
+and shows the outcome, and its Board draws the position held by the engine.
+
 The Window class contains an instance from the Board class.
 The Board class is used to draw the board and the pieces according to the values of its
-public HashMap<String, String> variable "pieces" which must contain a key for every
+public Map<String, String> variable "pieces" (a view over its Position) which must contain a key for every
 active piece on the board. The key corresponds to a board coordinate (example: a1, f5,
 etc.), the value corresponding to that key must be the piece that lives on that square.
 A piece is represented by a string composed of the color of the piece (b or w) followed
@@ -44,7 +47,7 @@ P - Pawn
 You are expected to ask the user for their next movement (example: a2a4, will move the
 piece in a2 to the tile a4), and redraw the board after every successfully state change
 on the board. The Board class has a public method draw() that will draw the pieces according
-to how they are in the public HashMap<String, String> variable "pieces".
+to how they are in the public Map<String, String> variable "pieces".
 
 Remember, we'll evaluate both design and implementation, even when implementing many
 parts of the game is good, it's better to have a solid design.
@@ -67,74 +70,33 @@ Some rules to remember:
 */
 
 public class Window{
+    private final GameEngine engine;
+    private final ComputerPlayer[] computerPlayers = new ComputerPlayer[2];
     private Board board;
     private JPanel bottomPanel;
     private JButton submitButton;
+    private JButton undoButton;
+    private JButton redoButton;
+    private JButton stopButton;
+    // The computer player thinking in the background, null when none is.
+    private ComputerPlayer thinking;
     private JFrame frame;
     
     public JLabel outputLabel;
     public JTextField textField;
-    public boolean current;
-
-    public void addRook()
-    {
-        board.pieces.put("a8", "bR");
-        board.pieces.put( "h8", "bR");
-        board.pieces.put( "a1","wR" );
-        board.pieces.put( "h1" ,"wR");
-        addKnight();
-    }
-
-    public void addKnight()
-    {
-        board.pieces.put( "b8" ,"bN");
-        board.pieces.put( "g8" ,"bN");
-        board.pieces.put( "b1" ,"wN");
-        board.pieces.put( "g1" ,"wN");
-        addBishop();
-    }
-
-    public void addBishop()
-    {
-        board.pieces.put( "c8" ,"bB");
-        board.pieces.put( "f8" ,"bB");
-        board.pieces.put( "c1" ,"wB");
-        board.pieces.put( "f1" ,"wB");
-        addKingQueen();
-    }
-
-    public void addKingQueen()
-    {
-        board.pieces.put( "d8" ,"bQ");
-        board.pieces.put( "e8" ,"bK");
-        board.pieces.put( "e1" ,"wQ");
-        board.pieces.put( "d1" ,"wK");
-        addPawn();
-    }
 
-    public void addPawn()
-    {
-        for(int i=97;i<=104;i++)
-        {
-            StringBuilder sb = new StringBuilder( );
-            sb.append( (char)i  );
-            sb.append( 2 );
-            board.pieces.put( sb.toString(),"wP" );
-            sb.deleteCharAt( sb.length()-1 );
-            sb.append( 7 );
-            board.pieces.put( sb.toString(),"bP" );
-        }
-    }
     public Window() {
+        this(new GameEngine());
+    }
 
+    public Window(GameEngine engine) {
+        this.engine = engine;
         initializeWindow();
-        board = new Board();
-        current = true;
-        //TODO: Add the pieces to the board
-        addRook();
+        board = new Board(engine.getPosition());
         frame.add(board, BorderLayout.CENTER);
         
         initializeGraphicalComponents();
+        showStatus();
         displayWindow();
     }
 
@@ -164,515 +126,206 @@ public class Window{
         
         submitButton = new JButton("Submit");
         submitButton.addActionListener(inputListener);
-        bottomPanel.add(submitButton, BorderLayout.SOUTH);
+        undoButton = new JButton("Undo");
+        undoButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                takeBack(true);
+            }
+        });
+        redoButton = new JButton("Redo");
+        redoButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                takeBack(false);
+            }
+        });
+        stopButton = new JButton("Stop");
+        stopButton.setEnabled(false);
+        stopButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                if(thinking != null) {
+                    thinking.stop();
+                }
+            }
+        });
+        JPanel buttonPanel = new JPanel(new FlowLayout());
+        buttonPanel.add(submitButton);
+        buttonPanel.add(undoButton);
+        buttonPanel.add(redoButton);
+        buttonPanel.add(stopButton);
+        bottomPanel.add(buttonPanel, BorderLayout.SOUTH);
         frame.add(bottomPanel, BorderLayout.SOUTH);
     }
 
+    // Undoes (or redoes) moves until a human is to move again, so taking back against the
+    // computer also takes back its answer.
+    private void takeBack(boolean undo) {
+        if(thinking != null) {
+            return;
+        }
+        boolean changed = false;
+        while(undo ? engine.undo() : engine.redo()) {
+            changed = true;
+            if(computerPlayers[engine.getSideToMove()] == null) {
+                break;
+            }
+        }
+        if(changed) {
+            board.draw();
+            showStatus();
+            scheduleComputerMove();
+        } else {
+            textField.setText(undo ? "NOTHING TO UNDO" : "NOTHING TO REDO");
+        }
+    }
+
     private void displayWindow() {
         frame.pack();
         frame.setLocationRelativeTo(null);
         frame.setVisible(true);
     }
 
+    // Lets the computer play a color, or a human again when player is null.
+    public void setComputerPlayer(int color, ComputerPlayer player) {
+        computerPlayers[color] = player;
+        scheduleComputerMove();
+    }
 
-
-    private class InputActionListener implements ActionListener
-    {
-        public String[] validInput( String input )
-        {
-            String[] result = new String[ 2 ];
-            if ( input.length() != 4 )
-                return null;
-            else
-            {
-                String from = input.substring( 0, 2 );
-                String to = input.substring( 2, 4 );
-
-                int begin = ( int ) from.charAt( 0 );
-                int end = ( int ) to.charAt( 0 );
-                if ( begin >= 97 && begin <= 104 && end >= 97 && end <= 104 )
-                {
-                    begin = from.charAt( 1 )-48;
-                    end = to.charAt( 1 ) -48;
-                    if ( begin >= 1 && end <= 8 && begin <= 8 && end >= 1 )
-                    {
-                        result[ 0 ] = from;
-                        result[ 1 ] = to;
-                        return result;
-                    }
-                    return null;
+    private void scheduleComputerMove() {
+        if(!engine.status().isOver() && computerPlayers[engine.getSideToMove()] != null) {
+            // Queued so the board is repainted before the computer starts thinking.
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    playComputerMove();
                 }
-                return null;
-            }
+            });
         }
+    }
 
-        public void actionPerformed( ActionEvent e )
-        {
-            // Text is read from the input field and input field is cleared
-            String input = textField.getText();
-            textField.setText( "" );
-
-            //TODO: Process input read from text field and redraw the board
-            String[] result = validInput( input );
-
-
-            if ( result != null && board.pieces.containsKey( result[ 0 ] ) ) //add turns here later
-            {
-                String piece = board.pieces.get( result[ 0 ] );
-                String turn = piece.substring( 0, 1 );
-                String power = piece.substring( 1, 2 );
-
-                if(current == true && !turn.equals( "w" ))
-                {
-                    //violation
-                    textField.setText( "VIOLATION. PLAYER WHITE'S TURN");
-                    return;
-                }
-
-                else if ( current == false && !turn.equals( "b" ) )
-                {
-                    textField.setText( "VIOLATION. PLAYER BLACK'S TURN");
-                    return;
-                }
-
-                ArrayList<String> res = new ArrayList<>(  );
-                if(power.equals( "Q" ))
-                {
-                    res = getQueenMove( result[0], result[1] );
-                }
-                else if ( power.equals( "R" ) )
-                {
-                    res = getRookMove( result[0], result[1] );
-                }
-                else if ( power.equals( "B" ) )
-                {
-                    res = getBishopMove( result[0] , result[1]);
-                }
-
-                else if ( power.equals( "N" ) )
-                {
-                    res = getKnightMove( result[0] );
-                }
-
-                else if ( power.equals( "P" ) )
-                {
-                    res = getPawnMove( result[0],turn );
-                }
-
-                else if ( power.equals( "K" ) )
-                {
-                    res = getKingMove( result[0] );
-                }
-
-                if ( res.size()>0 && res.contains( result[1] ) )
-                {
-                    if ( board.pieces.containsKey( result[1] ) )
-                    {
-                        String toPiece = board.pieces.get( result[1] );
-                        String toTurn = toPiece.substring( 0,1 );
-
-                        if ( toTurn.equals( turn ) )
-                        {
-                            //violation
-                            textField.setText( "PLEASE DON'T KILL YOURSELF" );
-                            return;
-                        }
-
-                        else
-                        {
-                            System.out.println("Log Message: Player "+turn+" killed Player "+toTurn +" and piece destroyed: "+ toPiece.substring( 1,2 ));
-                        }
-
-                        if ( toPiece.substring( 1,2 ).equals( "K" ) )
-                        {
-                            JOptionPane.showMessageDialog(frame, "Player "+turn+" wins!!!" );
-                            frame.setVisible(false); //you can't see me!
-                            frame.dispose();
-                        }
-                    }
-                    board.pieces.remove( result[0] );
-                    board.pieces.put( result[1],piece );
-                    board.draw();
-                }
-                else
-                {
-                    textField.setText( "VIOLATION : NOT A VALID MOVE. TRY AGAIN!!" );
-                    return;
-                }
-                current = !current;
-            }
-
-            else
-            {
-                textField.setText( "VIOLATION: INVALID INPUT" );
-                return;
-            }
+    private void playComputerMove() {
+        ComputerPlayer player = computerPlayers[engine.getSideToMove()];
+        if(player == null || engine.status().isOver() || thinking != null) {
+            return;
         }
-
-        public ArrayList<String> getRookMove( String from ,String to)
-        {
-            int begin = from.charAt( 0 );
-            int end = from.charAt( 1 )-48;
-
-            ArrayList<String> result = new ArrayList<>();
-            boolean isSet = false;
-            for ( int i = begin; i >= 97; i-- )
-            {
-                StringBuilder sb = new StringBuilder();
-                sb.append( ( char ) i );
-                sb.append( end );
-                boolean isPresent = board.pieces.containsKey( sb.toString() ) & !sb.toString().equals( from ) &!sb.toString().equals( to );
-
-                if ( !isPresent && !isSet )
-                    result.add( sb.toString() );
-                else if ( isPresent )
-                    isSet = true;
-
-                if ( sb.toString().equals( to ) )
-                    isSet = true;
+        thinking = player;
+        updateButtons();
+        outputLabel.setText("Computer is thinking...");
+        player.thinkInBackground(engine.getPosition(), new SearchListener() {
+            public void iterationCompleted(SearchResult result) {
+                outputLabel.setText("Computer is thinking: depth " + result.getDepth() + ", "
+                    + (result.isMate() ? "mate " + result.getMateIn() : "score " + result.getScore()) + ", "
+                    + result.getNodes() + " nodes, " + result.principalVariationText());
             }
 
-            isSet = false;
-            for ( int i=begin;i<=104;i++ )
-            {
-                StringBuilder sb = new StringBuilder();
-                sb.append( ( char ) i );
-                sb.append( end );
-                boolean isPresent = board.pieces.containsKey( sb.toString() ) & !sb.toString().equals( from ) &!sb.toString().equals( to );
-
-                if ( !isPresent && !isSet )
-                    result.add( sb.toString() );
-                else if ( isPresent )
-                    isSet = true;
-
-                if ( sb.toString().equals( to ) )
-                    isSet = true;
+            public void searchFinished(SearchResult result) {
+                thinking = null;
+                computerMoveFound(result);
             }
-            isSet = false;
-
-            for ( int i = end; i <= 8; i++ )
-            {
-                StringBuilder sb = new StringBuilder();
-                sb.append( (char) begin );
-                sb.append( i );
-                boolean isPresent = board.pieces.containsKey( sb.toString() ) & !sb.toString().equals( from ) &!sb.toString().equals( to );
-
-                if ( !isPresent && !isSet )
-                    result.add( sb.toString() );
-                else if ( isPresent )
-                    isSet = true;
-                if ( sb.toString().equals( to ) )
-                    isSet = true;
+        }, new Executor() {
+            public void execute(Runnable runnable) {
+                SwingUtilities.invokeLater(runnable);
             }
+        });
+    }
 
-            isSet = false;
-            for ( int i=end;i>=1;i-- )
-            {
-                StringBuilder sb = new StringBuilder();
-                sb.append( (char) begin );
-                sb.append( i );
-                boolean isPresent = board.pieces.containsKey( sb.toString() ) & !sb.toString().equals( from ) &!sb.toString().equals( to );
-
-                if ( !isPresent && !isSet )
-                    result.add( sb.toString() );
-                else if ( isPresent )
-                    isSet = true;
-                if ( sb.toString().equals( to ) )
-                    isSet = true;
-            }
-            return result;
-        }
-
-        public ArrayList<String> getBishopMove( String from ,String to)
-        {
-            int begin = from.charAt( 0 );
-            int end = from.charAt( 1 )-48;
-
-            boolean isSetUp = false, isSetDown = false;
-
-            int up=end,down = end;
-            ArrayList<String> result = new ArrayList<>(  );
-            for ( int i=begin+1;i<=104;i++ )
-            {
-                up++;down--;
-                StringBuilder upw = new StringBuilder(  );
-                StringBuilder dwn = new StringBuilder(  );
-
-                if ( up >=1 && up<=8 )
-                {
-                    upw.append( (char) i);
-                    upw.append( up );
-                    boolean isPresentUp = board.pieces.containsKey( upw.toString() ) & !upw.toString().equals( from ) &!upw.toString().equals( to );
-                    if ( !isPresentUp && !isSetUp  )
-                    {
-                        result.add( upw.toString() );
-                        if ( upw.toString().equals( to ) )
-                            isSetUp = true;
-                    }
-
-                    else if ( isPresentUp )
-                        isSetUp = true;
-                }
-                if ( down >=1 && down<=8 )
-                {
-                    dwn.append( (char)i );
-                    dwn.append( down );
-
-                    boolean isPresentDown = board.pieces.containsKey( dwn.toString() ) & !dwn.toString().equals( from ) &!dwn.toString().equals( to );
-                    if ( !isPresentDown && !isSetDown)
-                    {
-                        result.add( dwn.toString() );
-                        if ( dwn.toString().equals( to ) )
-                            isSetDown = true;
-                    }
-
-                    else if ( isPresentDown )
-                        isSetDown = true;
-                }
-            }
-
-            up = end; down = end;
-            isSetUp = false;
-            isSetDown = false;
-            for ( int i=begin-1;i>=97;i-- )
-            {
-                up++;down--;
-                StringBuilder upw = new StringBuilder(  );
-                StringBuilder dwn = new StringBuilder(  );
-
-                if ( up >=1 && up<=8 )
-                {
-                    upw.append( (char) i);
-                    upw.append( up );
-                    boolean isPresentUp = board.pieces.containsKey( upw.toString() ) & !upw.toString().equals( from ) &!upw.toString().equals( to );
-                    if ( !isPresentUp && !isSetUp )
-                    {
-                        result.add( upw.toString() );
-                        if ( upw.toString().equals( to ) )
-                            isSetUp = true;
-                    }
-
-                    else if ( isPresentUp )
-                        isSetUp = true;
-                }
-                if ( down >=1 && down<=8 )
-                {
-                    dwn.append( (char)i );
-                    dwn.append( down );
-
-                    boolean isPresentDown = board.pieces.containsKey( dwn.toString() ) & !dwn.toString().equals( from ) &!dwn.toString().equals( to );
-                    if ( !isPresentDown && !isSetDown)
-                    {
-                        result.add( dwn.toString() );
-                        if ( dwn.toString().equals( to ) )
-                            isSetDown = true;
-                    }
-
-                    else if ( isPresentDown )
-                        isSetDown = true;
-                }
-            }
-            return result;
+    private void computerMoveFound(SearchResult result) {
+        if(!engine.applyMove(result.getBestMove())) {
+            updateButtons();
+            outputLabel.setText("The computer found no move to play");
+            return;
         }
-
-        public ArrayList<String> getQueenMove(String from, String to)
-        {
-            ArrayList<String> result= getRookMove( from ,to);
-            result.addAll( getBishopMove( from ,to ) );
-            return result;
+        board.draw();
+        showStatus();
+        if(!engine.status().isOver() && result.isBookMove()) {
+            outputLabel.setText(outputLabel.getText() + " (computer played " + Move.name(result.getBestMove())
+                + " from the opening book)");
+        } else if(!engine.status().isOver() && result.isTablebaseMove()) {
+            outputLabel.setText(outputLabel.getText() + " (computer played " + Move.name(result.getBestMove())
+                + " from the tablebases, " + (result.isMate() ? "mate in " + result.getMateIn() : "draw") + ")");
+        } else if(!engine.status().isOver()) {
+            outputLabel.setText(outputLabel.getText() + " (computer played " + Move.name(result.getBestMove())
+                + ", depth " + result.getDepth() + ", " + result.getNodesPerSecond() + " nodes/s)");
         }
+        scheduleComputerMove();
+    }
 
-        public ArrayList<String> getKnightMove(String from)
-        {
-            int begin = from.charAt( 0 );
-            int end = from.charAt( 1 )-48;
-
-            ArrayList<String> result = new ArrayList<>(  );
-
-            StringBuilder sb = new StringBuilder(  );
-
-            if ( begin+2<=107 )
-            {
-                sb.append( (char) (begin+2));
-                if ( end-1>=1 && end-1 <=8 )
-                {
-                    sb.append( end-1 );
-                    result.add( sb.toString() );
-                }
-                if ( end+1 >=1 && end+1<=8 )
-                {
-                    if ( sb.length()>1 )
-                        sb.deleteCharAt( sb.length()-1 );
-                    sb.append( end+1 );
-                    result.add( sb.toString() );
-                }
-            }
-
-            sb= new StringBuilder(  );
-            if ( begin-2<=107  && begin-2 >=97)
-            {
-                sb.append( (char) (begin-2));
-                if ( end-1>=1 && end-1 <=8 )
-                {
-                    sb.append( end-1 );
-                    result.add( sb.toString() );
-                }
-                if ( end+1 >=1 && end+1<=8 )
-                {
-                    if ( sb.length()>1 )
-                        sb.deleteCharAt( sb.length()-1 );
-                    sb.append( end+1 );
-                    result.add( sb.toString() );
-                }
-            }
-            sb = new StringBuilder(  );
-            if ( begin+1<=107 )
-            {
-                sb.append( (char) (begin+1));
-                if ( end-2>=1 && end-2 <=8 )
-                {
-                    sb.append( end-2 );
-                    result.add( sb.toString() );
-                }
-                if ( end+2 >=1 && end+2<=8 )
-                {
-                    if ( sb.length()>1 )
-                        sb.deleteCharAt( sb.length()-1 );
-                    sb.append( end+2 );
-                    result.add( sb.toString() );
-                }
-            }
-
-            sb = new StringBuilder(  );
-            if ( begin-1<=107 && begin-1>=97 )
-            {
-                sb.append( (char) (begin-1));
-                if ( end-2>=1 && end-2 <=8 )
-                {
-                    sb.append( end-2 );
-                    result.add( sb.toString() );
-                }
-                if ( end+2 >=1 && end+2<=8 )
-                {
-                    if ( sb.length()>1 )
-                        sb.deleteCharAt( sb.length()-1 );
-                    sb.append( end+2 );
-                    result.add( sb.toString() );
-                }
-            }
-
-            return result;
-        }
-
-        public ArrayList<String> getPawnMove(String from,String turn)
-        {
-            int begin = from.charAt( 0 );
-            int to = from.charAt( 1 )-48;
-
-            ArrayList<String> result = new ArrayList<>(  );
-            if ( to ==2 || to ==7 )
-            {
-                StringBuilder sb= new StringBuilder(  );
-                sb.append( (char)begin );
-                    if(to==7)
-                        sb.append( to-2 );
-                    else
-                        sb.append( to+2 );
-                result.add( sb.toString() );
-            }
-            int left = begin-1;
-            int right = begin+1;
-
-            int end = to;
-            if ( turn.equals( "w" ) )
-                end+=1;
-            else
-                end-=1;
-
-            StringBuilder sb = new StringBuilder(  );
-            if ( left>=97 )
-            {
-                sb.append( (char)left );
-                sb.append( end );
-                result.add( sb.toString() );
-            }
-            sb = new StringBuilder(  );
-            if ( right<=107 )
-            {
-                sb.append( (char)right );
-                sb.append( end );
-                result.add( sb.toString() );
-            }
+    private String playerName(int color) {
+        return color == Piece.WHITE ? "White" : "Black";
+    }
 
-            sb= new StringBuilder(  );
+    private void updateButtons() {
+        undoButton.setEnabled(thinking == null && engine.canUndo());
+        redoButton.setEnabled(thinking == null && engine.canRedo());
+        stopButton.setEnabled(thinking != null);
+    }
 
-            sb.append( (char)begin );
-            sb.append( end );
-            result.add( sb.toString() );
-            return result;
+    // Declares check, checkmate and stalemate, otherwise whose turn it is.
+    private void showStatus() {
+        updateButtons();
+        int side = engine.getSideToMove();
+        switch(engine.status()) {
+            case CHECKMATE:
+                outputLabel.setText("Checkmate! Player " + playerName(side ^ 1) + " wins");
+                JOptionPane.showMessageDialog(frame, "Player " + playerName(side ^ 1) + " wins!!!");
+                break;
+            case STALEMATE:
+                outputLabel.setText("Stalemate! The game ends as a draw");
+                JOptionPane.showMessageDialog(frame, "Stalemate! The game ends as a draw");
+                break;
+            case THREEFOLD_REPETITION:
+                outputLabel.setText("Threefold repetition! The game ends as a draw");
+                JOptionPane.showMessageDialog(frame, "Threefold repetition! The game ends as a draw");
+                break;
+            case CHECK:
+                outputLabel.setText("Check! Player " + playerName(side) + "'s turn");
+                break;
+            default:
+                outputLabel.setText("Player " + playerName(side) + "'s turn");
+                break;
         }
+    }
 
-        public ArrayList<String> getKingMove(String from)
+    private class InputActionListener implements ActionListener
+    {
+        public void actionPerformed( ActionEvent e )
         {
-            ArrayList<String> result = new ArrayList<>();
-
-            int begin = from.charAt( 0 );
-            int end = from.charAt( 1 ) - 48;
+            // Text is read from the input field and input field is cleared
+            String input = textField.getText();
+            textField.setText( "" );
 
-            StringBuilder sb = new StringBuilder();
-            if ( begin - 1 >= 97 )
+            if ( computerPlayers[ engine.getSideToMove() ] != null )
             {
-                sb.append( ( char ) ( begin - 1 ) );
-                sb.append( end );
-                result.add( sb.toString() );
-                sb.deleteCharAt( sb.length() - 1 );
-
-                if ( end - 1 >= 1 )
-                {
-                    sb.append( end - 1 );
-                    result.add( sb.toString() );
-                    sb = new StringBuilder();
-
-                    sb.append( ( char ) begin );
-                    sb.append( end - 1 );
-                    result.add( sb.toString() );
-
-                    sb.deleteCharAt( sb.length() - 1 );
-                }
-
-                if ( end + 1 <= 8 )
-                {
-                    sb.append( end + 1 );
-                    result.add( sb.toString() );
-                    sb = new StringBuilder();
-
-                    sb.append( ( char ) ( begin - 1 ) );
-                    sb.append( end + 1 );
-                    result.add( sb.toString() );
-                }
+                textField.setText( "PLEASE WAIT FOR THE COMPUTER'S MOVE" );
+                return;
             }
-            sb= new StringBuilder(  );
-            if ( begin + 1 <= 104 )
+            String turn = engine.getSideToMove() == Piece.WHITE ? Board.WHITE_PIECE : Board.BLACK_PIECE;
+            int target = Square.parse( input.trim(), 2 );
+            String toPiece = target == Square.NONE ? null : board.pieces.get( Square.name( target ) );
+            MoveResult result = engine.applyMove( input );
+            switch ( result )
             {
-                sb.append( ( char ) ( begin + 1 ) );
-                sb.append( end );
-                result.add( sb.toString() );
-                sb.deleteCharAt( sb.length() - 1 );
-
-                if ( end - 1 >= 1 )
-                {
-                    sb.append( end - 1 );
-                    result.add( sb.toString() );
-                    sb.deleteCharAt( sb.length() - 1 );
-                }
-
-                if ( end + 1 <= 8 )
-                {
-                    sb.append( end + 1 );
-                    result.add( sb.toString() );
-                }
+                case ACCEPTED:
+                    if ( toPiece != null )
+                    {
+                        System.out.println( "Log Message: Player " + turn + " killed Player " + toPiece.substring( 0, 1 )
+                            + " and piece destroyed: " + toPiece.substring( 1, 2 ) );
+                    }
+                    board.draw();
+                    showStatus();
+                    scheduleComputerMove();
+                    break;
+                case WRONG_TURN:
+                    textField.setText( "VIOLATION. PLAYER " + playerName( engine.getSideToMove() ).toUpperCase() + "'S TURN" );
+                    break;
+                case ILLEGAL_MOVE:
+                    textField.setText( "VIOLATION : NOT A VALID MOVE. TRY AGAIN!!" );
+                    break;
+                case GAME_OVER:
+                    textField.setText( "THE GAME IS OVER" );
+                    break;
+                default:
+                    textField.setText( "VIOLATION: INVALID INPUT" );
+                    break;
             }
-            return result;
         }
     }
 
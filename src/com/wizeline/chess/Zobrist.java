@@ -0,0 +1,82 @@
+package com.wizeline.chess;
+
+/*
+Random keys for Zobrist hashing. The hash of a position is the XOR of the key of every
+piece on its square, the side key when black is to move, the key of the castling rights
+and the key of the en passant file when there is one. Since XOR is its own inverse the
+hash can be updated incrementally: moving a piece XORs its old and new square keys.
+
+The keys come from a fixed seed so hashes are stable between runs (opening books and
+journals store them).
+*/
+public final class Zobrist {
+    private static final long[][] PIECES = new long[Piece.COUNT][Square.COUNT];
+    private static final long[] CASTLING = new long[Position.ALL_CASTLING + 1];
+    private static final long[] EN_PASSANT_FILES = new long[8];
+    private static final long SIDE;
+
+    static {
+        long seed = 0x2545F4914F6CDD1DL;
+        for(int piece = 0; piece < Piece.COUNT; piece++) {
+            for(int square = 0; square < Square.COUNT; square++) {
+                seed = next(seed);
+                PIECES[piece][square] = mix(seed);
+            }
+        }
+        for(int rights = 0; rights < CASTLING.length; rights++) {
+            seed = next(seed);
+            CASTLING[rights] = rights == 0 ? 0L : mix(seed);
+        }
+        for(int file = 0; file < 8; file++) {
+            seed = next(seed);
+            EN_PASSANT_FILES[file] = mix(seed);
+        }
+        seed = next(seed);
+        SIDE = mix(seed);
+    }
+
+    private Zobrist() {
+    }
+
+    public static long piece(int piece, int square) {
+        return PIECES[piece][square];
+    }
+
+    public static long castling(int rights) {
+        return CASTLING[rights];
+    }
+
+    public static long enPassant(int square) {
+        return square == Square.NONE ? 0L : EN_PASSANT_FILES[Square.file(square)];
+    }
+
+    public static long side() {
+        return SIDE;
+    }
+
+    // Hash of a position computed from scratch, used to verify the incremental one.
+    public static long compute(Position position) {
+        long hash = 0L;
+        long occupied = position.occupied();
+        while(occupied != 0) {
+            int square = Long.numberOfTrailingZeros(occupied);
+            occupied &= occupied - 1;
+            hash ^= PIECES[position.pieceAt(square)][square];
+        }
+        if(position.getSideToMove() == Piece.BLACK) {
+            hash ^= SIDE;
+        }
+        return hash ^ CASTLING[position.getCastlingRights()] ^ enPassant(position.getEnPassantSquare());
+    }
+
+    // SplitMix64 step and finalizer.
+    private static long next(long seed) {
+        return seed + 0x9E3779B97F4A7C15L;
+    }
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}